@@ -0,0 +1,45 @@
+package dev.scx.websocket.benchmark;
+
+import dev.scx.websocket.BinaryMessage;
+import dev.scx.websocket.ScxWebSocket;
+import dev.scx.websocket.ScxWebSocketOptions;
+import dev.scx.websocket.WebSocketMessage;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static dev.scx.websocket.benchmark.BenchmarkHelper.encodeAsClient;
+
+/// ScxWebSocketImpl 将多个分片聚合为一条消息.
+///
+/// 消息总大小固定, 只改变分片数量, 以观察每个分片的固定开销.
+///
+/// @author scx567888
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AggregationBenchmark {
+
+    @Param({"65536"})
+    public int messageSize;
+
+    @Param({"1", "16", "256"})
+    public int fragments;
+
+    private ScxWebSocket webSocket;
+
+    @Setup
+    public void setup() throws Exception {
+        var wire = encodeAsClient(new ScxWebSocketOptions().fragmentSize(messageSize / fragments), new BinaryMessage(new byte[messageSize]));
+        webSocket = ScxWebSocket.of(MemoryByteEndpoint.replay(wire), false);
+    }
+
+    @Benchmark
+    public WebSocketMessage aggregate() throws Exception {
+        return webSocket.read();
+    }
+
+}
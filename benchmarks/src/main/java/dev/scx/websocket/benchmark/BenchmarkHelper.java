@@ -0,0 +1,25 @@
+package dev.scx.websocket.benchmark;
+
+import dev.scx.websocket.ScxWebSocket;
+import dev.scx.websocket.ScxWebSocketOptions;
+import dev.scx.websocket.WebSocketMessage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+
+/// BenchmarkHelper
+///
+/// @author scx567888
+public final class BenchmarkHelper {
+
+    /// 以客户端身份 (带掩码) 编码消息, 得到服务端将会读取到的原始字节.
+    public static byte[] encodeAsClient(ScxWebSocketOptions options, WebSocketMessage... messages) throws Exception {
+        var wire = new ByteArrayOutputStream();
+        var webSocket = ScxWebSocket.of(new MemoryByteEndpoint(InputStream.nullInputStream(), wire), true, options);
+        for (var message : messages) {
+            webSocket.send(message);
+        }
+        return wire.toByteArray();
+    }
+
+}
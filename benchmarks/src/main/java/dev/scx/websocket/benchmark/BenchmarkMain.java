@@ -0,0 +1,23 @@
+package dev.scx.websocket.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/// 基准测试入口, 所有基准测试都附带 GC profiler (分配速率 / GC 次数), 以便和基线比较.
+///
+/// 命令行参数与 JMH 相同, 如 `java -jar benchmarks.jar FrameCodec -p masked=true`.
+///
+/// @author scx567888
+public final class BenchmarkMain {
+
+    public static void main(String[] args) throws Exception {
+        var options = new OptionsBuilder()
+            .parent(new CommandLineOptions(args))
+            .addProfiler(GCProfiler.class)
+            .build();
+        new Runner(options).run();
+    }
+
+}
@@ -0,0 +1,65 @@
+package dev.scx.websocket.benchmark;
+
+import dev.scx.websocket.BinaryMessage;
+import dev.scx.websocket.CloseMessage;
+import dev.scx.websocket.ScxWebSocket;
+import dev.scx.websocket.WebSocketMessage;
+import dev.scx.websocket.endpoint.PipeByteEndpoint;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/// 通过 [PipeByteEndpoint] 进行端到端的回显 (客户端发送, 服务端读取并原样发回, 客户端读取).
+///
+/// @author scx567888
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EchoBenchmark {
+
+    @Param({"16", "1024", "16384"})
+    public int payloadSize;
+
+    private ScxWebSocket client;
+    private Thread server;
+    private BinaryMessage message;
+
+    @Setup
+    public void setup() {
+        var endpoints = PipeByteEndpoint.pair();
+        client = ScxWebSocket.of(endpoints[0], true);
+        var serverWebSocket = ScxWebSocket.of(endpoints[1], false);
+        server = Thread.ofPlatform().daemon().start(() -> {
+            try {
+                while (true) {
+                    var m = serverWebSocket.read();
+                    serverWebSocket.send(m);
+                    if (m instanceof CloseMessage) {
+                        break;
+                    }
+                }
+            } catch (Exception _) {
+
+            }
+        });
+        message = new BinaryMessage(new byte[payloadSize]);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        client.sendClose();
+        client.read();
+        server.join();
+        client.close();
+    }
+
+    @Benchmark
+    public WebSocketMessage echo() throws Exception {
+        client.send(message);
+        return client.read();
+    }
+
+}
@@ -0,0 +1,82 @@
+package dev.scx.websocket.benchmark;
+
+import dev.scx.websocket.CloseMessage;
+import dev.scx.websocket.ScxWebSocket;
+import dev.scx.websocket.ScxWebSocketOptions;
+import dev.scx.websocket.TextMessage;
+import dev.scx.websocket.WebSocketMessage;
+import dev.scx.websocket.event.ScxEventWebSocket;
+import dev.scx.websocket.event.ScxEventWebSocketOptions;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static dev.scx.websocket.WebSocketCloseInfo.NORMAL_CLOSE;
+import static dev.scx.websocket.benchmark.BenchmarkHelper.encodeAsClient;
+
+/// ScxEventWebSocketImpl 的回调分发.
+///
+/// - direct: 不使用 callbackExecutor, 在读取线程中直接执行回调.
+/// - ordered: 使用 callbackExecutor, 每个连接串行执行 (默认).
+/// - unordered: 使用 callbackExecutor, 每个回调单独提交.
+///
+/// 每次调用分发 [#MESSAGES] 条文本消息, 结果按单条消息计算.
+///
+/// @author scx567888
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventDispatchBenchmark {
+
+    private static final int MESSAGES = 1000;
+
+    @Param({"direct", "ordered", "unordered"})
+    public String dispatch;
+
+    private ExecutorService executor;
+    private ScxEventWebSocketOptions options;
+    private byte[] wire;
+
+    @Setup
+    public void setup() throws Exception {
+        options = new ScxEventWebSocketOptions();
+        if (!"direct".equals(dispatch)) {
+            executor = Executors.newFixedThreadPool(4);
+            options.callbackExecutor(executor).orderedDispatch("ordered".equals(dispatch));
+        }
+        var messages = new WebSocketMessage[MESSAGES + 1];
+        for (int i = 0; i < MESSAGES; i = i + 1) {
+            messages[i] = new TextMessage("Event 测试文本" + i);
+        }
+        messages[MESSAGES] = new CloseMessage(NORMAL_CLOSE);
+        wire = encodeAsClient(new ScxWebSocketOptions(), messages);
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public void dispatch() throws Exception {
+        var received = new CountDownLatch(MESSAGES);
+        var endpoint = new MemoryByteEndpoint(new ByteArrayInputStream(wire), OutputStream.nullOutputStream());
+        var eventWebSocket = ScxEventWebSocket.of(ScxWebSocket.of(endpoint, false), options);
+        eventWebSocket.onText(t -> received.countDown());
+        // 读到 Close 后返回.
+        eventWebSocket.start();
+        received.await();
+    }
+
+}
@@ -0,0 +1,90 @@
+package dev.scx.websocket.benchmark;
+
+/// 对数-线性的耗时直方图 (纳秒), 每个 2 的幂区间再分为 16 个子桶, 相对误差约 6%.
+///
+/// [dev.scx.websocket.metrics.WebSocketLatencyHistogram] 只有 2 倍精度, 用于观察运行中的分布足够,
+/// 但不足以比较 p99 / p999, 因此负载生成器使用这里的实现.
+///
+/// 不是线程安全的: 每个线程使用自己的实例, 结束后通过 [#merge(LatencyRecorder)] 合并, 记录时没有任何竞争.
+///
+/// @author scx567888
+public final class LatencyRecorder {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    private final long[] buckets;
+
+    public LatencyRecorder() {
+        this.buckets = new long[BUCKET_COUNT];
+    }
+
+    public void record(long nanos) {
+        var i = index(Math.max(nanos, 0));
+        buckets[i] = buckets[i] + 1;
+    }
+
+    /// 将 other 的记录累加到当前实例.
+    public void merge(LatencyRecorder other) {
+        for (int i = 0; i < BUCKET_COUNT; i = i + 1) {
+            buckets[i] = buckets[i] + other.buckets[i];
+        }
+    }
+
+    public long count() {
+        var count = 0L;
+        for (int i = 0; i < BUCKET_COUNT; i = i + 1) {
+            count = count + buckets[i];
+        }
+        return count;
+    }
+
+    /// 返回 percentile (0 ~ 100) 分位值所在桶的上界 (纳秒), 没有记录时返回 0.
+    public long valueAtPercentile(double percentile) {
+        var total = count();
+        if (total == 0) {
+            return 0;
+        }
+        var target = Math.max((long) Math.ceil(total * percentile / 100), 1);
+        var seen = 0L;
+        for (int i = 0; i < BUCKET_COUNT; i = i + 1) {
+            seen = seen + buckets[i];
+            if (seen >= target) {
+                return upperBound(i);
+            }
+        }
+        return upperBound(BUCKET_COUNT - 1);
+    }
+
+    public long max() {
+        for (int i = BUCKET_COUNT - 1; i >= 0; i = i - 1) {
+            if (buckets[i] != 0) {
+                return upperBound(i);
+            }
+        }
+        return 0;
+    }
+
+    private static int index(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        var exponent = 63 - Long.numberOfLeadingZeros(value);
+        var sub = (int) (value >>> exponent - SUB_BUCKET_BITS) & SUB_BUCKET_COUNT - 1;
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + sub;
+    }
+
+    private static long upperBound(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index + 1;
+        }
+        if (index == BUCKET_COUNT - 1) {
+            return Long.MAX_VALUE;
+        }
+        var shift = index / SUB_BUCKET_COUNT - 1;
+        var sub = index % SUB_BUCKET_COUNT;
+        return (long) (SUB_BUCKET_COUNT + sub + 1) << shift;
+    }
+
+}
@@ -0,0 +1,348 @@
+package dev.scx.websocket.benchmark;
+
+import dev.scx.websocket.BinaryMessage;
+import dev.scx.websocket.CloseMessage;
+import dev.scx.websocket.PingMessage;
+import dev.scx.websocket.PongMessage;
+import dev.scx.websocket.ScxWebSocket;
+import dev.scx.websocket.ScxWebSocketOptions;
+import dev.scx.websocket.TextMessage;
+import dev.scx.websocket.WebSocketMessage;
+import dev.scx.websocket.endpoint.SocketChannelByteEndpoint;
+import dev.scx.websocket.event.ScxEventWebSocket;
+import dev.scx.websocket.event.ScxEventWebSocketEngine;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/// 本地负载生成器, 用于在上线前找到吞吐量随连接数增长的拐点.
+///
+/// 在 loopback 上启动一个由 [ScxEventWebSocket] 构建的回显服务器, 然后使用虚拟线程打开大量客户端连接.
+/// 每个连接是一个闭环: 发送一条消息, 等待回显, 记录往返耗时, 然后发送下一条.
+/// 每个连接使用自己的 [LatencyRecorder], 结束后再合并, 记录耗时不会在连接之间产生竞争.
+///
+/// 参数均为 `key=value` 形式, 例如:
+///
+/// ```
+/// java -cp benchmarks.jar dev.scx.websocket.benchmark.LoadGenerator connections=100,1000,5000 sizes=64:80,4096:15,65536:5
+/// ```
+///
+/// - connections: 连接数, 可以用逗号分隔多个值, 依次运行 (默认 1000)
+/// - duration / warmup: 每轮的测量时间 / 预热时间, 秒 (默认 10 / 3)
+/// - sizes: 消息大小分布, `大小:权重` 用逗号分隔 (默认 64:70,1024:25,16384:5)
+/// - binaryRatio: 二进制消息的比例, 其余为文本消息 (默认 0.5)
+/// - fragmentSize: 大于该值的消息以流式分片发送, 0 表示不分片 (默认 0)
+/// - pingRatio: 以 Ping/Pong 代替消息的比例 (默认 0)
+/// - server: 回显服务器, engine 使用 [ScxEventWebSocketEngine], blocking 为每个连接一个虚拟线程 (默认 engine)
+/// - seed: 随机种子, 相同的种子产生相同的消息序列 (默认 0)
+/// - readTimeout: 客户端等待回复的超时时间, 秒, 超时的连接会被关闭并计入 errors (默认 10)
+///
+/// 连接数较多时需要调大进程的文件描述符上限 (如 `ulimit -n 65536`).
+///
+/// @author scx567888
+public final class LoadGenerator {
+
+    private static final byte[] PING_DATA = new byte[8];
+
+    private final int duration;
+    private final int warmup;
+    private final int[] sizes;
+    private final int[] cumulativeWeights;
+    private final double binaryRatio;
+    private final int fragmentSize;
+    private final double pingRatio;
+    private final String server;
+    private final long seed;
+    private final long readTimeoutNanos;
+    private final Map<Integer, byte[]> binaryPayloads;
+    private final Map<Integer, String> textPayloads;
+
+    public LoadGenerator(Map<String, String> args) {
+        this.duration = Integer.parseInt(args.getOrDefault("duration", "10"));
+        this.warmup = Integer.parseInt(args.getOrDefault("warmup", "3"));
+        var mix = args.getOrDefault("sizes", "64:70,1024:25,16384:5").split(",");
+        this.sizes = new int[mix.length];
+        this.cumulativeWeights = new int[mix.length];
+        var totalWeight = 0;
+        for (int i = 0; i < mix.length; i = i + 1) {
+            var parts = mix[i].split(":");
+            sizes[i] = Integer.parseInt(parts[0]);
+            totalWeight = totalWeight + (parts.length > 1 ? Integer.parseInt(parts[1]) : 1);
+            cumulativeWeights[i] = totalWeight;
+        }
+        this.binaryRatio = Double.parseDouble(args.getOrDefault("binaryRatio", "0.5"));
+        this.fragmentSize = Integer.parseInt(args.getOrDefault("fragmentSize", "0"));
+        this.pingRatio = Double.parseDouble(args.getOrDefault("pingRatio", "0"));
+        this.server = args.getOrDefault("server", "engine");
+        this.seed = Long.parseLong(args.getOrDefault("seed", "0"));
+        this.readTimeoutNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(args.getOrDefault("readTimeout", "10")));
+        // 所有连接共享同一组只读的 payload.
+        this.binaryPayloads = new HashMap<>();
+        this.textPayloads = new HashMap<>();
+        for (var size : sizes) {
+            var bytes = new byte[size];
+            Arrays.fill(bytes, (byte) 'x');
+            binaryPayloads.put(size, bytes);
+            textPayloads.put(size, new String(bytes));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        var map = new HashMap<String, String>();
+        for (var arg : args) {
+            var i = arg.indexOf('=');
+            if (i == -1) {
+                throw new IllegalArgumentException("argument must be key=value : " + arg);
+            }
+            map.put(arg.substring(0, i), arg.substring(i + 1));
+        }
+        var generator = new LoadGenerator(map);
+        System.out.printf("%-12s %12s %10s %10s %10s %10s %10s %8s%n", "connections", "msg/s", "MB/s", "p50(us)", "p99(us)", "p999(us)", "max(us)", "errors");
+        for (var connections : map.getOrDefault("connections", "1000").split(",")) {
+            var result = generator.run(Integer.parseInt(connections));
+            System.out.printf("%-12d %12.0f %10.2f %10.1f %10.1f %10.1f %10.1f %8d%n",
+                result.connections(), result.messagesPerSecond(), result.megabytesPerSecond(),
+                result.p50() / 1000.0, result.p99() / 1000.0, result.p999() / 1000.0, result.max() / 1000.0, result.errors());
+        }
+    }
+
+    /// 以指定的连接数运行一轮 (预热 + 测量).
+    public Result run(int connections) throws Exception {
+        var serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress("127.0.0.1", 0), connections);
+        var address = serverChannel.getLocalAddress();
+        var engine = "engine".equals(server) ? new ScxEventWebSocketEngine() : null;
+        var run = new Run();
+        var acceptor = Thread.ofPlatform().daemon().start(() -> acceptLoop(serverChannel, engine, run));
+
+        var connected = new CountDownLatch(connections);
+        var clients = new ArrayList<Client>(connections);
+        var threads = new ArrayList<Thread>(connections);
+        for (int i = 0; i < connections; i = i + 1) {
+            var id = i;
+            var client = new Client();
+            clients.add(client);
+            threads.add(Thread.ofVirtual().start(() -> clientLoop(id, address, run, client, connected)));
+        }
+        var timeoutChecker = Thread.ofPlatform().daemon().start(() -> timeoutLoop(clients, run));
+        connected.await();
+
+        // 所有连接就绪后开始计时.
+        run.start.countDown();
+        Thread.sleep(warmup * 1000L);
+        run.measuring = true;
+        var start = System.nanoTime();
+        Thread.sleep(duration * 1000L);
+        run.measuring = false;
+        var elapsed = System.nanoTime() - start;
+        run.stopped = true;
+        for (var thread : threads) {
+            thread.join();
+        }
+        run.finished = true;
+        timeoutChecker.join();
+
+        serverChannel.close();
+        acceptor.join();
+        if (engine != null) {
+            engine.close();
+        }
+
+        // 合并各个连接的记录.
+        var latency = new LatencyRecorder();
+        var bytes = 0L;
+        for (var client : clients) {
+            latency.merge(client.latency);
+            bytes = bytes + client.bytes;
+        }
+        var seconds = elapsed / 1_000_000_000.0;
+        return new Result(connections, latency.count() / seconds, bytes / seconds / (1024 * 1024),
+            latency.valueAtPercentile(50), latency.valueAtPercentile(99), latency.valueAtPercentile(99.9), latency.max(), run.errors.sum());
+    }
+
+    private void acceptLoop(ServerSocketChannel serverChannel, ScxEventWebSocketEngine engine, Run run) {
+        while (true) {
+            SocketChannel channel;
+            try {
+                channel = serverChannel.accept();
+            } catch (IOException e) {
+                // 服务器已关闭.
+                return;
+            }
+            try {
+                if (engine != null) {
+                    // 只注册到事件循环中, 立即返回.
+                    echo(engine.register(channel, false)).start();
+                } else {
+                    var eventWebSocket = ScxEventWebSocket.of(ScxWebSocket.of(new SocketChannelByteEndpoint(channel), false));
+                    Thread.ofVirtual().start(echo(eventWebSocket)::start);
+                }
+            } catch (Exception e) {
+                // 单个连接注册失败不能终止接受循环, 对应的客户端会因为读取超时而结束.
+                run.errors.increment();
+                try {
+                    channel.close();
+                } catch (IOException _) {
+
+                }
+            }
+        }
+    }
+
+    /// 关闭等待回复超时的客户端连接, 阻塞中的 read 会以异常结束.
+    private static void timeoutLoop(List<Client> clients, Run run) {
+        while (!run.finished) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(100));
+            var now = System.nanoTime();
+            for (var client : clients) {
+                var deadline = client.readDeadline;
+                if (deadline != 0 && now - deadline > 0) {
+                    client.readDeadline = 0;
+                    client.webSocket.close();
+                }
+            }
+        }
+    }
+
+    private static ScxEventWebSocket echo(ScxEventWebSocket eventWebSocket) {
+        // Ping 由消息层自动回复 Pong.
+        return eventWebSocket.onText(eventWebSocket::send).onBinary(eventWebSocket::send);
+    }
+
+    private void clientLoop(int id, SocketAddress address, Run run, Client client, CountDownLatch connected) {
+        ScxWebSocket webSocket;
+        try {
+            var options = new ScxWebSocketOptions();
+            if (fragmentSize > 0) {
+                options.fragmentSize(fragmentSize);
+            }
+            webSocket = ScxWebSocket.of(new SocketChannelByteEndpoint(SocketChannel.open(address)), true, options);
+            client.webSocket = webSocket;
+        } catch (IOException e) {
+            // 连接失败也不能阻塞其他连接.
+            run.errors.increment();
+            connected.countDown();
+            return;
+        }
+        connected.countDown();
+        var random = new SplittableRandom(seed + id);
+        try {
+            run.start.await();
+            while (!run.stopped) {
+                if (pingRatio > 0 && random.nextDouble() < pingRatio) {
+                    var begin = System.nanoTime();
+                    webSocket.send(new PingMessage(PING_DATA));
+                    await(client, PongMessage.class);
+                    record(run, client, System.nanoTime() - begin, PING_DATA.length);
+                    continue;
+                }
+                var size = nextSize(random);
+                var binary = random.nextDouble() < binaryRatio;
+                var begin = System.nanoTime();
+                send(webSocket, size, binary);
+                await(client, binary ? BinaryMessage.class : TextMessage.class);
+                record(run, client, System.nanoTime() - begin, size);
+            }
+            webSocket.sendClose();
+            await(client, CloseMessage.class);
+        } catch (Exception e) {
+            run.errors.increment();
+        } finally {
+            webSocket.close();
+        }
+    }
+
+    private void send(ScxWebSocket webSocket, int size, boolean binary) throws Exception {
+        if (fragmentSize > 0 && size > fragmentSize) {
+            if (binary) {
+                try (var out = webSocket.sendBinaryStream()) {
+                    out.write(binaryPayloads.get(size));
+                }
+            } else {
+                try (var writer = webSocket.sendTextStream()) {
+                    writer.write(textPayloads.get(size));
+                }
+            }
+        } else if (binary) {
+            webSocket.send(new BinaryMessage(binaryPayloads.get(size)));
+        } else {
+            webSocket.send(new TextMessage(textPayloads.get(size)));
+        }
+    }
+
+    private int nextSize(SplittableRandom random) {
+        var r = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i = i + 1) {
+            if (r < cumulativeWeights[i]) {
+                return sizes[i];
+            }
+        }
+        return sizes[sizes.length - 1];
+    }
+
+    private static void record(Run run, Client client, long nanos, int size) {
+        if (run.measuring) {
+            client.latency.record(nanos);
+            client.bytes = client.bytes + size;
+        }
+    }
+
+    /// 读取直到指定类型的消息 (期间可能收到其他控制消息), 超过 readTimeout 时连接会被关闭.
+    private WebSocketMessage await(Client client, Class<? extends WebSocketMessage> type) throws Exception {
+        client.readDeadline = System.nanoTime() + readTimeoutNanos;
+        try {
+            while (true) {
+                var message = client.webSocket.read();
+                if (type.isInstance(message)) {
+                    return message;
+                }
+                if (message instanceof CloseMessage) {
+                    throw new IOException("unexpected close");
+                }
+            }
+        } finally {
+            client.readDeadline = 0;
+        }
+    }
+
+    /// 单轮运行的共享状态.
+    private static final class Run {
+
+        private final CountDownLatch start = new CountDownLatch(1);
+        private final LongAdder errors = new LongAdder();
+        private volatile boolean measuring;
+        private volatile boolean stopped;
+        private volatile boolean finished; // 所有客户端都已结束
+
+    }
+
+    /// 单个客户端连接的状态. latency 和 bytes 只由客户端线程写入, 在线程结束后合并.
+    private static final class Client {
+
+        private final LatencyRecorder latency = new LatencyRecorder();
+        private long bytes;
+        private volatile ScxWebSocket webSocket;
+        private volatile long readDeadline; // 0 表示没有在等待回复
+
+    }
+
+    /// 单轮运行的结果, 耗时单位为纳秒.
+    public record Result(int connections, double messagesPerSecond, double megabytesPerSecond,
+                         long p50, long p99, long p999, long max, long errors) {
+
+    }
+
+}
@@ -0,0 +1,82 @@
+package dev.scx.websocket.benchmark;
+
+import dev.scx.io.ByteInput;
+import dev.scx.io.ByteOutput;
+import dev.scx.io.ScxIO;
+import dev.scx.io.endpoint.ByteEndpoint;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/// 基准测试使用的单向内存 ByteEndpoint, 用于只测量读取或写出的一侧.
+///
+/// 需要双向通信时使用 [dev.scx.websocket.endpoint.PipeByteEndpoint].
+///
+/// @author scx567888
+public final class MemoryByteEndpoint implements ByteEndpoint {
+
+    private final ByteInput in;
+    private final ByteOutput out;
+
+    public MemoryByteEndpoint(InputStream in, OutputStream out) {
+        this.in = ScxIO.createByteInput(in);
+        this.out = ScxIO.createByteOutput(out);
+    }
+
+    /// 循环重放 wire 中的字节 (永远不会读到末尾), 写出的数据被丢弃.
+    ///
+    /// 用于在每次调用中只测量解码本身, 而不是创建连接的开销.
+    public static MemoryByteEndpoint replay(byte[] wire) {
+        return new MemoryByteEndpoint(new ReplayInputStream(wire), OutputStream.nullOutputStream());
+    }
+
+    @Override
+    public ByteInput in() {
+        return in;
+    }
+
+    @Override
+    public ByteOutput out() {
+        return out;
+    }
+
+    @Override
+    public void close() throws Exception {
+        in.close();
+        out.close();
+    }
+
+    private static final class ReplayInputStream extends InputStream {
+
+        private final byte[] wire;
+        private int position;
+
+        ReplayInputStream(byte[] wire) {
+            this.wire = wire;
+            this.position = 0;
+        }
+
+        @Override
+        public int read() {
+            var b = wire[position];
+            position = position + 1;
+            if (position == wire.length) {
+                position = 0;
+            }
+            return b & 0b1111_1111;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            var n = Math.min(len, wire.length - position);
+            System.arraycopy(wire, position, b, off, n);
+            position = position + n;
+            if (position == wire.length) {
+                position = 0;
+            }
+            return n;
+        }
+
+    }
+
+}
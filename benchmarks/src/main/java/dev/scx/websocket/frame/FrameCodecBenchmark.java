@@ -0,0 +1,67 @@
+package dev.scx.websocket.frame;
+
+import dev.scx.io.ByteInput;
+import dev.scx.io.ByteOutput;
+import dev.scx.io.ScxIO;
+import dev.scx.websocket.benchmark.MemoryByteEndpoint;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import static dev.scx.websocket.frame.WebSocketProtocolFrameHelper.*;
+
+/// 帧头 + payload 的编码与解码.
+///
+/// 位于 frame 包中, 以便直接访问包私有的 [WebSocketProtocolFrameHelper].
+///
+/// @author scx567888
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrameCodecBenchmark {
+
+    @Param({"16", "1024", "65536"})
+    public int payloadSize;
+
+    @Param({"false", "true"})
+    public boolean masked;
+
+    private WebSocketProtocolFrame writeFrame;
+    private WebSocketProtocolFrame readFrame;
+    private ByteOutput byteOutput;
+    private ByteInput byteInput;
+
+    @Setup
+    public void setup() throws Exception {
+        writeFrame = new WebSocketProtocolFrame();
+        writeFrame.fin = true;
+        writeFrame.opCode = WebSocketOpCode.BINARY.code();
+        writeFrame.masked = masked;
+        writeFrame.maskingKey = masked ? 0x3A5C_9E71 : 0;
+        writeFrame.payloadLength = payloadSize;
+        writeFrame.payloadData = new byte[payloadSize];
+        readFrame = new WebSocketProtocolFrame();
+        byteOutput = ScxIO.createByteOutput(OutputStream.nullOutputStream());
+        // 预先编码一个帧, 解码时循环重放.
+        var wire = new ByteArrayOutputStream();
+        writeProtocolFrame(writeFrame, ScxIO.createByteOutput(wire));
+        byteInput = MemoryByteEndpoint.replay(wire.toByteArray()).in();
+    }
+
+    @Benchmark
+    public void encode() throws Exception {
+        writeProtocolFrame(writeFrame, byteOutput);
+    }
+
+    @Benchmark
+    public WebSocketProtocolFrame decode() throws Exception {
+        readProtocolFrameHeader(byteInput, readFrame);
+        return readProtocolFramePayload(readFrame, byteInput);
+    }
+
+}
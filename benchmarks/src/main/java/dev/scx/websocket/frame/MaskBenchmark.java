@@ -0,0 +1,57 @@
+package dev.scx.websocket.frame;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static dev.scx.websocket.frame.WebSocketMaskHelper.mask;
+
+/// 掩码吞吐量, 分别测量原地掩码和复制掩码 (写出时使用), 以及逐字节掩码作为基准.
+///
+/// @author scx567888
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MaskBenchmark {
+
+    @Param({"7", "16", "125", "256", "4096", "65536", "1048576", "16777216"})
+    public int length;
+
+    private byte[] src;
+    private byte[] dst;
+
+    @Setup
+    public void setup() {
+        src = new byte[length];
+        dst = new byte[length];
+        for (int i = 0; i < length; i = i + 1) {
+            src[i] = (byte) i;
+        }
+    }
+
+    @Benchmark
+    public byte[] maskInPlace() {
+        mask(src, 0, length, 0x3A5C_9E71);
+        return src;
+    }
+
+    @Benchmark
+    public byte[] maskCopy() {
+        mask(src, 0, dst, 0, length, 0x3A5C_9E71);
+        return dst;
+    }
+
+    /// 基准: 逐字节原地掩码.
+    @Benchmark
+    public byte[] maskByteByByte() {
+        var maskingKey = 0x3A5C_9E71;
+        for (int i = 0; i < length; i = i + 1) {
+            src[i] = (byte) (src[i] ^ maskingKey >>> 24 - ((i & 3) << 3));
+        }
+        return src;
+    }
+
+}
@@ -0,0 +1,231 @@
+package dev.scx.websocket;
+
+import dev.scx.websocket.exception.WebSocketProtocolException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import static dev.scx.websocket.WebSocketCloseInfo.PROTOCOL_ERROR;
+import static dev.scx.websocket.WebSocketCloseInfo.TOO_BIG;
+
+/// permessage-deflate 编解码器 (RFC 7692).
+///
+/// 每个连接持有一个实例, Deflater / Inflater 在连接内复用.
+///
+/// - compress 需要由调用方保证串行, 并且压缩顺序必须与发送顺序一致 (上下文接管时压缩状态依赖于之前的消息).
+/// - decompress 只会在读取线程中调用.
+///
+/// @author scx567888
+final class PerMessageDeflateCodec {
+
+    /// SYNC_FLUSH 产生的空 stored block 尾部, 发送时需要移除, 接收时需要补回.
+    private static final byte[] TAIL = {0x00, 0x00, (byte) 0xFF, (byte) 0xFF};
+
+    /// 数组最大长度.
+    private static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+
+    private final Deflater deflater;
+    private final Inflater inflater;
+    private final boolean deflateNoContextTakeover; // 本端压缩是否每条消息重置
+    private final boolean inflateNoContextTakeover; // 对端压缩是否每条消息重置
+
+    public PerMessageDeflateCodec(PerMessageDeflateParams params, boolean isClient) {
+        var deflateMaxWindowBits = isClient ? params.clientMaxWindowBits() : params.serverMaxWindowBits();
+        if (deflateMaxWindowBits < 15) {
+            throw new IllegalArgumentException("Deflater does not support max_window_bits < 15");
+        }
+        this.deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        this.inflater = new Inflater(true);
+        this.deflateNoContextTakeover = isClient ? params.clientNoContextTakeover() : params.serverNoContextTakeover();
+        this.inflateNoContextTakeover = isClient ? params.serverNoContextTakeover() : params.clientNoContextTakeover();
+    }
+
+    /// 压缩一条完整消息的 payload.
+    public byte[] compress(byte[] payloadData) {
+        return compress(payloadData, 0, payloadData.length, false, true);
+    }
+
+    /// 流式压缩消息的一部分, 用于流式发送.
+    ///
+    /// @param flush 是否刷出所有已经输入的数据 (SYNC_FLUSH), 否则返回的数据可能为空.
+    /// @param last  是否为消息的最后一部分, 为 true 时会刷出全部数据并移除尾部.
+    public byte[] compress(byte[] data, int offset, int length, boolean flush, boolean last) {
+        deflater.setInput(data, offset, length);
+        var flushMode = flush || last ? Deflater.SYNC_FLUSH : Deflater.NO_FLUSH;
+        var out = new byte[Math.max(64, length / 2 + 16)];
+        int outLength = 0;
+        while (true) {
+            if (outLength == out.length) {
+                out = Arrays.copyOf(out, out.length * 2);
+            }
+            int n = deflater.deflate(out, outLength, out.length - outLength, flushMode);
+            outLength += n;
+            // 输出缓冲区没有被填满, 表示已经全部刷出.
+            if (outLength < out.length && (flushMode == Deflater.SYNC_FLUSH || deflater.needsInput())) {
+                break;
+            }
+        }
+        if (!last) {
+            return Arrays.copyOf(out, outLength);
+        }
+        if (deflateNoContextTakeover) {
+            deflater.reset();
+        }
+        // 没有任何输出 (上下文接管时的空消息, 或流式发送 flush 之后直接结束), 发送单个 0x00 (RFC 7692 7.2.3.6).
+        if (outLength < TAIL.length) {
+            return new byte[]{0x00};
+        }
+        // 移除尾部 0x00 0x00 0xFF 0xFF
+        return Arrays.copyOf(out, outLength - TAIL.length);
+    }
+
+    /// 解压一条完整消息的 payload. 解压后的大小受 maxMessageSize 约束, 防止压缩炸弹.
+    public byte[] decompress(byte[] payloadData, long maxMessageSize) throws WebSocketProtocolException {
+        // 空的 payload 不是合法的 deflate 数据, 不能补回尾部交给 inflater (会停在不完整的块中), 直接视为空消息.
+        if (payloadData.length == 0) {
+            return payloadData;
+        }
+        // 上限 + 1, 用于判断是否超出.
+        var limit = (int) Math.min(maxMessageSize + 1, MAX_ARRAY_LENGTH);
+        var out = new byte[(int) Math.min(Math.max(64, payloadData.length * 4L), limit)];
+        int length = 0;
+        var tailFed = false;
+        inflater.setInput(payloadData);
+        try {
+            while (true) {
+                if (length == out.length) {
+                    if (out.length >= limit) {
+                        inflater.reset();
+                        throw new WebSocketProtocolException(TOO_BIG.code(), "Message too big");
+                    }
+                    out = Arrays.copyOf(out, (int) Math.min(out.length * 2L, limit));
+                }
+                int n = inflater.inflate(out, length, out.length - length);
+                length += n;
+                if (length > maxMessageSize) {
+                    inflater.reset();
+                    throw new WebSocketProtocolException(TOO_BIG.code(), "Message too big");
+                }
+                if (n != 0) {
+                    continue;
+                }
+                // payload 已经消费完, 补回尾部.
+                if (inflater.needsInput() && !tailFed) {
+                    inflater.setInput(TAIL);
+                    tailFed = true;
+                    continue;
+                }
+                if (inflater.needsInput() || inflater.finished() || inflater.needsDictionary()) {
+                    break;
+                }
+            }
+        } catch (DataFormatException e) {
+            inflater.reset();
+            throw new WebSocketProtocolException(PROTOCOL_ERROR.code(), "invalid compressed data");
+        }
+        // 对端设置了 BFINAL 时 inflater 会结束, 需要重置才能继续使用.
+        if (inflateNoContextTakeover || inflater.finished()) {
+            inflater.reset();
+        }
+        return length == out.length ? out : Arrays.copyOf(out, length);
+    }
+
+    /// 流式解压一条消息, 用于流式读取. 解压后的总大小受 maxMessageSize 约束.
+    public InputStream decompress(InputStream payload, long maxMessageSize) {
+        return new InflaterPayloadInputStream(payload, maxMessageSize);
+    }
+
+    private final class InflaterPayloadInputStream extends InputStream {
+
+        private final InputStream payload;
+        private final long maxMessageSize;
+        private final byte[] buffer;
+        private final byte[] single; // 单字节读取时复用
+        private long length;
+        private boolean inputFed; // 是否读取到过 payload
+        private boolean tailFed;
+        private boolean eof;
+
+        InflaterPayloadInputStream(InputStream payload, long maxMessageSize) {
+            this.payload = payload;
+            this.maxMessageSize = maxMessageSize;
+            this.buffer = new byte[8192];
+            this.single = new byte[1];
+            this.length = 0;
+            this.inputFed = false;
+            this.tailFed = false;
+            this.eof = false;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0b1111_1111;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (eof) {
+                return -1;
+            }
+            if (len == 0) {
+                return 0;
+            }
+            try {
+                while (true) {
+                    int n = inflater.inflate(b, off, len);
+                    if (n > 0) {
+                        length += n;
+                        if (length > maxMessageSize) {
+                            inflater.reset();
+                            eof = true;
+                            throw new WebSocketProtocolException(TOO_BIG.code(), "Message too big");
+                        }
+                        return n;
+                    }
+                    if (inflater.finished() || inflater.needsDictionary()) {
+                        finish();
+                        return -1;
+                    }
+                    if (inflater.needsInput()) {
+                        if (tailFed) {
+                            finish();
+                            return -1;
+                        }
+                        var r = payload.read(buffer);
+                        if (r == -1) {
+                            // 空的 payload 视为空消息, 同 decompress(byte[], long).
+                            if (!inputFed) {
+                                finish();
+                                return -1;
+                            }
+                            // payload 已经消费完, 补回尾部.
+                            inflater.setInput(TAIL);
+                            tailFed = true;
+                        } else if (r > 0) {
+                            inflater.setInput(buffer, 0, r);
+                            inputFed = true;
+                        }
+                    }
+                }
+            } catch (DataFormatException e) {
+                inflater.reset();
+                eof = true;
+                throw new WebSocketProtocolException(PROTOCOL_ERROR.code(), "invalid compressed data");
+            }
+        }
+
+        private void finish() {
+            eof = true;
+            // 对端设置了 BFINAL 时 inflater 会结束, 需要重置才能继续使用.
+            if (inflateNoContextTakeover || inflater.finished()) {
+                inflater.reset();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,208 @@
+package dev.scx.websocket;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/// permessage-deflate 扩展参数 (RFC 7692).
+///
+/// 本库不负责 HTTP 握手, 握手由上层完成. 本类只提供 `Sec-WebSocket-Extensions` 头的解析与协商辅助:
+///
+/// - 客户端: 使用 [#toHeaderValue()] 生成 offer, 收到响应后使用 [#parseResponse(String)] 得到最终参数.
+/// - 服务端: 使用 [#negotiate(String)] 从客户端 offer 中选出可接受的参数, 再使用 [#toHeaderValue()] 生成响应.
+///
+/// 注意: JDK 的 [java.util.zip.Deflater] 无法调整 LZ77 窗口大小 (固定为 15),
+/// 因此本端作为压缩方时无法接受小于 15 的 max_window_bits.
+/// 解压方不受此限制 (15 位窗口可以解压任意更小窗口压缩出的数据).
+///
+/// @param serverNoContextTakeover 服务端在每条消息之后重置压缩上下文
+/// @param clientNoContextTakeover 客户端在每条消息之后重置压缩上下文
+/// @param serverMaxWindowBits     服务端压缩窗口大小 (8 - 15)
+/// @param clientMaxWindowBits     客户端压缩窗口大小 (8 - 15)
+/// @author scx567888
+/// @see <a href="https://www.rfc-editor.org/rfc/rfc7692">https://www.rfc-editor.org/rfc/rfc7692</a>
+public record PerMessageDeflateParams(boolean serverNoContextTakeover,
+                                      boolean clientNoContextTakeover,
+                                      int serverMaxWindowBits,
+                                      int clientMaxWindowBits) {
+
+    public static final String EXTENSION_NAME = "permessage-deflate";
+
+    public static final PerMessageDeflateParams DEFAULT = new PerMessageDeflateParams(false, false, 15, 15);
+
+    public PerMessageDeflateParams {
+        if (serverMaxWindowBits < 8 || serverMaxWindowBits > 15) {
+            throw new IllegalArgumentException("server_max_window_bits must be in [8, 15]: " + serverMaxWindowBits);
+        }
+        if (clientMaxWindowBits < 8 || clientMaxWindowBits > 15) {
+            throw new IllegalArgumentException("client_max_window_bits must be in [8, 15]: " + clientMaxWindowBits);
+        }
+    }
+
+    /// 解析 `Sec-WebSocket-Extensions` 头中所有的 permessage-deflate 项, 非法项会被忽略.
+    public static List<PerMessageDeflateParams> parse(String headerValue) {
+        var result = new ArrayList<PerMessageDeflateParams>();
+        if (headerValue == null) {
+            return result;
+        }
+        for (var extension : headerValue.split(",")) {
+            var params = parseExtension(extension);
+            if (params != null) {
+                result.add(params);
+            }
+        }
+        return result;
+    }
+
+    /// 服务端协商. 按客户端 offer 的顺序选出第一个本端可以满足的参数.
+    ///
+    /// @param offerHeaderValue 客户端发送的 `Sec-WebSocket-Extensions` 头
+    /// @return 协商结果, 没有可接受的 offer 时返回 null (即不启用压缩)
+    public static PerMessageDeflateParams negotiate(String offerHeaderValue) {
+        for (var offer : parse(offerHeaderValue)) {
+            // 服务端是压缩方, 无法满足更小的窗口.
+            if (offer.serverMaxWindowBits < 15) {
+                continue;
+            }
+            // 不限制客户端窗口, 我们的解压端可以处理任意窗口.
+            return new PerMessageDeflateParams(offer.serverNoContextTakeover, offer.clientNoContextTakeover, 15, 15);
+        }
+        return null;
+    }
+
+    /// 客户端解析服务端响应.
+    ///
+    /// @param responseHeaderValue 服务端响应的 `Sec-WebSocket-Extensions` 头
+    /// @return 协商结果, 服务端未启用压缩时返回 null
+    /// @throws IllegalArgumentException 响应非法或本端无法满足 (此时按照 RFC 客户端应当终止连接)
+    public static PerMessageDeflateParams parseResponse(String responseHeaderValue) throws IllegalArgumentException {
+        if (responseHeaderValue == null) {
+            return null;
+        }
+        PerMessageDeflateParams result = null;
+        for (var extension : responseHeaderValue.split(",")) {
+            if (!EXTENSION_NAME.equalsIgnoreCase(extensionName(extension))) {
+                continue;
+            }
+            var params = parseExtension(extension);
+            if (params == null) {
+                throw new IllegalArgumentException("Invalid permessage-deflate response: " + extension.trim());
+            }
+            if (result != null) {
+                throw new IllegalArgumentException("Duplicate permessage-deflate response");
+            }
+            result = params;
+        }
+        // 客户端是压缩方, 无法满足更小的窗口.
+        if (result != null && result.clientMaxWindowBits < 15) {
+            throw new IllegalArgumentException("Unsupported client_max_window_bits: " + result.clientMaxWindowBits);
+        }
+        return result;
+    }
+
+    private static String extensionName(String extension) {
+        var i = extension.indexOf(';');
+        return (i == -1 ? extension : extension.substring(0, i)).trim();
+    }
+
+    /// 解析单个扩展项, 不是 permessage-deflate 或者参数非法时返回 null.
+    private static PerMessageDeflateParams parseExtension(String extension) {
+        var parts = extension.split(";");
+        if (!EXTENSION_NAME.equalsIgnoreCase(parts[0].trim())) {
+            return null;
+        }
+        Boolean serverNoContextTakeover = null;
+        Boolean clientNoContextTakeover = null;
+        Integer serverMaxWindowBits = null;
+        Integer clientMaxWindowBits = null;
+        for (int i = 1; i < parts.length; i = i + 1) {
+            var part = parts[i].trim();
+            if (part.isEmpty()) {
+                continue;
+            }
+            var eq = part.indexOf('=');
+            var name = (eq == -1 ? part : part.substring(0, eq)).trim().toLowerCase();
+            var value = eq == -1 ? null : unquote(part.substring(eq + 1).trim());
+            // 每个参数只能出现一次
+            switch (name) {
+                case "server_no_context_takeover" -> {
+                    if (serverNoContextTakeover != null || value != null) {
+                        return null;
+                    }
+                    serverNoContextTakeover = true;
+                }
+                case "client_no_context_takeover" -> {
+                    if (clientNoContextTakeover != null || value != null) {
+                        return null;
+                    }
+                    clientNoContextTakeover = true;
+                }
+                case "server_max_window_bits" -> {
+                    if (serverMaxWindowBits != null || value == null) {
+                        return null;
+                    }
+                    serverMaxWindowBits = parseWindowBits(value);
+                    if (serverMaxWindowBits == null) {
+                        return null;
+                    }
+                }
+                case "client_max_window_bits" -> {
+                    if (clientMaxWindowBits != null) {
+                        return null;
+                    }
+                    // offer 中允许没有值, 表示客户端支持该参数.
+                    clientMaxWindowBits = value == null ? Integer.valueOf(15) : parseWindowBits(value);
+                    if (clientMaxWindowBits == null) {
+                        return null;
+                    }
+                }
+                default -> {
+                    return null;
+                }
+            }
+        }
+        return new PerMessageDeflateParams(
+            serverNoContextTakeover != null,
+            clientNoContextTakeover != null,
+            serverMaxWindowBits != null ? serverMaxWindowBits : 15,
+            clientMaxWindowBits != null ? clientMaxWindowBits : 15
+        );
+    }
+
+    private static Integer parseWindowBits(String value) {
+        if (value.length() != 1 && value.length() != 2) {
+            return null;
+        }
+        try {
+            var bits = Integer.parseInt(value);
+            return bits >= 8 && bits <= 15 ? bits : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String unquote(String value) {
+        if (value.length() >= 2 && value.charAt(0) == '"' && value.charAt(value.length() - 1) == '"') {
+            return value.substring(1, value.length() - 1);
+        }
+        return value;
+    }
+
+    /// 生成 `Sec-WebSocket-Extensions` 头的值.
+    public String toHeaderValue() {
+        var sb = new StringBuilder(EXTENSION_NAME);
+        if (serverNoContextTakeover) {
+            sb.append("; server_no_context_takeover");
+        }
+        if (clientNoContextTakeover) {
+            sb.append("; client_no_context_takeover");
+        }
+        if (serverMaxWindowBits < 15) {
+            sb.append("; server_max_window_bits=").append(serverMaxWindowBits);
+        }
+        if (clientMaxWindowBits < 15) {
+            sb.append("; client_max_window_bits=").append(clientMaxWindowBits);
+        }
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,45 @@
+package dev.scx.websocket;
+
+import dev.scx.websocket.exception.WebSocketProtocolException;
+import dev.scx.websocket.frame.PreparedWebSocketFrame;
+
+import static dev.scx.websocket.ScxWebSocketImplHelper.messageToFrame;
+
+/// 预编码的消息, 用于将同一消息发送给大量连接, 参见 [ScxWebSocket#sendPrepared(PreparedMessage)].
+///
+/// 消息只会被编码一次 (包括 UTF-8 编码, 校验和帧头构建).
+/// 启用了 permessage-deflate 的连接, 压缩上下文各不相同, 会退化为普通的 [ScxWebSocket#send(WebSocketMessage)].
+///
+/// @author scx567888
+public final class PreparedMessage {
+
+    private final WebSocketMessage message;
+    private final PreparedWebSocketFrame frame;
+
+    private PreparedMessage(WebSocketMessage message, PreparedWebSocketFrame frame) {
+        this.message = message;
+        this.frame = frame;
+    }
+
+    /// @throws WebSocketProtocolException 消息无法编码为合法的帧 (如控制帧过长).
+    public static PreparedMessage of(WebSocketMessage message) throws WebSocketProtocolException {
+        return new PreparedMessage(message, PreparedWebSocketFrame.of(messageToFrame(message)));
+    }
+
+    public static PreparedMessage of(String text) throws WebSocketProtocolException {
+        return of(new TextMessage(text));
+    }
+
+    public static PreparedMessage of(byte[] binary) throws WebSocketProtocolException {
+        return of(new BinaryMessage(binary));
+    }
+
+    public WebSocketMessage message() {
+        return message;
+    }
+
+    public PreparedWebSocketFrame frame() {
+        return frame;
+    }
+
+}
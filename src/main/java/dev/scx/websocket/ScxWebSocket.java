@@ -5,6 +5,13 @@ import dev.scx.websocket.exception.WebSocketIOException;
 import dev.scx.websocket.exception.WebSocketInvalidStateException;
 import dev.scx.websocket.exception.WebSocketProtocolException;
 import dev.scx.websocket.frame.ScxFrameWebSocket;
+import dev.scx.websocket.frame.ScxFrameWebSocketOptions;
+import dev.scx.websocket.frame.WebSocketFrame;
+
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import static dev.scx.websocket.WebSocketCloseInfo.NORMAL_CLOSE;
 
@@ -42,30 +49,77 @@ import static dev.scx.websocket.WebSocketCloseInfo.NORMAL_CLOSE;
 ///
 /// 如果上层需要判断一批 WebSocket 是否 "仍然活着" , 应基于 Ping/Pong、最近读写时间、
 /// 超时策略以及 read()/send() 的异常结果建立自己的会话健康判断, 而不是依赖瞬时状态查询.
+/// [WebSocketKeepAlive] 提供了基于 Ping/Pong 和空闲时间的通用实现.
 ///
 /// @author scx567888
 public interface ScxWebSocket extends AutoCloseable {
 
+    static ScxWebSocket of(ScxFrameWebSocket frameWebSocket, ScxWebSocketOptions options) {
+        return new ScxWebSocketImpl(frameWebSocket, options);
+    }
+
     static ScxWebSocket of(ScxFrameWebSocket frameWebSocket, long maxMessageSize) {
-        return new ScxWebSocketImpl(frameWebSocket, maxMessageSize);
+        return new ScxWebSocketImpl(frameWebSocket, new ScxWebSocketOptions().maxMessageSize(maxMessageSize));
     }
 
     static ScxWebSocket of(ScxFrameWebSocket frameWebSocket) {
-        return new ScxWebSocketImpl(frameWebSocket, 1024 * 1024 * 64); // 默认 64MB
+        return new ScxWebSocketImpl(frameWebSocket, new ScxWebSocketOptions());
+    }
+
+    /// 启用 permessage-deflate 时, 会自动为底层 ScxFrameWebSocket 开启 RSV1. metrics 和 observer 也会同时用于底层 ScxFrameWebSocket.
+    static ScxWebSocket of(ByteEndpoint endpoint, boolean isClient, ScxWebSocketOptions options) {
+        var frameOptions = new ScxFrameWebSocketOptions().rsv1Allowed(options.perMessageDeflate() != null).metrics(options.metrics()).observer(options.observer());
+        return new ScxWebSocketImpl(ScxFrameWebSocket.of(endpoint, isClient, frameOptions), options);
     }
 
     static ScxWebSocket of(ByteEndpoint endpoint, boolean isClient, long maxMessageSize) {
-        return new ScxWebSocketImpl(ScxFrameWebSocket.of(endpoint, isClient), maxMessageSize);
+        return of(endpoint, isClient, new ScxWebSocketOptions().maxMessageSize(maxMessageSize));
     }
 
     static ScxWebSocket of(ByteEndpoint endpoint, boolean isClient) {
-        return new ScxWebSocketImpl(ScxFrameWebSocket.of(endpoint, isClient), 1024 * 1024 * 64); // 默认 64MB
+        return of(endpoint, isClient, new ScxWebSocketOptions());
     }
 
     WebSocketMessage read() throws WebSocketIOException, WebSocketProtocolException;
 
+    /// 以流的形式读取下一条消息, TEXT / BINARY 消息不会被聚合到内存中, 适用于超大消息.
+    ///
+    /// 读取 payload 的过程中, 穿插到达的控制帧会被自动处理 (与 [#read()] 相同, 收到 Ping 自动回复 Pong),
+    /// 但不会返回给调用方. 若读取过程中收到 Close, 则 payload 的读取会以 [WebSocketIOException] 结束.
+    ///
+    /// 消息总长度依然受 maxMessageSize 约束, 单帧长度受底层 maxWebSocketFrameSize 约束.
+    ///
+    /// [#read()] 读取分片消息的过程中抛出异常时, 该消息剩余的分片只能继续由 [#read()] 读取, 此时调用本方法会抛出 [WebSocketInvalidStateException].
+    WebSocketMessageStream readStream() throws WebSocketIOException, WebSocketProtocolException, WebSocketInvalidStateException;
+
     void send(WebSocketMessage message) throws WebSocketIOException, WebSocketProtocolException, WebSocketInvalidStateException;
 
+    /// 批量发送多条消息, 所有帧连续写出后只刷新一次, 适用于突发的大量小消息.
+    ///
+    /// 状态校验 (如已发送 Close 后不允许再发送数据消息) 会在写出前对整批进行, 失败时不会写出任何消息.
+    /// 批次中 Close 之后的 Close 会被忽略.
+    void sendMessages(List<? extends WebSocketMessage> messages) throws WebSocketIOException, WebSocketProtocolException, WebSocketInvalidStateException;
+
+    /// 异步发送一条消息, 语义同 [ScxFrameWebSocket#sendFrameAsync(WebSocketFrame)].
+    ///
+    /// 状态校验失败时直接抛出 [WebSocketInvalidStateException], 其余错误通过返回的 future 传递.
+    /// 异步发送的消息之间保证顺序. 之后同步发送的数据消息 (包括流式发送) 会等待之前的异步消息写出后再写出,
+    /// 因此在写线程执行的 future 回调中, 还有其他未完成的异步消息时不能同步发送数据消息.
+    CompletableFuture<Boolean> sendAsync(WebSocketMessage message) throws WebSocketInvalidStateException;
+
+    /// 发送预编码的消息, 用于将同一消息发送给大量连接 (参见 [WebSocketBroadcast]). 语义同 [#send(WebSocketMessage)].
+    void sendPrepared(PreparedMessage message) throws WebSocketIOException, WebSocketProtocolException, WebSocketInvalidStateException;
+
+    /// 以流的形式发送一条 BINARY 消息, 写入的数据会在缓冲区写满时作为分片发送, close() 时发送最后一个分片.
+    ///
+    /// 流打开期间, 其他线程发送数据消息 (TEXT / BINARY) 会等待流关闭, 控制帧 (Ping / Pong / Close) 可以穿插发送.
+    /// 打开流的线程在流关闭前发送数据消息 (包括再打开一个流) 会抛出 [WebSocketInvalidStateException].
+    /// 流必须在打开它的线程中关闭. 写入过程中的错误会以 [WebSocketIOException] 等异常抛出.
+    OutputStream sendBinaryStream() throws WebSocketInvalidStateException;
+
+    /// 以流的形式发送一条 TEXT 消息 (UTF-8), 语义同 [#sendBinaryStream()].
+    Writer sendTextStream() throws WebSocketInvalidStateException;
+
     /// close 语义等同于 [ScxFrameWebSocket#close()]
     @Override
     void close();
@@ -5,13 +5,28 @@ import dev.scx.websocket.exception.WebSocketInvalidStateException;
 import dev.scx.websocket.exception.WebSocketProtocolException;
 import dev.scx.websocket.frame.ScxFrameWebSocket;
 import dev.scx.websocket.frame.WebSocketFrame;
+import dev.scx.websocket.frame.WebSocketFrameStream;
 import dev.scx.websocket.frame.WebSocketOpCode;
+import dev.scx.websocket.metrics.WebSocketMetrics;
 
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReentrantLock;
 
 import static dev.scx.websocket.ScxWebSocketImplHelper.*;
 import static dev.scx.websocket.WebSocketCloseInfo.*;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 /// ScxWebSocketImpl
 ///
@@ -20,31 +35,152 @@ final class ScxWebSocketImpl implements ScxWebSocket {
 
     private final ScxFrameWebSocket frameWebSocket; // 帧级别 websocket
     private final long maxMessageSize; // 允许的最大消息长度, 只约束接收端.
-    private final List<WebSocketFrame> fragmentFrames; // 聚合中的帧
-    private int fragmentPayloadLength; // 聚合中的帧总长度.
+    private final PerMessageDeflateCodec deflateCodec; // permessage-deflate 编解码器, null 表示未启用
+    private final int fragmentSize; // 流式发送时单个分片的大小
+    private final ReentrantLock messageLock; // 数据消息锁, 保证数据消息的分片不会交错, 同时保证压缩顺序和发送顺序一致. 控制帧不需要此锁.
+    private boolean messageStreamOpen; // 是否有未关闭的流式发送, 只在持有 messageLock 时访问
+    private volatile WebSocketAsyncSendOrder asyncSendOrder; // sendAsync 的顺序控制, 第一次调用 sendAsync 时创建 (持有 messageLock 时)
+    private final WebSocketMessageAccumulator accumulator; // 分片消息的聚合缓冲区
+    private WebSocketOpCode fragmentOpCode; // 聚合中的消息的 opCode (起始帧)
+    private boolean fragmentRsv1; // 聚合中的消息的 rsv1 (起始帧)
     private boolean inContinuation; // 是否处于聚合中
-    private boolean closeSent; // 是否发送过 close 帧
-    private boolean closeReceived; // 是否接收过 close 帧
+    private WebSocketMessageAggregateEvent aggregateEvent; // 聚合中的消息的 JFR 事件, 未启用时为 null
+    private int fragmentCount; // 聚合中的消息已收到的分片数
+    private final Utf8Validator textValidator; // TEXT 消息的增量 UTF-8 校验器
+    private boolean validatingText; // 当前消息是否需要逐帧校验 UTF-8 (未压缩的 TEXT 消息)
+    private volatile boolean closeSent; // 是否发送过 close 帧
+    private volatile boolean closeReceived; // 是否接收过 close 帧
+    private InputStream currentMessageStream; // 流式读取中尚未读完的消息
+    private volatile boolean dataReceived; // 自上次检查以来是否收到过数据帧, 供 WebSocketKeepAlive 使用
+    private volatile boolean pongReceived; // 自上次检查以来是否收到过 Pong, 供 WebSocketKeepAlive 使用
+    private volatile boolean closed;
+    private final WebSocketMetrics metrics; // 运行指标, null 表示不统计
+    private final WebSocketObserver observer; // 观察者, null 表示没有
 
-    public ScxWebSocketImpl(ScxFrameWebSocket frameWebSocket, long maxMessageSize) {
+    public ScxWebSocketImpl(ScxFrameWebSocket frameWebSocket, ScxWebSocketOptions options) {
         this.frameWebSocket = frameWebSocket;
-        this.maxMessageSize = maxMessageSize;
-        this.fragmentFrames = new ArrayList<>();
-        this.fragmentPayloadLength = 0;
+        this.maxMessageSize = options.maxMessageSize();
+        var perMessageDeflate = options.perMessageDeflate();
+        this.deflateCodec = perMessageDeflate != null ? new PerMessageDeflateCodec(perMessageDeflate, frameWebSocket.isClient()) : null;
+        this.fragmentSize = options.fragmentSize();
+        this.messageLock = new ReentrantLock();
+        this.messageStreamOpen = false;
+        this.asyncSendOrder = null;
+        this.accumulator = new WebSocketMessageAccumulator();
+        this.fragmentOpCode = null;
+        this.fragmentRsv1 = false;
         this.inContinuation = false;
+        this.aggregateEvent = null;
+        this.fragmentCount = 0;
+        this.textValidator = new Utf8Validator();
+        this.validatingText = false;
         this.closeSent = false;
         this.closeReceived = false;
+        this.currentMessageStream = null;
+        this.dataReceived = false;
+        this.pongReceived = false;
+        this.closed = false;
+        this.metrics = options.metrics();
+        this.observer = options.observer();
     }
 
     @Override
     public WebSocketMessage read() throws WebSocketIOException, WebSocketProtocolException {
+        WebSocketMessage message;
+        try {
+            message = readMessage();
+        } catch (WebSocketProtocolException e) {
+            recordProtocolError(e);
+            throw e;
+        }
+        if (metrics != null) {
+            metrics.recordMessageIn();
+        }
+        if (observer != null) {
+            observer.onMessage(message);
+        }
+        return message;
+    }
+
+    @Override
+    public WebSocketMessageStream readStream() throws WebSocketIOException, WebSocketProtocolException, WebSocketInvalidStateException {
+        WebSocketMessageStream messageStream;
+        try {
+            messageStream = readMessageStream();
+        } catch (WebSocketProtocolException e) {
+            recordProtocolError(e);
+            throw e;
+        }
+        if (metrics != null) {
+            metrics.recordMessageIn();
+        }
+        return messageStream;
+    }
+
+    private WebSocketMessage readMessage() throws WebSocketIOException, WebSocketProtocolException {
+        // 跳过上一个流式消息未读完的部分.
+        skipCurrentMessageStream();
         var frame = readFrameUntilLast();
+        // 压缩消息 需要先解压.
+        if (frame.rsv1()) {
+            frame = decompressFrame(frame);
+            // 压缩消息只能在解压后校验.
+            if (frame.opCode() == WebSocketOpCode.TEXT) {
+                textValidator.reset();
+                validateText(frame.payloadData(), true);
+            }
+        }
         // 针对一些特殊的帧做处理.
         switch (frame.opCode()) {
             case CLOSE -> handleCloseFrame(frame);
             case PING -> handlePingFrame(frame);
         }
-        return frameToMessage(frame);
+        // 未压缩的 TEXT 消息已经在读取时逐帧校验过了.
+        return frameToMessage(frame, textValidator.isAscii());
+    }
+
+    private WebSocketMessageStream readMessageStream() throws WebSocketIOException, WebSocketProtocolException, WebSocketInvalidStateException {
+        // read() 聚合分片消息的过程中抛出了异常, 已聚合的分片无法转交给流, 只能由 read() 继续读取.
+        if (inContinuation) {
+            throw new WebSocketInvalidStateException("Cannot read a message stream while a fragmented message started by read() is in progress");
+        }
+        // 跳过上一个流式消息未读完的部分.
+        skipCurrentMessageStream();
+        var frameStream = readFrameStream();
+        switch (frameStream.opCode()) {
+            // 控制帧直接读取完整 payload.
+            case PING, PONG, CLOSE -> {
+                var frame = readControlFrame(frameStream);
+                switch (frame.opCode()) {
+                    case CLOSE -> handleCloseFrame(frame);
+                    case PING -> handlePingFrame(frame);
+                }
+                return new WebSocketMessageStream(frame.opCode(), new ByteArrayInputStream(frame.payloadData()));
+            }
+            // TEXT 或 BINARY 帧.
+            case TEXT, BINARY -> {
+                InputStream payload = new MessagePayloadInputStream(frameStream);
+                // 压缩消息 需要先解压.
+                if (frameStream.rsv1()) {
+                    if (deflateCodec == null) {
+                        throw new WebSocketProtocolException(PROTOCOL_ERROR.code(), "unsupported rsv");
+                    }
+                    payload = deflateCodec.decompress(payload, maxMessageSize);
+                }
+                if (frameStream.opCode() == WebSocketOpCode.TEXT) {
+                    payload = new Utf8ValidatingInputStream(payload);
+                }
+                this.currentMessageStream = payload;
+                // 读取 payload 时才会发现的协议错误 (如超出大小限制, 非法的 UTF-8) 同样需要统计和通知.
+                // 跳过未读完的部分时的错误由下一次 read / readStream 统计, 因此 currentMessageStream 保存的是未包装的流.
+                if (metrics != null || observer != null) {
+                    payload = new ProtocolErrorReportingInputStream(payload);
+                }
+                return new WebSocketMessageStream(frameStream.opCode(), payload);
+            }
+            // CONTINUATION 帧.
+            default -> throw new WebSocketProtocolException(PROTOCOL_ERROR.code(), "Unexpected CONTINUATION frame (no fragmented message in progress)");
+        }
     }
 
     @Override
@@ -65,103 +201,524 @@ final class ScxWebSocketImpl implements ScxWebSocket {
 
         var frame = messageToFrame(message);
 
-        frameWebSocket.sendFrame(frame);
+        switch (frame.opCode()) {
+            case TEXT, BINARY -> sendDataFrame(frame);
+            case CLOSE -> {
+                awaitAsyncIdle();
+                frameWebSocket.sendFrame(frame);
+            }
+            default -> frameWebSocket.sendFrame(frame);
+        }
 
         // 发送成功才算
         if (frame.opCode() == WebSocketOpCode.CLOSE) {
             closeSent = true;
+            notifyCloseSent(((CloseMessage) message).closeInfo());
+        }
+        recordMessagesOut(1);
+    }
+
+    @Override
+    public void sendMessages(List<? extends WebSocketMessage> messages) throws WebSocketIOException, WebSocketProtocolException, WebSocketInvalidStateException {
+        if (messages.isEmpty()) {
+            return;
+        }
+        // 整批持有数据消息锁, 保证压缩顺序和发送顺序一致, 同时不会和流式消息的分片交错.
+        lockMessage();
+        try {
+            // 1, 先转换并校验状态, 此时还未压缩, 失败时不会影响压缩上下文.
+            var frames = new ArrayList<WebSocketFrame>(messages.size());
+            var closeInBatch = false;
+            WebSocketCloseInfo batchCloseInfo = null;
+            for (var message : messages) {
+                if (closeSent || closeInBatch) { // 如果已经发送过 close 帧
+                    if (!(message instanceof CloseMessage)) { // 不允许发送非 close 的其他帧.
+                        throw new WebSocketInvalidStateException("Cannot send " + messageToOpCode(message) + " after CLOSE has been sent");
+                    } else { // 直接忽略
+                        continue;
+                    }
+                }
+                if (closeReceived) { // 如果已经接收过 close 帧
+                    if (!(message instanceof CloseMessage)) { // 不允许发送非 close 的其他帧.
+                        throw new WebSocketInvalidStateException("Cannot send " + messageToOpCode(message) + " after CLOSE has been received");
+                    }
+                }
+                var frame = messageToFrame(message);
+                // 控制帧需要在压缩之前提前校验长度, 避免压缩后才在帧级别校验失败.
+                if (frame.opCode() != WebSocketOpCode.TEXT && frame.opCode() != WebSocketOpCode.BINARY) {
+                    if (frame.payloadData().length > 125) {
+                        throw new WebSocketProtocolException(PROTOCOL_ERROR.code(), frame.opCode() + " frame payload length must be <= 125 bytes");
+                    }
+                    if (frame.opCode() == WebSocketOpCode.CLOSE) {
+                        closeInBatch = true;
+                        batchCloseInfo = ((CloseMessage) message).closeInfo();
+                    }
+                }
+                frames.add(frame);
+            }
+            // 2, 压缩数据帧.
+            if (deflateCodec != null) {
+                for (int i = 0; i < frames.size(); i = i + 1) {
+                    var frame = frames.get(i);
+                    if (frame.opCode() == WebSocketOpCode.TEXT || frame.opCode() == WebSocketOpCode.BINARY) {
+                        frames.set(i, compressFrame(frame));
+                    }
+                }
+            }
+            // 3, 一次性写出.
+            frameWebSocket.sendFrames(frames);
+            // 发送成功才算
+            if (closeInBatch) {
+                closeSent = true;
+                notifyCloseSent(batchCloseInfo);
+            }
+            recordMessagesOut(frames.size());
+        } finally {
+            messageLock.unlock();
+        }
+    }
+
+    @Override
+    public void sendPrepared(PreparedMessage message) throws WebSocketIOException, WebSocketProtocolException, WebSocketInvalidStateException {
+        // 压缩上下文是每个连接独立的, 无法复用预编码的帧.
+        if (deflateCodec != null) {
+            send(message.message());
+            return;
+        }
+
+        var opCode = message.frame().frame().opCode();
+
+        if (closeSent) { // 如果已经发送过 close 帧
+            if (opCode != WebSocketOpCode.CLOSE) { // 不允许发送非 close 的其他帧.
+                throw new WebSocketInvalidStateException("Cannot send " + opCode + " after CLOSE has been sent");
+            } else { // 直接忽略
+                return;
+            }
+        }
+
+        if (closeReceived) { // 如果已经接收过 close 帧
+            if (opCode != WebSocketOpCode.CLOSE) { // 不允许发送非 close 的其他帧.
+                throw new WebSocketInvalidStateException("Cannot send " + opCode + " after CLOSE has been received");
+            }
+        }
+
+        switch (opCode) {
+            case TEXT, BINARY -> {
+                // 数据消息依然需要数据消息锁, 不能和流式消息的分片交错.
+                lockMessage();
+                try {
+                    frameWebSocket.sendPreparedFrame(message.frame());
+                } finally {
+                    messageLock.unlock();
+                }
+            }
+            case CLOSE -> {
+                awaitAsyncIdle();
+                frameWebSocket.sendPreparedFrame(message.frame());
+            }
+            default -> frameWebSocket.sendPreparedFrame(message.frame());
+        }
+
+        // 发送成功才算
+        if (opCode == WebSocketOpCode.CLOSE) {
+            closeSent = true;
+            notifyCloseSent(((CloseMessage) message.message()).closeInfo());
         }
+        recordMessagesOut(1);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> sendAsync(WebSocketMessage message) throws WebSocketInvalidStateException {
+        WebSocketFrame frame;
+        WebSocketAsyncSendOrder order;
+        long ticket;
+        // 持有数据消息锁压缩并领取序号, 保证入队顺序和压缩顺序一致.
+        messageLock.lock();
+        try {
+            if (messageStreamOpen && (message instanceof TextMessage || message instanceof BinaryMessage)) {
+                throw new WebSocketInvalidStateException("Cannot send " + messageToOpCode(message) + " while a message stream is open on the same thread");
+            }
+            if (closeSent) { // 如果已经发送过 close 帧
+                if (!(message instanceof CloseMessage)) { // 不允许发送非 close 的其他帧.
+                    throw new WebSocketInvalidStateException("Cannot send " + messageToOpCode(message) + " after CLOSE has been sent");
+                } else { // 直接忽略
+                    return CompletableFuture.completedFuture(false);
+                }
+            }
+
+            if (closeReceived) { // 如果已经接收过 close 帧
+                if (!(message instanceof CloseMessage)) { // 不允许发送非 close 的其他帧.
+                    throw new WebSocketInvalidStateException("Cannot send " + messageToOpCode(message) + " after CLOSE has been received");
+                }
+            }
+
+            frame = messageToFrame(message);
+            if (deflateCodec != null && (frame.opCode() == WebSocketOpCode.TEXT || frame.opCode() == WebSocketOpCode.BINARY)) {
+                frame = compressFrame(frame);
+            }
+            order = asyncSendOrder;
+            if (order == null) {
+                order = new WebSocketAsyncSendOrder();
+                asyncSendOrder = order;
+            }
+            ticket = order.takeTicket();
+        } finally {
+            messageLock.unlock();
+        }
+        // 入队 (BLOCK 策略下可能阻塞) 时不持有数据消息锁.
+        var asyncFrame = frame;
+        return order.enqueue(ticket, () -> enqueueFrame(asyncFrame, message));
+    }
+
+    private CompletableFuture<Boolean> enqueueFrame(WebSocketFrame frame, WebSocketMessage message) {
+        // 领取序号之后, 排在前面的 CLOSE 可能已经入队.
+        if (closeSent) {
+            if (frame.opCode() != WebSocketOpCode.CLOSE) {
+                return CompletableFuture.failedFuture(new WebSocketInvalidStateException("Cannot send " + frame.opCode() + " after CLOSE has been sent"));
+            }
+            return CompletableFuture.completedFuture(false);
+        }
+
+        var future = frameWebSocket.sendFrameAsync(frame);
+
+        // 入队成功即视为已发送 close, 之后入队的消息都会排在 close 之后.
+        if (frame.opCode() == WebSocketOpCode.CLOSE && !future.isCompletedExceptionally() && future.getNow(true)) {
+            closeSent = true;
+            notifyCloseSent(((CloseMessage) message).closeInfo());
+        }
+        recordMessagesOut(1);
+        return future;
+    }
 
+    @Override
+    public OutputStream sendBinaryStream() throws WebSocketInvalidStateException {
+        return openMessageStream(WebSocketOpCode.BINARY);
+    }
+
+    @Override
+    public Writer sendTextStream() throws WebSocketInvalidStateException {
+        return new OutputStreamWriter(openMessageStream(WebSocketOpCode.TEXT), UTF_8);
+    }
+
+    private OutputStream openMessageStream(WebSocketOpCode opCode) throws WebSocketInvalidStateException {
+        checkDataMessageState(opCode);
+        // 持有数据消息锁直到流关闭, 期间其他数据消息需要等待, 控制帧不受影响.
+        lockMessage();
+        try {
+            checkDataMessageState(opCode);
+        } catch (WebSocketInvalidStateException e) {
+            messageLock.unlock();
+            throw e;
+        }
+        messageStreamOpen = true;
+        recordMessagesOut(1);
+        return new MessagePayloadOutputStream(opCode);
     }
 
     @Override
     public void close() {
+        closed = true;
         frameWebSocket.close();  // 这里有可能已经被远端关闭 我们忽略异常
     }
 
+    boolean isClosed() {
+        return closed;
+    }
+
+    /// 返回自上次调用以来是否收到过数据帧, 同时清除标志.
+    boolean pollDataReceived() {
+        if (dataReceived) {
+            dataReceived = false;
+            return true;
+        }
+        return false;
+    }
+
+    /// 返回自上次调用以来是否收到过 Pong, 同时清除标志.
+    boolean pollPongReceived() {
+        if (pongReceived) {
+            pongReceived = false;
+            return true;
+        }
+        return false;
+    }
+
+    private void recordMessagesOut(int messages) {
+        if (metrics != null) {
+            metrics.recordMessagesOut(messages);
+        }
+    }
+
+    private void recordProtocolError(WebSocketProtocolException e) {
+        if (metrics != null) {
+            metrics.recordProtocolError(e.closeCode());
+        }
+        if (observer != null) {
+            observer.onProtocolError(e);
+        }
+    }
+
+    private void notifyCloseSent(WebSocketCloseInfo closeInfo) {
+        if (observer != null) {
+            observer.onCloseSent(closeInfo);
+        }
+    }
+
+    /// 读取下一帧的帧头, 同时记录连接的活动.
+    /// 只在标志未设置时写入, 避免每一帧都写 volatile 字段.
+    private WebSocketFrameStream readFrameStream() throws WebSocketIOException, WebSocketProtocolException {
+        var frameStream = frameWebSocket.readFrameStream();
+        switch (frameStream.opCode()) {
+            case PONG -> {
+                if (!pongReceived) {
+                    pongReceived = true;
+                }
+            }
+            case TEXT, BINARY, CONTINUATION -> {
+                if (!dataReceived) {
+                    dataReceived = true;
+                }
+            }
+        }
+        return frameStream;
+    }
+
     /// 读取一个完整消息帧.
+    ///
+    /// 分片消息的每个分片会直接读入聚合缓冲区, 不会为每个分片单独分配数组.
     private WebSocketFrame readFrameUntilLast() throws WebSocketIOException, WebSocketProtocolException {
         while (true) {
-            // 读取帧.
-            var frame = this.frameWebSocket.readFrame();
-            switch (frame.opCode()) {
+            // 读取帧头, payload 按需读取.
+            var frameStream = readFrameStream();
+            switch (frameStream.opCode()) {
                 // 控制帧直接返回.
                 case PING, PONG, CLOSE -> {
-                    return frame;
+                    return readControlFrame(frameStream);
                 }
                 // TEXT 或 BINARY 帧.
                 case TEXT, BINARY -> {
-                    if (frame.fin()) {
-                        if (inContinuation) {
-                            throw new WebSocketProtocolException(PROTOCOL_ERROR.code(), "Received " + frame.opCode() + " frame while a fragmented message is in progress");
-                        } else {
-                            return frame;
+                    if (inContinuation) {
+                        throw new WebSocketProtocolException(PROTOCOL_ERROR.code(), "Received " + frameStream.opCode() + " frame while a fragmented message is in progress");
+                    }
+                    // 未压缩的 TEXT 消息逐帧校验, 尽早拒绝非法数据.
+                    validatingText = frameStream.opCode() == WebSocketOpCode.TEXT && !frameStream.rsv1();
+                    if (validatingText) {
+                        textValidator.reset();
+                    }
+                    var n = checkFragmentLength(frameStream.payloadLength());
+                    if (frameStream.fin()) {
+                        // 非分片消息, 一次性读取.
+                        var payloadData = readPayload(frameStream);
+                        if (validatingText) {
+                            validateText(payloadData, 0, n, true);
                         }
+                        return new WebSocketFrame(frameStream.opCode(), payloadData, true, frameStream.rsv1());
                     } else {
-                        if (inContinuation) {
-                            throw new WebSocketProtocolException(PROTOCOL_ERROR.code(), "Received " + frame.opCode() + " frame while a fragmented message is in progress");
-                        } else {
-                            // 保存消息 继续下一次
-                            inContinuation = true;
-                            appendFragment(frame);
+                        // 保存消息 继续下一次
+                        inContinuation = true;
+                        fragmentOpCode = frameStream.opCode();
+                        fragmentRsv1 = frameStream.rsv1();
+                        fragmentCount = 0;
+                        if (WebSocketMessageAggregateEvent.enabled()) {
+                            aggregateEvent = new WebSocketMessageAggregateEvent();
+                            aggregateEvent.begin();
                         }
+                        appendFragment(frameStream, n);
                     }
                 }
                 // CONTINUATION 帧.
                 case CONTINUATION -> {
-                    if (frame.fin()) {
-                        if (inContinuation) {
-                            appendFragment(frame);
-                            // 合并最后帧
-                            return buildFinalFrame();
-                        } else {
-                            throw new WebSocketProtocolException(PROTOCOL_ERROR.code(), "Unexpected CONTINUATION frame (no fragmented message in progress)");
-                        }
+                    if (!inContinuation) {
+                        throw new WebSocketProtocolException(PROTOCOL_ERROR.code(), "Unexpected CONTINUATION frame (no fragmented message in progress)");
+                    }
+                    var n = checkFragmentLength(frameStream.payloadLength());
+                    if (frameStream.fin()) {
+                        // 合并最后帧
+                        return buildFinalFrame(frameStream, n);
                     } else {
-                        if (inContinuation) {
-                            appendFragment(frame);
-                        } else {
-                            throw new WebSocketProtocolException(PROTOCOL_ERROR.code(), "Unexpected CONTINUATION frame (no fragmented message in progress)");
-                        }
+                        appendFragment(frameStream, n);
                     }
                 }
             }
         }
     }
 
-    private void appendFragment(WebSocketFrame frame) throws WebSocketProtocolException {
-        var framePayloadLength = frame.payloadData().length;
-        // 检查合并后的消息大小限制
-        if (this.fragmentPayloadLength + framePayloadLength > maxMessageSize) {
+    /// 检查合并后的消息大小限制.
+    private int checkFragmentLength(long payloadLength) throws WebSocketProtocolException {
+        var total = accumulator.length() + payloadLength;
+        if (total > maxMessageSize || total > Integer.MAX_VALUE - 8) {
             throw new WebSocketProtocolException(TOO_BIG.code(), "Message too big");
         }
-        this.fragmentPayloadLength += framePayloadLength;
-        this.fragmentFrames.add(frame);
+        return (int) payloadLength;
     }
 
-    private WebSocketFrame buildFinalFrame() {
-        // 用起始帧的 opCode 作为最终的 opCode.
-        var opCode = fragmentFrames.get(0).opCode();
-        // 合并 payloadData
-        var finalPayloadData = new byte[fragmentPayloadLength];
+    private void appendFragment(WebSocketFrameStream frameStream, int n) throws WebSocketIOException, WebSocketProtocolException {
+        if (metrics != null) {
+            metrics.recordFragmentsAggregated(1);
+        }
+        fragmentCount = fragmentCount + 1;
+        try {
+            var data = accumulator.append(frameStream.payload(), n);
+            if (validatingText && !textValidator.update(data, 0, n)) {
+                throw new WebSocketProtocolException(NOT_CONSISTENT.code(), "Invalid UTF-8 in TEXT message");
+            }
+        } catch (WebSocketIOException | WebSocketProtocolException e) {
+            accumulator.reset();
+            throw e;
+        }
+    }
 
-        int offset = 0;
-        for (var frame : fragmentFrames) {
-            var payloadData = frame.payloadData();
-            System.arraycopy(payloadData, 0, finalPayloadData, offset, payloadData.length);
-            offset += payloadData.length;
+    private WebSocketFrame buildFinalFrame(WebSocketFrameStream frameStream, int n) throws WebSocketIOException, WebSocketProtocolException {
+        // 用起始帧的 opCode 和 rsv1 作为最终的 opCode 和 rsv1.
+        var opCode = fragmentOpCode;
+        var rsv1 = fragmentRsv1;
+        if (metrics != null) {
+            metrics.recordFragmentsAggregated(1);
+        }
+        var offset = accumulator.length();
+        byte[] finalPayloadData;
+        try {
+            // 总长度已知, 最后一帧直接读入最终结果.
+            finalPayloadData = accumulator.finish(frameStream.payload(), n);
+        } finally {
+            // 构建完成重置状态
+            this.inContinuation = false;
+            this.fragmentOpCode = null;
+            this.fragmentRsv1 = false;
+            this.accumulator.reset();
+        }
+        var event = aggregateEvent;
+        aggregateEvent = null;
+        if (event != null) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.opCode = opCode.name();
+                event.fragments = fragmentCount + 1;
+                event.payloadLength = finalPayloadData.length;
+                event.commit();
+            }
         }
+        if (validatingText) {
+            validateText(finalPayloadData, offset, n, true);
+        }
+        return new WebSocketFrame(opCode, finalPayloadData, true, rsv1);
+    }
 
-        // 构建完成重置状态
-        this.inContinuation = false;
-        this.fragmentFrames.clear();
-        this.fragmentPayloadLength = 0;
+    private static byte[] readPayload(WebSocketFrameStream frameStream) throws WebSocketIOException {
+        try {
+            return frameStream.payload().readAllBytes();
+        } catch (IOException e) {
+            throw new WebSocketIOException(e);
+        }
+    }
+
+    private void validateText(byte[] payloadData, boolean fin) throws WebSocketProtocolException {
+        validateText(payloadData, 0, payloadData.length, fin);
+    }
+
+    private void validateText(byte[] data, int offset, int length, boolean fin) throws WebSocketProtocolException {
+        if (!textValidator.update(data, offset, length) || fin && !textValidator.isComplete()) {
+            throw new WebSocketProtocolException(NOT_CONSISTENT.code(), "Invalid UTF-8 in TEXT message");
+        }
+    }
+
+    private WebSocketFrame decompressFrame(WebSocketFrame frame) throws WebSocketProtocolException {
+        // 只有协商了 permessage-deflate 才允许 rsv1.
+        if (deflateCodec == null) {
+            throw new WebSocketProtocolException(PROTOCOL_ERROR.code(), "unsupported rsv");
+        }
+        var payloadData = deflateCodec.decompress(frame.payloadData(), maxMessageSize);
+        return new WebSocketFrame(frame.opCode(), payloadData, true);
+    }
+
+    private void sendDataFrame(WebSocketFrame frame) throws WebSocketIOException, WebSocketProtocolException, WebSocketInvalidStateException {
+        lockMessage();
+        try {
+            if (deflateCodec != null) {
+                frame = compressFrame(frame);
+            }
+            frameWebSocket.sendFrame(frame);
+        } finally {
+            messageLock.unlock();
+        }
+    }
+
+    /// 同步发送数据消息前获取数据消息锁.
+    ///
+    /// 使用过 sendAsync 时, 先等待之前的异步消息全部写出 (不持有锁), 保证它们不会穿插到本次发送的帧之间.
+    /// 获取锁之后不会再有新的异步消息领取序号.
+    private void lockMessage() throws WebSocketInvalidStateException {
+        while (true) {
+            var order = asyncSendOrder;
+            if (order != null) {
+                order.awaitIdle();
+            }
+            messageLock.lock();
+            // 数据消息锁是可重入的, 能获取到锁说明流是由当前线程打开的, 此时发送的帧会插入到流的分片之间.
+            if (messageStreamOpen) {
+                messageLock.unlock();
+                throw new WebSocketInvalidStateException("Cannot send a data message while a message stream is open on the same thread");
+            }
+            order = asyncSendOrder;
+            if (order == null || order.isIdle()) {
+                return;
+            }
+            // 等待期间又有异步消息领取了序号.
+            messageLock.unlock();
+        }
+    }
 
-        return new WebSocketFrame(opCode, finalPayloadData, true);
+    /// 发送 Close 之前, 等待之前的异步消息全部写出, 因为 Close 之后不能再发送数据帧 (RFC 6455 5.5.1).
+    /// Close 不需要数据消息锁 (控制帧可以插入到流式消息的分片之间), 等待之后新入队的异步消息会在写线程中失败.
+    private void awaitAsyncIdle() throws WebSocketInvalidStateException {
+        var order = asyncSendOrder;
+        if (order != null) {
+            order.awaitIdle();
+        }
+    }
+
+    private WebSocketFrame compressFrame(WebSocketFrame frame) {
+        var payloadData = deflateCodec.compress(frame.payloadData());
+        return new WebSocketFrame(frame.opCode(), payloadData, true, true);
+    }
+
+    private void checkDataMessageState(WebSocketOpCode opCode) throws WebSocketInvalidStateException {
+        if (closeSent) {
+            throw new WebSocketInvalidStateException("Cannot send " + opCode + " after CLOSE has been sent");
+        }
+        if (closeReceived) {
+            throw new WebSocketInvalidStateException("Cannot send " + opCode + " after CLOSE has been received");
+        }
+    }
+
+    private void skipCurrentMessageStream() throws WebSocketIOException, WebSocketProtocolException {
+        if (currentMessageStream != null) {
+            var stream = currentMessageStream;
+            currentMessageStream = null;
+            // 压缩消息 也需要完整解压, 以保证解压上下文正确.
+            try {
+                stream.transferTo(OutputStream.nullOutputStream());
+            } catch (IOException e) {
+                throw new WebSocketIOException(e);
+            }
+        }
+    }
+
+    private static WebSocketFrame readControlFrame(WebSocketFrameStream frameStream) throws WebSocketIOException {
+        return new WebSocketFrame(frameStream.opCode(), readPayload(frameStream), true);
     }
 
     private void handleCloseFrame(WebSocketFrame frame) {
         this.closeReceived = true;
+        if (observer != null) {
+            WebSocketCloseInfo closeInfo;
+            try {
+                closeInfo = WebSocketCloseInfoHelper.parseCloseInfo(frame.payloadData());
+            } catch (IllegalArgumentException _) {
+                closeInfo = NO_STATUS_CODE;
+            }
+            observer.onCloseReceived(closeInfo);
+        }
         // 收到 Close, 立即回 Close
         try {
             send(new CloseMessage(NORMAL_CLOSE)); // 这里有可能无法发送 我们忽略异常
@@ -179,4 +736,220 @@ final class ScxWebSocketImpl implements ScxWebSocket {
         }
     }
 
+    /// 流式消息的 payload 读取时抛出 [WebSocketProtocolException] 时, 统计并通知观察者.
+    private final class ProtocolErrorReportingInputStream extends FilterInputStream {
+
+        ProtocolErrorReportingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            try {
+                return in.read();
+            } catch (WebSocketProtocolException e) {
+                recordProtocolError(e);
+                throw e;
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            try {
+                return in.read(b, off, len);
+            } catch (WebSocketProtocolException e) {
+                recordProtocolError(e);
+                throw e;
+            }
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            try {
+                return in.skip(n);
+            } catch (WebSocketProtocolException e) {
+                recordProtocolError(e);
+                throw e;
+            }
+        }
+
+    }
+
+    /// 流式消息的 payload, 当前帧读完后按需拉取后续的 CONTINUATION 帧.
+    private final class MessagePayloadInputStream extends InputStream {
+
+        private final byte[] single; // 单字节读取时复用
+        private InputStream framePayload; // 当前帧的 payload
+        private boolean fin; // 当前帧是否为最后一帧
+        private long length; // 已读取的消息长度
+        private boolean eof;
+
+        MessagePayloadInputStream(WebSocketFrameStream frameStream) {
+            this.single = new byte[1];
+            this.framePayload = frameStream.payload();
+            this.fin = frameStream.fin();
+            this.length = 0;
+            this.eof = false;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0b1111_1111;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (eof) {
+                return -1;
+            }
+            if (len == 0) {
+                return 0;
+            }
+            while (true) {
+                var n = framePayload.read(b, off, len);
+                if (n != -1) {
+                    length += n;
+                    // 检查消息大小限制
+                    if (length > maxMessageSize) {
+                        eof = true;
+                        throw new WebSocketProtocolException(TOO_BIG.code(), "Message too big");
+                    }
+                    return n;
+                }
+                // 当前帧已经读完.
+                if (fin) {
+                    eof = true;
+                    return -1;
+                }
+                nextFrame();
+            }
+        }
+
+        private void nextFrame() throws WebSocketIOException, WebSocketProtocolException {
+            while (true) {
+                var frameStream = readFrameStream();
+                switch (frameStream.opCode()) {
+                    // 控制帧可以穿插在分片之间.
+                    case PING, PONG, CLOSE -> {
+                        var frame = readControlFrame(frameStream);
+                        if (frame.opCode() == WebSocketOpCode.PING) {
+                            handlePingFrame(frame);
+                        } else if (frame.opCode() == WebSocketOpCode.CLOSE) {
+                            eof = true;
+                            handleCloseFrame(frame);
+                            throw new WebSocketIOException(new EOFException("Received CLOSE frame while a fragmented message is in progress"));
+                        }
+                    }
+                    case TEXT, BINARY -> {
+                        eof = true;
+                        throw new WebSocketProtocolException(PROTOCOL_ERROR.code(), "Received " + frameStream.opCode() + " frame while a fragmented message is in progress");
+                    }
+                    case CONTINUATION -> {
+                        this.framePayload = frameStream.payload();
+                        this.fin = frameStream.fin();
+                        return;
+                    }
+                }
+            }
+        }
+
+    }
+
+    /// 流式消息的输出流, 缓冲区满时发送一个分片, 关闭时发送最后一个分片.
+    /// 每个分片单独持有底层的帧发送锁, 因此控制帧可以穿插发送.
+    private final class MessagePayloadOutputStream extends OutputStream {
+
+        private final WebSocketOpCode opCode;
+        private final byte[] buffer;
+        private int count;
+        private boolean first; // 下一个分片是否为起始帧
+        private boolean closed;
+
+        MessagePayloadOutputStream(WebSocketOpCode opCode) {
+            this.opCode = opCode;
+            this.buffer = new byte[fragmentSize];
+            this.count = 0;
+            this.first = true;
+            this.closed = false;
+        }
+
+        @Override
+        public void write(int b) throws WebSocketIOException, WebSocketProtocolException, WebSocketInvalidStateException {
+            ensureOpen();
+            if (count == buffer.length) {
+                sendFragment(false, false);
+            }
+            buffer[count] = (byte) b;
+            count = count + 1;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws WebSocketIOException, WebSocketProtocolException, WebSocketInvalidStateException {
+            Objects.checkFromIndexSize(off, len, b.length);
+            ensureOpen();
+            while (len > 0) {
+                if (count == buffer.length) {
+                    sendFragment(false, false);
+                }
+                var n = Math.min(len, buffer.length - count);
+                System.arraycopy(b, off, buffer, count, n);
+                count = count + n;
+                off = off + n;
+                len = len - n;
+            }
+        }
+
+        @Override
+        public void flush() throws WebSocketIOException, WebSocketProtocolException, WebSocketInvalidStateException {
+            ensureOpen();
+            if (count > 0) {
+                sendFragment(true, false);
+            }
+        }
+
+        /// 发送最后一个分片并释放数据消息锁. 必须在打开此流的线程中调用.
+        @Override
+        public void close() throws WebSocketIOException, WebSocketProtocolException, WebSocketInvalidStateException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                sendFragment(true, true);
+            } finally {
+                messageStreamOpen = false;
+                messageLock.unlock();
+            }
+        }
+
+        private void ensureOpen() {
+            if (closed) {
+                throw new IllegalStateException("Stream closed");
+            }
+        }
+
+        private void sendFragment(boolean flush, boolean fin) throws WebSocketIOException, WebSocketProtocolException, WebSocketInvalidStateException {
+            // 发送过程中可能已经发送或接收了 close 帧.
+            checkDataMessageState(opCode);
+            byte[] payloadData;
+            if (deflateCodec != null) {
+                payloadData = deflateCodec.compress(buffer, 0, count, flush, fin);
+                // 压缩器可能暂时没有输出, 此时无需发送空的分片.
+                if (payloadData.length == 0 && !fin) {
+                    count = 0;
+                    return;
+                }
+            } else {
+                // sendFrame 是同步的, 缓冲区写满时可以直接复用. 观察者可能会保留帧, 此时必须复制.
+                payloadData = count == buffer.length && observer == null ? buffer : Arrays.copyOf(buffer, count);
+            }
+            var frameOpCode = first ? opCode : WebSocketOpCode.CONTINUATION;
+            var rsv1 = first && deflateCodec != null;
+            frameWebSocket.sendFrame(new WebSocketFrame(frameOpCode, payloadData, fin, rsv1));
+            first = false;
+            count = 0;
+        }
+
+    }
+
 }
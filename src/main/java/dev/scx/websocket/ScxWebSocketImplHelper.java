@@ -6,20 +6,22 @@ import dev.scx.websocket.frame.WebSocketOpCode;
 import static dev.scx.websocket.WebSocketCloseInfoHelper.parseCloseInfo;
 import static dev.scx.websocket.WebSocketCloseInfoHelper.toClosePayload;
 import static dev.scx.websocket.frame.WebSocketOpCode.*;
-import static java.nio.charset.StandardCharsets.UTF_8;
 
 /// ScxWebSocketImplHelper
 ///
 /// @author scx567888
 final class ScxWebSocketImplHelper {
 
-    public static WebSocketMessage frameToMessage(WebSocketFrame frame) {
+    /// TEXT 帧的 payload 必须是已校验的 UTF-8, 不会在此处解码.
+    ///
+    /// @param asciiText TEXT 帧的 payload 已知全部为 ASCII 时, 解码时可以跳过 UTF-8 解码.
+    public static WebSocketMessage frameToMessage(WebSocketFrame frame, boolean asciiText) {
         if (!frame.fin()) {
             throw new IllegalArgumentException("frame is not fin");
         }
         return switch (frame.opCode()) {
             case CONTINUATION -> throw new IllegalArgumentException("can not support CONTINUATION");
-            case TEXT -> new TextMessage(new String(frame.payloadData(), UTF_8));
+            case TEXT -> new TextMessage(frame.payloadData(), asciiText);
             case BINARY -> new BinaryMessage(frame.payloadData());
             case PING -> new PingMessage(frame.payloadData());
             case PONG -> new PongMessage(frame.payloadData());
@@ -29,7 +31,7 @@ final class ScxWebSocketImplHelper {
 
     public static WebSocketFrame messageToFrame(WebSocketMessage message) {
         return switch (message) {
-            case TextMessage textMessage -> new WebSocketFrame(TEXT, textMessage.text().getBytes(UTF_8), true);
+            case TextMessage textMessage -> new WebSocketFrame(TEXT, textMessage.utf8Bytes(), true);
             case BinaryMessage binaryMessage -> new WebSocketFrame(BINARY, binaryMessage.binary(), true);
             case PingMessage pingMessage -> new WebSocketFrame(PING, pingMessage.data(), true);
             case PongMessage pongMessage -> new WebSocketFrame(PONG, pongMessage.data(), true);
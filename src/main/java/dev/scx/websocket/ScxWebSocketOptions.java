@@ -0,0 +1,86 @@
+package dev.scx.websocket;
+
+import dev.scx.websocket.metrics.WebSocketMetrics;
+
+/// ScxWebSocketOptions
+///
+/// 创建 [ScxWebSocket] 时使用的配置. 配置会在创建时被复制, 之后的修改不影响已创建的实例.
+///
+/// @author scx567888
+public final class ScxWebSocketOptions {
+
+    private long maxMessageSize; // 允许的最大消息长度, 只约束接收端.
+    private PerMessageDeflateParams perMessageDeflate; // 协商得到的 permessage-deflate 参数, null 表示不启用
+    private int fragmentSize; // 流式发送时单个分片的大小
+    private WebSocketMetrics metrics; // 运行指标, null 表示不统计
+    private WebSocketObserver observer; // 观察者, null 表示没有
+
+    public ScxWebSocketOptions() {
+        this.maxMessageSize = 1024 * 1024 * 64; // 默认 64MB
+        this.perMessageDeflate = null;
+        this.fragmentSize = 1024 * 64; // 默认 64KB
+        this.metrics = null;
+        this.observer = null;
+    }
+
+    public long maxMessageSize() {
+        return maxMessageSize;
+    }
+
+    public ScxWebSocketOptions maxMessageSize(long maxMessageSize) {
+        this.maxMessageSize = maxMessageSize;
+        return this;
+    }
+
+    public PerMessageDeflateParams perMessageDeflate() {
+        return perMessageDeflate;
+    }
+
+    /// 设置握手阶段协商得到的 permessage-deflate 参数, null 表示不启用.
+    ///
+    /// 启用后底层 [dev.scx.websocket.frame.ScxFrameWebSocket] 必须允许 RSV1,
+    /// 参见 [dev.scx.websocket.frame.ScxFrameWebSocketOptions#rsv1Allowed(boolean)].
+    public ScxWebSocketOptions perMessageDeflate(PerMessageDeflateParams perMessageDeflate) {
+        this.perMessageDeflate = perMessageDeflate;
+        return this;
+    }
+
+    public int fragmentSize() {
+        return fragmentSize;
+    }
+
+    /// 流式发送 ([ScxWebSocket#sendBinaryStream()] / [ScxWebSocket#sendTextStream()]) 时单个分片的大小.
+    public ScxWebSocketOptions fragmentSize(int fragmentSize) {
+        if (fragmentSize <= 0) {
+            throw new IllegalArgumentException("fragmentSize must be > 0");
+        }
+        this.fragmentSize = fragmentSize;
+        return this;
+    }
+
+    public WebSocketMetrics metrics() {
+        return metrics;
+    }
+
+    /// 消息级别的指标 (消息数, 聚合的分片数, 按 close code 统计的协议错误), null 表示不统计 (默认).
+    ///
+    /// 通过 [ScxWebSocket#of(dev.scx.io.endpoint.ByteEndpoint, boolean, ScxWebSocketOptions)] 创建时,
+    /// 同一个实例也会用于底层的 [dev.scx.websocket.frame.ScxFrameWebSocket].
+    public ScxWebSocketOptions metrics(WebSocketMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    public WebSocketObserver observer() {
+        return observer;
+    }
+
+    /// 消息级别的观察者 (消息, Close, 协议错误), null 表示没有 (默认).
+    ///
+    /// 与 metrics 相同, 通过 [ScxWebSocket#of(dev.scx.io.endpoint.ByteEndpoint, boolean, ScxWebSocketOptions)] 创建时也会用于底层的 ScxFrameWebSocket.
+    public ScxWebSocketOptions observer(WebSocketObserver observer) {
+        this.observer = observer;
+        return this;
+    }
+
+}
@@ -1,14 +1,101 @@
 package dev.scx.websocket;
 
+import java.util.Arrays;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
 /// TextMessage
 ///
+/// 可以由 String 或 (已校验的) UTF-8 字节创建, 另一种形式会在首次访问时才计算并缓存.
+/// 因此接收到的消息原样转发时, 不需要经过 解码 + 编码 的过程.
+///
+/// 注意: 为了延迟解码, TextMessage 不再是 record (record 的组件必须在构造时确定), 这是一个不兼容的变更:
+///
+/// - 记录模式 `case TextMessage(String text) -> ...` 需要改为 `case TextMessage t -> ... t.text() ...`.
+/// - 构造器 `new TextMessage(String)`, 访问器 `text()`, 以及 equals / hashCode / toString 的语义保持不变.
+///
 /// @author scx567888
-public record TextMessage(String text) implements WebSocketMessage {
+public final class TextMessage implements WebSocketMessage {
+
+    private volatile String text;
+    private volatile byte[] utf8Bytes;
+    private final boolean ascii; // utf8Bytes 是否已知全部为 ASCII, 此时可以直接按 ISO_8859_1 解码.
 
-    public TextMessage {
+    public TextMessage(String text) {
         if (text == null) {
             throw new NullPointerException("text must not be null");
         }
+        this.text = text;
+        this.utf8Bytes = null;
+        this.ascii = false;
+    }
+
+    /// utf8Bytes 必须是已校验的 UTF-8.
+    TextMessage(byte[] utf8Bytes, boolean ascii) {
+        this.text = null;
+        this.utf8Bytes = utf8Bytes;
+        this.ascii = ascii;
+    }
+
+    /// 由 UTF-8 字节创建, 不会复制数组, 创建之后调用方不应再修改.
+    ///
+    /// @throws IllegalArgumentException utf8Bytes 不是合法的 UTF-8.
+    public static TextMessage ofUtf8(byte[] utf8Bytes) throws IllegalArgumentException {
+        if (utf8Bytes == null) {
+            throw new NullPointerException("utf8Bytes must not be null");
+        }
+        var validator = new Utf8Validator();
+        if (!validator.update(utf8Bytes) || !validator.isComplete()) {
+            throw new IllegalArgumentException("Invalid UTF-8");
+        }
+        return new TextMessage(utf8Bytes, validator.isAscii());
+    }
+
+    public String text() {
+        var t = text;
+        if (t == null) {
+            t = new String(utf8Bytes, ascii ? ISO_8859_1 : UTF_8);
+            text = t;
+        }
+        return t;
+    }
+
+    /// UTF-8 编码的内容. 返回的是内部数组, 调用方不应修改.
+    public byte[] utf8Bytes() {
+        var b = utf8Bytes;
+        if (b == null) {
+            b = text.getBytes(UTF_8);
+            utf8Bytes = b;
+        }
+        return b;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof TextMessage that)) {
+            return false;
+        }
+        // 两边都已有字节时直接比较字节, 避免解码.
+        var b1 = utf8Bytes;
+        var b2 = that.utf8Bytes;
+        if (b1 != null && b2 != null) {
+            return Arrays.equals(b1, b2);
+        }
+        return text().equals(that.text());
+    }
+
+    @Override
+    public int hashCode() {
+        return text().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "TextMessage[text=" + text() + "]";
     }
 
 }
@@ -0,0 +1,67 @@
+package dev.scx.websocket;
+
+import dev.scx.websocket.exception.WebSocketProtocolException;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static dev.scx.websocket.WebSocketCloseInfo.NOT_CONSISTENT;
+
+/// 读取的同时进行 UTF-8 校验, 用于流式读取 TEXT 消息.
+///
+/// 出现非法的字节序列, 或读到末尾时字符不完整, 会抛出 close code 为 1007 的 [WebSocketProtocolException].
+///
+/// @author scx567888
+final class Utf8ValidatingInputStream extends FilterInputStream {
+
+    private final Utf8Validator validator;
+    private final byte[] single; // 单字节读取时复用
+
+    Utf8ValidatingInputStream(InputStream in) {
+        super(in);
+        this.validator = new Utf8Validator();
+        this.single = new byte[1];
+    }
+
+    @Override
+    public int read() throws IOException {
+        return read(single, 0, 1) == -1 ? -1 : single[0] & 0b1111_1111;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        var n = in.read(b, off, len);
+        if (n == -1) {
+            if (!validator.isComplete()) {
+                throw new WebSocketProtocolException(NOT_CONSISTENT.code(), "Invalid UTF-8 in TEXT message");
+            }
+            return -1;
+        }
+        if (!validator.update(b, off, n)) {
+            throw new WebSocketProtocolException(NOT_CONSISTENT.code(), "Invalid UTF-8 in TEXT message");
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        // 跳过的部分也需要校验.
+        var buffer = new byte[(int) Math.min(n, 8192)];
+        var skipped = 0L;
+        while (skipped < n) {
+            var r = read(buffer, 0, (int) Math.min(n - skipped, buffer.length));
+            if (r == -1) {
+                break;
+            }
+            skipped = skipped + r;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+}
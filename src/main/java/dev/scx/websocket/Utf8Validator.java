@@ -0,0 +1,124 @@
+package dev.scx.websocket;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/// 增量 UTF-8 校验器 (RFC 3629), 可以跨帧 (跨任意字节边界) 校验.
+///
+/// 使用查表的 DFA 实现, 处于字符边界时通过 byte[] 的 long 视图每次跳过 8 个 ASCII 字节.
+/// 同时记录是否全部为 ASCII, 以便解码时跳过第二次扫描.
+///
+/// @author scx567888
+final class Utf8Validator {
+
+    private static final VarHandle LONG_VIEW = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    private static final long NON_ASCII_MASK = 0x8080_8080_8080_8080L;
+
+    // 状态
+    private static final int ACCEPT = 0; // 处于字符边界
+    private static final int CONT_1 = 1; // 还需要 1 个 80..BF
+    private static final int CONT_2 = 2; // 还需要 2 个 80..BF
+    private static final int CONT_3 = 3; // 还需要 3 个 80..BF
+    private static final int AFTER_E0 = 4; // 下一个必须是 A0..BF (排除超长编码)
+    private static final int AFTER_ED = 5; // 下一个必须是 80..9F (排除代理区)
+    private static final int AFTER_F0 = 6; // 下一个必须是 90..BF (排除超长编码)
+    private static final int AFTER_F4 = 7; // 下一个必须是 80..8F (排除超过 U+10FFFF)
+    private static final int REJECT = 8;
+
+    /// 状态转移表, 下标为 state << 8 | byte.
+    private static final byte[] TRANSITIONS = createTransitions();
+
+    private int state;
+    private boolean ascii; // 目前为止是否全部为 ASCII
+
+    public Utf8Validator() {
+        reset();
+    }
+
+    public void reset() {
+        this.state = ACCEPT;
+        this.ascii = true;
+    }
+
+    /// 校验一段数据, 返回 false 表示已经出现非法的字节序列 (之后一直为 false, 直到 reset).
+    public boolean update(byte[] data, int offset, int length) {
+        var s = state;
+        if (s == REJECT) {
+            return false;
+        }
+        var i = offset;
+        var end = offset + length;
+        while (i < end) {
+            // ASCII 快速路径, 只有在字符边界时才可以使用.
+            if (s == ACCEPT) {
+                while (i + 8 <= end && ((long) LONG_VIEW.get(data, i) & NON_ASCII_MASK) == 0) {
+                    i = i + 8;
+                }
+                if (i == end) {
+                    break;
+                }
+            }
+            var b = data[i] & 0b1111_1111;
+            if (b >= 0b1000_0000) {
+                ascii = false;
+            }
+            s = TRANSITIONS[s << 8 | b];
+            if (s == REJECT) {
+                state = REJECT;
+                return false;
+            }
+            i = i + 1;
+        }
+        state = s;
+        return true;
+    }
+
+    public boolean update(byte[] data) {
+        return update(data, 0, data.length);
+    }
+
+    /// 当前是否处于字符边界 (即已校验的数据是完整合法的 UTF-8).
+    public boolean isComplete() {
+        return state == ACCEPT;
+    }
+
+    /// 已校验的数据是否全部为 ASCII.
+    public boolean isAscii() {
+        return ascii;
+    }
+
+    private static byte[] createTransitions() {
+        var t = new byte[9 << 8];
+        for (int i = 0; i < t.length; i = i + 1) {
+            t[i] = REJECT;
+        }
+        // 字符起始
+        fill(t, ACCEPT, 0x00, 0x7F, ACCEPT);
+        fill(t, ACCEPT, 0xC2, 0xDF, CONT_1);
+        fill(t, ACCEPT, 0xE0, 0xE0, AFTER_E0);
+        fill(t, ACCEPT, 0xE1, 0xEC, CONT_2);
+        fill(t, ACCEPT, 0xED, 0xED, AFTER_ED);
+        fill(t, ACCEPT, 0xEE, 0xEF, CONT_2);
+        fill(t, ACCEPT, 0xF0, 0xF0, AFTER_F0);
+        fill(t, ACCEPT, 0xF1, 0xF3, CONT_3);
+        fill(t, ACCEPT, 0xF4, 0xF4, AFTER_F4);
+        // 后续字节
+        fill(t, CONT_1, 0x80, 0xBF, ACCEPT);
+        fill(t, CONT_2, 0x80, 0xBF, CONT_1);
+        fill(t, CONT_3, 0x80, 0xBF, CONT_2);
+        fill(t, AFTER_E0, 0xA0, 0xBF, CONT_1);
+        fill(t, AFTER_ED, 0x80, 0x9F, CONT_1);
+        fill(t, AFTER_F0, 0x90, 0xBF, CONT_2);
+        fill(t, AFTER_F4, 0x80, 0x8F, CONT_2);
+        return t;
+    }
+
+    private static void fill(byte[] t, int state, int from, int to, int next) {
+        for (int b = from; b <= to; b = b + 1) {
+            t[state << 8 | b] = (byte) next;
+        }
+    }
+
+}
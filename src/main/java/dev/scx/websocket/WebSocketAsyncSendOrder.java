@@ -0,0 +1,127 @@
+package dev.scx.websocket;
+
+import dev.scx.websocket.exception.WebSocketInvalidStateException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/// sendAsync 的顺序控制, 在第一次调用 sendAsync 时才创建.
+///
+/// - sendAsync 持有数据消息锁时 (压缩之后) 领取序号, 释放数据消息锁后再按序号依次入队.
+///   因此入队 (BLOCK 策略下可能阻塞) 时不持有数据消息锁, 同时入队顺序和压缩顺序一致.
+/// - 同步发送数据消息 (包括流式发送) 前, 需要等待所有已领取序号的异步消息完成 ([#awaitIdle()]),
+///   因此写线程写出的帧不会穿插到同步发送的分片之间, 压缩顺序和写出顺序也保持一致.
+/// - 同步发送 Close 前同样需要等待, 保证 Close 之后不会再写出之前的异步消息.
+///
+/// @author scx567888
+final class WebSocketAsyncSendOrder {
+
+    /// 当前线程正在执行哪个实例的 future 回调.
+    private static final ThreadLocal<WebSocketAsyncSendOrder> COMPLETING = new ThreadLocal<>();
+
+    private final ReentrantLock lock;
+    private final Condition changed; // turn 或 pending 发生变化
+    private long nextTicket; // 下一个发放的序号, 只在持有数据消息锁时访问
+    private long turn; // 下一个允许入队的序号
+    private int pending; // 已领取序号但尚未完成 (写出, 失败或丢弃) 的消息数
+
+    WebSocketAsyncSendOrder() {
+        this.lock = new ReentrantLock();
+        this.changed = lock.newCondition();
+        this.nextTicket = 0;
+        this.turn = 0;
+        this.pending = 0;
+    }
+
+    /// 领取序号, 必须持有数据消息锁.
+    long takeTicket() {
+        lock.lock();
+        try {
+            pending = pending + 1;
+        } finally {
+            lock.unlock();
+        }
+        var ticket = nextTicket;
+        nextTicket = ticket + 1;
+        return ticket;
+    }
+
+    /// 等待轮到 ticket 后执行 enqueue, 不能持有数据消息锁.
+    ///
+    /// 返回的 future 在内部计数更新之后才完成, 因此其回调中可以立即同步发送.
+    CompletableFuture<Boolean> enqueue(long ticket, Supplier<CompletableFuture<Boolean>> enqueue) {
+        lock.lock();
+        try {
+            while (turn != ticket) {
+                changed.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+        CompletableFuture<Boolean> future;
+        try {
+            future = enqueue.get();
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        } finally {
+            lock.lock();
+            try {
+                turn = turn + 1;
+                changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+        var result = new CompletableFuture<Boolean>();
+        future.whenComplete((sent, error) -> {
+            lock.lock();
+            try {
+                pending = pending - 1;
+                changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            var previous = COMPLETING.get();
+            COMPLETING.set(this);
+            try {
+                if (error == null) {
+                    result.complete(sent);
+                } else {
+                    result.completeExceptionally(error);
+                }
+            } finally {
+                COMPLETING.set(previous);
+            }
+        });
+        return result;
+    }
+
+    /// 等待所有已领取序号的异步消息完成.
+    ///
+    /// 回调通常在写线程中执行, 此时还有未完成的异步消息的话, 等待永远不会结束, 因此直接抛出异常.
+    void awaitIdle() throws WebSocketInvalidStateException {
+        lock.lock();
+        try {
+            while (pending > 0) {
+                if (COMPLETING.get() == this) {
+                    throw new WebSocketInvalidStateException("Cannot send a data message or CLOSE synchronously from a sendAsync callback while other async messages are pending");
+                }
+                changed.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean isIdle() {
+        lock.lock();
+        try {
+            return pending == 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+}
@@ -0,0 +1,37 @@
+package dev.scx.websocket;
+
+import dev.scx.websocket.exception.WebSocketProtocolException;
+
+/// 广播工具. 消息只编码一次, 然后依次发送给每个连接.
+///
+/// 单个连接发送失败 (如已关闭或已发送 Close) 不会影响其他连接, 异常会被忽略.
+/// 发送是同步的, 慢连接会拖慢整个广播, 如需隔离可以在每个连接上使用 [ScxWebSocket#sendAsync(WebSocketMessage)].
+///
+/// @author scx567888
+public final class WebSocketBroadcast {
+
+    private WebSocketBroadcast() {
+
+    }
+
+    /// @return 发送成功的连接数
+    public static int broadcast(Iterable<? extends ScxWebSocket> webSockets, PreparedMessage message) {
+        var count = 0;
+        for (var webSocket : webSockets) {
+            try {
+                webSocket.sendPrepared(message);
+                count = count + 1;
+            } catch (Exception _) {
+                // 忽略单个连接的异常
+            }
+        }
+        return count;
+    }
+
+    /// @return 发送成功的连接数
+    /// @throws WebSocketProtocolException 消息无法编码为合法的帧.
+    public static int broadcast(Iterable<? extends ScxWebSocket> webSockets, WebSocketMessage message) throws WebSocketProtocolException {
+        return broadcast(webSockets, PreparedMessage.of(message));
+    }
+
+}
@@ -0,0 +1,200 @@
+package dev.scx.websocket;
+
+import java.util.ArrayList;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/// WebSocketKeepAlive
+///
+/// 基于哈希时间轮的心跳服务, 为大量连接自动发送 Ping, 并关闭失效或空闲的连接.
+///
+/// - 所有连接共享少量时间轮线程, 每个连接只占用一个定时任务, 不会为每个连接创建 ScheduledFuture.
+/// - 连接的活动 (收到数据消息 / 收到 Pong) 只在读取时记录一个标志位, 由时间轮在到期时检查并清除.
+/// - 连续 maxMissedPongs 次 Ping 都没有收到 Pong, 直接关闭连接 (远端已失效, 不再尝试发送 Close).
+/// - 超过 idleTimeout 没有收到数据消息, 发送 Close (1001) 后关闭连接.
+/// - 连接关闭 (或发送 Ping 失败) 后, 对应的定时任务会在下一次到期时自动移除.
+/// - 发送 Ping / 关闭连接 不在时间轮线程中执行. 未设置 actionExecutor 时, 同一个 tick 内的动作合并到一个虚拟线程中依次执行.
+///
+/// 注意 Pong 和数据消息都是在 [ScxWebSocket#read()] (或 readStream) 中被观察到的, 因此连接必须有读取循环在运行.
+///
+/// @author scx567888
+public final class WebSocketKeepAlive implements AutoCloseable {
+
+    private static final byte[] EMPTY_BYTES = new byte[0];
+    private static final WebSocketCloseInfo IDLE_TIMEOUT = new WebSocketCloseInfo(1001, "idle timeout");
+
+    private final WebSocketTimerWheel[] wheels;
+    private final ActionBatch[] batches; // 与 wheels 一一对应, 只在未设置 actionExecutor 时使用
+    private final AtomicInteger nextWheel;
+    private final long pingIntervalTicks;
+    private final int maxMissedPongs;
+    private final long idleTimeoutNanos;
+    private final Executor actionExecutor; // null 表示使用 batches
+
+    public WebSocketKeepAlive(WebSocketKeepAliveOptions options) {
+        var tickNanos = options.tickDuration().toNanos();
+        this.pingIntervalTicks = Math.max(options.pingInterval().toNanos() / tickNanos, 1);
+        this.maxMissedPongs = options.maxMissedPongs();
+        this.idleTimeoutNanos = options.idleTimeout().toNanos();
+        this.actionExecutor = options.actionExecutor();
+        this.wheels = new WebSocketTimerWheel[options.timerThreads()];
+        this.batches = new ActionBatch[wheels.length];
+        for (int i = 0; i < wheels.length; i = i + 1) {
+            this.batches[i] = actionExecutor == null ? new ActionBatch() : null;
+            this.wheels[i] = new WebSocketTimerWheel("scx-websocket-timer-" + i, tickNanos, options.ticksPerWheel(), batches[i]);
+        }
+        this.nextWheel = new AtomicInteger();
+    }
+
+    public WebSocketKeepAlive() {
+        this(new WebSocketKeepAliveOptions());
+    }
+
+    /// 注册一个连接.
+    ///
+    /// 由 [ScxWebSocket#of] 创建的连接支持全部检查. 其他实现 (如包装类) 无法观察到 Pong 和数据消息,
+    /// 因此只会定期发送 Ping (同样可以维持中间设备上的连接), 不检查 maxMissedPongs 和 idleTimeout, 发送失败 (如连接已关闭) 后停止.
+    public void register(ScxWebSocket webSocket) {
+        Objects.requireNonNull(webSocket, "webSocket must not be null");
+        var i = Math.floorMod(nextWheel.getAndIncrement(), wheels.length);
+        wheels[i].schedule(new KeepAliveTask(webSocket, batches[i]), pingIntervalTicks);
+    }
+
+    /// 停止所有时间轮线程, 不会关闭已注册的连接.
+    @Override
+    public void close() {
+        for (var wheel : wheels) {
+            wheel.shutdown();
+        }
+        for (var wheel : wheels) {
+            try {
+                wheel.awaitTermination();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private final class KeepAliveTask extends WebSocketTimerWheel.Task {
+
+        private final ScxWebSocket webSocket;
+        private final ScxWebSocketImpl impl; // 不是 ScxWebSocketImpl 时为 null, 此时只发送 Ping
+        private final ActionBatch batch;
+        private boolean pingSent; // 是否已经发送过 Ping
+        private int missedPongs; // 连续未收到 Pong 的次数
+        private long lastDataTime; // 最近一次收到数据消息的时间
+        private volatile boolean failed; // 发送 Ping 失败
+
+        KeepAliveTask(ScxWebSocket webSocket, ActionBatch batch) {
+            this.webSocket = webSocket;
+            this.impl = webSocket instanceof ScxWebSocketImpl i ? i : null;
+            this.batch = batch;
+            this.pingSent = false;
+            this.missedPongs = 0;
+            this.lastDataTime = System.nanoTime();
+            this.failed = false;
+        }
+
+        @Override
+        long expire() {
+            if (failed) {
+                return 0;
+            }
+            if (impl == null) {
+                pingSent = true;
+                execute(this::sendPing);
+                return pingIntervalTicks;
+            }
+            if (impl.isClosed()) {
+                return 0;
+            }
+            var now = System.nanoTime();
+            // 1, 检查 Pong.
+            if (impl.pollPongReceived()) {
+                missedPongs = 0;
+            } else if (pingSent) {
+                missedPongs = missedPongs + 1;
+                if (missedPongs >= maxMissedPongs) {
+                    execute(webSocket::close);
+                    return 0;
+                }
+            }
+            // 2, 检查空闲.
+            if (impl.pollDataReceived()) {
+                lastDataTime = now;
+            } else if (idleTimeoutNanos > 0 && now - lastDataTime >= idleTimeoutNanos) {
+                execute(this::closeIdle);
+                return 0;
+            }
+            // 3, 发送 Ping.
+            pingSent = true;
+            execute(this::sendPing);
+            return pingIntervalTicks;
+        }
+
+        private void execute(Runnable action) {
+            if (batch != null) {
+                batch.add(action);
+            } else {
+                actionExecutor.execute(action);
+            }
+        }
+
+        private void sendPing() {
+            try {
+                webSocket.sendPing(EMPTY_BYTES);
+            } catch (Exception _) {
+                failed = true;
+            }
+        }
+
+        private void closeIdle() {
+            try {
+                webSocket.sendClose(IDLE_TIMEOUT); // 这里有可能无法发送 我们忽略异常
+            } catch (Exception _) {
+
+            }
+            webSocket.close();
+        }
+
+    }
+
+    /// 一个 tick 内产生的动作, 在 tick 结束时合并到同一个虚拟线程中依次执行, 而不是每个动作一个虚拟线程.
+    ///
+    /// 写出可能阻塞的连接会推迟同一批中之后的动作, 此时应为连接设置写超时, 或提供 actionExecutor.
+    private static final class ActionBatch implements Runnable {
+
+        private ArrayList<Runnable> actions; // 只被时间轮线程访问
+
+        ActionBatch() {
+            this.actions = new ArrayList<>();
+        }
+
+        void add(Runnable action) {
+            actions.add(action);
+        }
+
+        /// 在时间轮线程中, 每个 tick 结束时调用.
+        @Override
+        public void run() {
+            if (actions.isEmpty()) {
+                return;
+            }
+            var batch = actions;
+            actions = new ArrayList<>();
+            Thread.ofVirtual().name("scx-websocket-keepalive").start(() -> {
+                for (var action : batch) {
+                    try {
+                        action.run();
+                    } catch (Exception _) {
+                        // 动作内部已经处理了预期的异常, 这里只保证不影响同一批中的其他动作.
+                    }
+                }
+            });
+        }
+
+    }
+
+}
@@ -0,0 +1,121 @@
+package dev.scx.websocket;
+
+import java.time.Duration;
+import java.util.concurrent.Executor;
+
+/// WebSocketKeepAliveOptions
+///
+/// 创建 [WebSocketKeepAlive] 时使用的配置. 配置会在创建时被复制, 之后的修改不影响已创建的实例.
+///
+/// @author scx567888
+public final class WebSocketKeepAliveOptions {
+
+    private Duration pingInterval; // 发送 Ping 的间隔
+    private int maxMissedPongs; // 允许连续未收到 Pong 的次数
+    private Duration idleTimeout; // 空闲超时, ZERO 表示不检查
+    private Duration tickDuration; // 时间轮的精度
+    private int ticksPerWheel; // 时间轮的槽位数
+    private int timerThreads; // 时间轮线程数
+    private Executor actionExecutor; // 发送 Ping / 关闭连接 所使用的执行器, null 表示每个 tick 的动作合并到一个新的虚拟线程中执行
+
+    public WebSocketKeepAliveOptions() {
+        this.pingInterval = Duration.ofSeconds(30); // 默认 30 秒
+        this.maxMissedPongs = 2;
+        this.idleTimeout = Duration.ZERO;
+        this.tickDuration = Duration.ofMillis(100); // 默认 100 毫秒
+        this.ticksPerWheel = 512;
+        this.timerThreads = 1;
+        this.actionExecutor = null;
+    }
+
+    public Duration pingInterval() {
+        return pingInterval;
+    }
+
+    public WebSocketKeepAliveOptions pingInterval(Duration pingInterval) {
+        if (pingInterval.isNegative() || pingInterval.isZero()) {
+            throw new IllegalArgumentException("pingInterval must be > 0");
+        }
+        this.pingInterval = pingInterval;
+        return this;
+    }
+
+    public int maxMissedPongs() {
+        return maxMissedPongs;
+    }
+
+    /// 连续 maxMissedPongs 次 Ping 之后都没有收到 Pong, 则认为远端已经失效, 直接关闭连接.
+    public WebSocketKeepAliveOptions maxMissedPongs(int maxMissedPongs) {
+        if (maxMissedPongs <= 0) {
+            throw new IllegalArgumentException("maxMissedPongs must be > 0");
+        }
+        this.maxMissedPongs = maxMissedPongs;
+        return this;
+    }
+
+    public Duration idleTimeout() {
+        return idleTimeout;
+    }
+
+    /// 超过 idleTimeout 没有收到任何数据消息 (Ping / Pong 不计), 则发送 Close (1001) 并关闭连接.
+    ///
+    /// 空闲只在每次发送 Ping 时检查, 因此实际精度为 pingInterval. ZERO 表示不检查.
+    public WebSocketKeepAliveOptions idleTimeout(Duration idleTimeout) {
+        if (idleTimeout.isNegative()) {
+            throw new IllegalArgumentException("idleTimeout must be >= 0");
+        }
+        this.idleTimeout = idleTimeout;
+        return this;
+    }
+
+    public Duration tickDuration() {
+        return tickDuration;
+    }
+
+    public WebSocketKeepAliveOptions tickDuration(Duration tickDuration) {
+        if (tickDuration.toNanos() < 1_000_000) {
+            throw new IllegalArgumentException("tickDuration must be >= 1ms");
+        }
+        this.tickDuration = tickDuration;
+        return this;
+    }
+
+    public int ticksPerWheel() {
+        return ticksPerWheel;
+    }
+
+    /// 会向上取整为 2 的幂.
+    public WebSocketKeepAliveOptions ticksPerWheel(int ticksPerWheel) {
+        if (ticksPerWheel <= 0 || ticksPerWheel > 1 << 20) {
+            throw new IllegalArgumentException("ticksPerWheel must be in (0, 1048576]");
+        }
+        this.ticksPerWheel = ticksPerWheel;
+        return this;
+    }
+
+    public int timerThreads() {
+        return timerThreads;
+    }
+
+    /// 时间轮线程数, 连接会被均匀分配到各个时间轮上.
+    public WebSocketKeepAliveOptions timerThreads(int timerThreads) {
+        if (timerThreads <= 0) {
+            throw new IllegalArgumentException("timerThreads must be > 0");
+        }
+        this.timerThreads = timerThreads;
+        return this;
+    }
+
+    public Executor actionExecutor() {
+        return actionExecutor;
+    }
+
+    /// 发送 Ping / 关闭连接 可能阻塞 (如远端不读取数据), 因此不会在时间轮线程中执行.
+    ///
+    /// 默认 (null) 每个 tick 内的动作合并到一个新的虚拟线程中依次执行. 设置后每个动作单独提交给该执行器.
+    public WebSocketKeepAliveOptions actionExecutor(Executor actionExecutor) {
+        this.actionExecutor = actionExecutor;
+        return this;
+    }
+
+}
@@ -0,0 +1,93 @@
+package dev.scx.websocket;
+
+import dev.scx.websocket.exception.WebSocketIOException;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+
+/// 分片消息的聚合缓冲区.
+///
+/// 之前的分片各自整体读取, 直接保存底层读取时返回的数组 (不经过中间缓冲区).
+/// 最后一个分片到达时, 由于总长度已知, 分配恰好大小的最终结果, 将之前的分片复制进去, 并将最后一个分片直接读入结果中.
+///
+/// - 每个字节只复制一次 (从读取时的数组到最终结果), 结果直接交给消息, 不再复制.
+/// - 增长时不复制已聚合的数据, 也不会分配超出实际长度的数组.
+/// - 峰值内存为 消息长度 + 之前分片的长度, 总长度未知时这部分数据只能先保存在别处.
+/// - 最后一个分片为空且之前只有一个分片时, 直接交出该分片的数组, 不复制.
+///
+/// @author scx567888
+final class WebSocketMessageAccumulator {
+
+    private final ArrayList<byte[]> fragments;
+    private int length; // 已聚合的长度
+
+    WebSocketMessageAccumulator() {
+        this.fragments = new ArrayList<>(0);
+        this.length = 0;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    /// 读取一个完整分片 (n 字节) 追加到末尾, 返回该分片的数据 (用于校验, 不能修改).
+    public byte[] append(InputStream payload, int n) throws WebSocketIOException {
+        byte[] data;
+        try {
+            data = payload.readAllBytes();
+        } catch (IOException e) {
+            throw new WebSocketIOException(e);
+        }
+        if (data.length != n) {
+            throw new WebSocketIOException(new EOFException());
+        }
+        if (n > 0) {
+            fragments.add(data);
+            length = length + n;
+        }
+        return data;
+    }
+
+    /// 读取最后的 n 字节, 返回完整的消息, 同时重置状态.
+    public byte[] finish(InputStream payload, int n) throws WebSocketIOException {
+        if (n == 0 && fragments.size() == 1) {
+            var result = fragments.getFirst();
+            reset();
+            return result;
+        }
+        var result = new byte[length + n];
+        var offset = 0;
+        for (var fragment : fragments) {
+            System.arraycopy(fragment, 0, result, offset, fragment.length);
+            offset = offset + fragment.length;
+        }
+        // 先释放之前的分片, 读取最后一个分片时就不再持有它们.
+        reset();
+        readFully(payload, result, offset, n);
+        return result;
+    }
+
+    /// 重置状态.
+    public void reset() {
+        fragments.clear();
+        length = 0;
+    }
+
+    private static void readFully(InputStream payload, byte[] b, int off, int n) throws WebSocketIOException {
+        try {
+            while (n > 0) {
+                var r = payload.read(b, off, n);
+                if (r == -1) {
+                    throw new EOFException();
+                }
+                off = off + r;
+                n = n - r;
+            }
+        } catch (IOException e) {
+            throw new WebSocketIOException(e);
+        }
+    }
+
+}
@@ -0,0 +1,31 @@
+package dev.scx.websocket;
+
+import jdk.jfr.*;
+
+/// JFR 事件: 聚合一条分片消息. 持续时间从收到起始帧开始, 到收到最后一帧为止.
+///
+/// @author scx567888
+@Name("dev.scx.websocket.MessageAggregate")
+@Label("WebSocket Message Aggregate")
+@Category({"SCX", "WebSocket"})
+@Threshold("10 ms")
+@StackTrace(false)
+final class WebSocketMessageAggregateEvent extends Event {
+
+    private static final EventType TYPE = EventType.getEventType(WebSocketMessageAggregateEvent.class);
+
+    @Label("OpCode")
+    String opCode;
+
+    @Label("Fragments")
+    int fragments;
+
+    @Label("Payload Length")
+    @DataAmount
+    long payloadLength;
+
+    static boolean enabled() {
+        return TYPE.isEnabled();
+    }
+
+}
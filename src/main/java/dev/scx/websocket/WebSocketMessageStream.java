@@ -0,0 +1,29 @@
+package dev.scx.websocket;
+
+import dev.scx.websocket.frame.WebSocketOpCode;
+
+import java.io.InputStream;
+
+/// 流式读取的消息, 参见 [ScxWebSocket#readStream()].
+///
+/// - TEXT / BINARY: payload 会在读取时按需拉取后续的 CONTINUATION 帧, 不会聚合整条消息.
+/// - PING / PONG / CLOSE: payload 为已经读取完成的控制帧数据 (最多 125 字节).
+///
+/// payload 只在下一次调用 [ScxWebSocket#read()] 或 [ScxWebSocket#readStream()] 之前有效,
+/// 未读完的部分会在下一次读取时被自动跳过.
+/// 读取过程中发生的错误会以 [dev.scx.websocket.exception.WebSocketIOException]
+/// 或 [dev.scx.websocket.exception.WebSocketProtocolException] 抛出.
+///
+/// @author scx567888
+public record WebSocketMessageStream(WebSocketOpCode opCode, InputStream payload) {
+
+    public WebSocketMessageStream {
+        if (opCode == null) {
+            throw new NullPointerException("opCode must not be null");
+        }
+        if (payload == null) {
+            throw new NullPointerException("payload must not be null");
+        }
+    }
+
+}
@@ -0,0 +1,60 @@
+package dev.scx.websocket;
+
+import dev.scx.websocket.exception.WebSocketProtocolException;
+import dev.scx.websocket.frame.WebSocketFrame;
+import dev.scx.websocket.frame.WebSocketOpCode;
+
+/// WebSocketObserver
+///
+/// 观察连接上的帧和消息, 用于追踪, 审计等 (如采样消息 ID, 从 payload 的前几个字节中提取追踪上下文).
+///
+/// - 通过 [ScxWebSocketOptions#observer(WebSocketObserver)] 或 [dev.scx.websocket.frame.ScxFrameWebSocketOptions#observer(WebSocketObserver)] 设置.
+///   未设置 (null) 时实现内部只有一次 null 判断, 没有虚调用也没有分配.
+/// - 帧级别的回调 (onFrameRead / onFrameWrite) 由 ScxFrameWebSocket 触发, 其余的消息级别回调 (消息, Close, 协议错误) 只由 ScxWebSocket 触发.
+///   同一个实例可以同时用于两层, 不会重复回调. 单独使用 ScxFrameWebSocket 时只会收到帧级别的回调.
+/// - 回调在读取 / 发送线程中同步执行, 应尽快返回. 回调抛出的异常会传播给调用方.
+/// - 所有方法默认为空实现, 按需覆盖即可.
+///
+/// @author scx567888
+public interface WebSocketObserver {
+
+    /// 读取到一帧 (帧头已通过校验).
+    ///
+    /// 流式读取 ([dev.scx.websocket.frame.ScxFrameWebSocket#readFrameStream()]) 时 payload 尚未读取, 因此这里只提供帧头信息.
+    /// 需要 payload 时请使用 [#onMessage(WebSocketMessage)].
+    default void onFrameRead(WebSocketOpCode opCode, boolean fin, boolean rsv1, long payloadLength) {
+
+    }
+
+    /// 一帧已经写出 (批量发送时为每一帧各调用一次). 启用 permessage-deflate 时 payload 为压缩后的数据.
+    ///
+    /// payload 是实际写出的数组 (不会被之后的发送复用), 可以保留, 但不能修改.
+    default void onFrameWrite(WebSocketFrame frame) {
+
+    }
+
+    /// [ScxWebSocket#read()] 读取到一条完整的消息 (分片已聚合, 压缩已解压).
+    ///
+    /// [ScxWebSocket#readStream()] 不会触发 (消息没有被聚合), 需要时请使用 [#onFrameRead(WebSocketOpCode, boolean, boolean, long)].
+    default void onMessage(WebSocketMessage message) {
+
+    }
+
+    /// ScxWebSocket 已发送 Close. ScxFrameWebSocket 不解释 Close 帧, 不会触发.
+    default void onCloseSent(WebSocketCloseInfo closeInfo) {
+
+    }
+
+    /// ScxWebSocket 已接收 Close. ScxFrameWebSocket 不解释 Close 帧, 不会触发.
+    default void onCloseReceived(WebSocketCloseInfo closeInfo) {
+
+    }
+
+    /// ScxWebSocket 读取时遇到协议错误 (包括读取 [ScxWebSocket#readStream()] 的 payload 时), 之后连接通常会被关闭.
+    ///
+    /// ScxFrameWebSocket 的帧级别校验错误只通过异常抛出, 不会触发. 经由 ScxWebSocket 读取时会由 ScxWebSocket 触发一次.
+    default void onProtocolError(WebSocketProtocolException exception) {
+
+    }
+
+}
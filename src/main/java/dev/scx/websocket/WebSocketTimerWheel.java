@@ -0,0 +1,145 @@
+package dev.scx.websocket;
+
+import java.lang.System.Logger;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+import static java.lang.System.Logger.Level.ERROR;
+import static java.lang.System.getLogger;
+
+/// 哈希时间轮, 由单个平台线程驱动.
+///
+/// 每个 tick 只处理当前槽位中的任务, 调度和取消都是 O(1), 适用于大量周期相同的定时任务 (如心跳).
+/// 其他线程提交的任务先放入无锁队列, 在下一个 tick 由时间轮线程转移到槽位中, 槽位本身只被时间轮线程访问.
+///
+/// @author scx567888
+final class WebSocketTimerWheel {
+
+    private static final Logger LOGGER = getLogger(WebSocketTimerWheel.class.getName());
+
+    private final long tickNanos;
+    private final ArrayList<Task>[] buckets;
+    private final int mask;
+    private final ConcurrentLinkedQueue<Task> pending; // 等待转移到槽位中的任务
+    private final Runnable tickListener; // 每个 tick 处理完成后调用, null 表示没有
+    private final Thread thread;
+    private long tick; // 当前 tick, 只被时间轮线程访问
+    private volatile boolean running;
+
+    @SuppressWarnings("unchecked")
+    WebSocketTimerWheel(String name, long tickNanos, int ticksPerWheel, Runnable tickListener) {
+        this.tickNanos = tickNanos;
+        // 槽位数向上取 2 的幂, 以便用位运算取模 (ticksPerWheel 为 1 时 highestOneBit(0) 为 0, 需要单独处理).
+        var size = ticksPerWheel <= 1 ? 1 : Integer.highestOneBit(ticksPerWheel - 1) << 1;
+        this.buckets = new ArrayList[size];
+        for (int i = 0; i < size; i = i + 1) {
+            this.buckets[i] = new ArrayList<>();
+        }
+        this.mask = size - 1;
+        this.pending = new ConcurrentLinkedQueue<>();
+        this.tickListener = tickListener;
+        this.tick = 0;
+        this.running = true;
+        this.thread = Thread.ofPlatform().name(name).daemon(true).start(this::run);
+    }
+
+    /// 调度一个任务, delayTicks 个 tick 之后到期. 可以在任意线程调用.
+    void schedule(Task task, long delayTicks) {
+        task.delayTicks = delayTicks;
+        pending.add(task);
+    }
+
+    void shutdown() {
+        running = false;
+        LockSupport.unpark(thread);
+    }
+
+    void awaitTermination() throws InterruptedException {
+        thread.join();
+    }
+
+    private void run() {
+        var startTime = System.nanoTime();
+        while (running) {
+            // 等待下一个 tick.
+            var deadline = startTime + (tick + 1) * tickNanos;
+            long sleepNanos;
+            while (running && (sleepNanos = deadline - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(this, sleepNanos);
+            }
+            if (!running) {
+                break;
+            }
+            transferPending();
+            expire(buckets[(int) (tick & mask)]);
+            if (tickListener != null) {
+                try {
+                    tickListener.run();
+                } catch (Exception e) {
+                    LOGGER.log(ERROR, "Error while running tick listener : ", e);
+                }
+            }
+            tick = tick + 1;
+        }
+    }
+
+    private void transferPending() {
+        Task task;
+        while ((task = pending.poll()) != null) {
+            add(task, task.delayTicks);
+        }
+    }
+
+    private void add(Task task, long delayTicks) {
+        // 至少延迟 1 个 tick, 防止在当前槽位中被重复处理.
+        var deadlineTick = tick + Math.max(delayTicks, 1);
+        task.deadlineTick = deadlineTick;
+        buckets[(int) (deadlineTick & mask)].add(task);
+    }
+
+    private void expire(ArrayList<Task> bucket) {
+        if (bucket.isEmpty()) {
+            return;
+        }
+        // 先原地压缩出未到期的任务 (延迟超过一圈的任务), 再执行到期的任务, 因为执行时可能重新调度回同一个槽位.
+        var expired = new ArrayList<Task>();
+        var kept = 0;
+        for (int i = 0; i < bucket.size(); i = i + 1) {
+            var task = bucket.get(i);
+            if (task.deadlineTick <= tick) {
+                expired.add(task);
+            } else {
+                bucket.set(kept, task);
+                kept = kept + 1;
+            }
+        }
+        bucket.subList(kept, bucket.size()).clear();
+        for (var task : expired) {
+            long next;
+            try {
+                next = task.expire();
+            } catch (Exception e) {
+                LOGGER.log(ERROR, "Error while running timer task : ", e);
+                continue;
+            }
+            if (next > 0) {
+                add(task, next);
+            }
+        }
+    }
+
+    /// 时间轮中的任务. 同一个任务同一时刻只能被调度一次.
+    abstract static class Task {
+
+        private long delayTicks;
+        private long deadlineTick;
+
+        /// 到期时在时间轮线程中调用, 不允许阻塞.
+        ///
+        /// @return 下一次到期的延迟 tick 数, 小于等于 0 表示不再调度
+        abstract long expire();
+
+    }
+
+}
@@ -0,0 +1,118 @@
+package dev.scx.websocket.buffer;
+
+import java.lang.System.Logger;
+import java.lang.ref.Cleaner;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.lang.System.Logger.Level.ERROR;
+import static java.lang.System.getLogger;
+
+/// 从 [WebSocketBufferPool] 租借的带引用计数的缓冲区.
+///
+/// 有效数据为 `array()[0, length())`, 数组本身可能比 length 更长.
+/// 引用计数归零时数组会归还给池, 之后不可以再访问 array.
+///
+/// @author scx567888
+public final class WebSocketBuffer implements AutoCloseable {
+
+    private static final Logger LOGGER = getLogger(WebSocketBuffer.class.getName());
+
+    private final WebSocketBufferPool pool;
+    private final byte[] array;
+    private final int length;
+    private final AtomicInteger refCnt;
+    private final LeakState leakState; // 未开启泄漏检测时为 null
+    private final Cleaner.Cleanable cleanable;
+
+    WebSocketBuffer(WebSocketBufferPool pool, byte[] array, int length, boolean leakDetection) {
+        this.pool = pool;
+        this.array = array;
+        this.length = length;
+        this.refCnt = new AtomicInteger(1);
+        if (leakDetection) {
+            this.leakState = new LeakState(new Throwable("WebSocketBuffer leased here"));
+            this.cleanable = WebSocketBufferPool.CLEANER.register(this, this.leakState);
+        } else {
+            this.leakState = null;
+            this.cleanable = null;
+        }
+    }
+
+    public byte[] array() {
+        return array;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public int refCnt() {
+        return refCnt.get();
+    }
+
+    /// 增加引用计数.
+    public WebSocketBuffer retain() {
+        while (true) {
+            var c = refCnt.get();
+            if (c <= 0) {
+                throw new IllegalStateException("WebSocketBuffer already released");
+            }
+            if (refCnt.compareAndSet(c, c + 1)) {
+                return this;
+            }
+        }
+    }
+
+    /// 减少引用计数, 归零时归还给池.
+    ///
+    /// @return 是否已归零
+    public boolean release() {
+        var c = refCnt.decrementAndGet();
+        if (c > 0) {
+            return false;
+        }
+        if (c < 0) {
+            refCnt.incrementAndGet();
+            throw new IllegalStateException("WebSocketBuffer already released");
+        }
+        if (leakState != null) {
+            leakState.released = true;
+            cleanable.clean();
+        }
+        pool.recycle(array);
+        return true;
+    }
+
+    /// 复制有效数据.
+    public byte[] toByteArray() {
+        var bytes = new byte[length];
+        System.arraycopy(array, 0, bytes, 0, length);
+        return bytes;
+    }
+
+    /// 等同于 [#release()]
+    @Override
+    public void close() {
+        release();
+    }
+
+    private static final class LeakState implements Runnable {
+
+        private final Throwable trace;
+        private volatile boolean released;
+
+        LeakState(Throwable trace) {
+            this.trace = trace;
+            this.released = false;
+        }
+
+        @Override
+        public void run() {
+            if (!released) {
+                LOGGER.log(ERROR, "WebSocketBuffer was garbage collected without release() : ", trace);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,111 @@
+package dev.scx.websocket.buffer;
+
+import java.lang.ref.Cleaner;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/// 按大小分级 (size-classed) 的 byte[] 池, 用于池化模式下的帧 payload.
+///
+/// - 大小分级为 2 的幂, 从 256 B 到 1 MB. 超过 1 MB 的请求直接分配, 释放时不回收.
+/// - 每个大小分级按线程分槽 (striped), 获取和归还都是无锁的.
+/// - 每个大小分级最多保留 stripes * maxRetainedPerStripe 个数组, 超出的部分归还时直接丢弃, 交由 GC 回收.
+/// - 开启泄漏检测 (调试用) 后, 未调用 release 就被 GC 回收的 [WebSocketBuffer] 会被记录到日志中, 并附带租借时的调用栈.
+///
+/// @author scx567888
+public final class WebSocketBufferPool {
+
+    private static final int MIN_SHIFT = 8; // 256 B
+    private static final int MAX_SHIFT = 20; // 1 MB
+    private static final int CLASS_COUNT = MAX_SHIFT - MIN_SHIFT + 1;
+
+    private static final int STRIPES = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 2);
+
+    private static final WebSocketBufferPool GLOBAL = new WebSocketBufferPool(4, Boolean.getBoolean("scx.websocket.buffer.leakDetection"));
+
+    static final Cleaner CLEANER = Cleaner.create();
+
+    private final int maxRetainedPerStripe;
+    private final boolean leakDetection;
+    private final AtomicReferenceArray<byte[]>[] classes;
+
+    /// @param maxRetainedPerStripe 每个大小分级中每个槽最多保留的数组数量
+    /// @param leakDetection        是否开启泄漏检测 (会记录调用栈, 只应在调试时开启)
+    @SuppressWarnings("unchecked")
+    public WebSocketBufferPool(int maxRetainedPerStripe, boolean leakDetection) {
+        if (maxRetainedPerStripe < 0) {
+            throw new IllegalArgumentException("maxRetainedPerStripe must be >= 0");
+        }
+        this.maxRetainedPerStripe = maxRetainedPerStripe;
+        this.leakDetection = leakDetection;
+        this.classes = new AtomicReferenceArray[CLASS_COUNT];
+        for (int i = 0; i < CLASS_COUNT; i = i + 1) {
+            this.classes[i] = new AtomicReferenceArray<>(STRIPES * maxRetainedPerStripe);
+        }
+    }
+
+    /// 全局共享的池. 可以通过系统属性 `scx.websocket.buffer.leakDetection=true` 开启泄漏检测.
+    public static WebSocketBufferPool global() {
+        return GLOBAL;
+    }
+
+    /// 租借一个至少能容纳 length 字节的缓冲区, 引用计数为 1.
+    public WebSocketBuffer lease(int length) {
+        if (length < 0) {
+            throw new IllegalArgumentException("length must be >= 0");
+        }
+        var sizeClass = sizeClass(length);
+        byte[] array = null;
+        if (sizeClass != -1) {
+            array = poll(sizeClass);
+            if (array == null) {
+                array = new byte[1 << sizeClass + MIN_SHIFT];
+            }
+        } else {
+            array = new byte[length];
+        }
+        return new WebSocketBuffer(this, array, length, leakDetection);
+    }
+
+    /// 归还数组 (由 [WebSocketBuffer#release()] 调用).
+    void recycle(byte[] array) {
+        var sizeClass = sizeClass(array.length);
+        // 只回收标准大小的数组
+        if (sizeClass == -1 || array.length != 1 << sizeClass + MIN_SHIFT) {
+            return;
+        }
+        var slots = classes[sizeClass];
+        var start = stripe() * maxRetainedPerStripe;
+        for (int i = 0; i < maxRetainedPerStripe; i = i + 1) {
+            if (slots.get(start + i) == null && slots.compareAndSet(start + i, null, array)) {
+                return;
+            }
+        }
+    }
+
+    private byte[] poll(int sizeClass) {
+        var slots = classes[sizeClass];
+        var start = stripe() * maxRetainedPerStripe;
+        for (int i = 0; i < maxRetainedPerStripe; i = i + 1) {
+            if (slots.get(start + i) != null) {
+                var array = slots.getAndSet(start + i, null);
+                if (array != null) {
+                    return array;
+                }
+            }
+        }
+        return null;
+    }
+
+    /// 返回大小分级, 超过最大分级时返回 -1.
+    private static int sizeClass(int length) {
+        if (length <= 1 << MIN_SHIFT) {
+            return 0;
+        }
+        var shift = 32 - Integer.numberOfLeadingZeros(length - 1);
+        return shift > MAX_SHIFT ? -1 : shift - MIN_SHIFT;
+    }
+
+    private static int stripe() {
+        return (int) Thread.currentThread().threadId() & STRIPES - 1;
+    }
+
+}
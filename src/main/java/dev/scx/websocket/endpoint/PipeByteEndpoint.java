@@ -0,0 +1,268 @@
+package dev.scx.websocket.endpoint;
+
+import dev.scx.io.ByteInput;
+import dev.scx.io.ByteOutput;
+import dev.scx.io.ScxIO;
+import dev.scx.io.endpoint.ByteEndpoint;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Objects;
+import java.util.concurrent.locks.LockSupport;
+
+/// 内存中的 ByteEndpoint, 总是成对创建, 一端写出的数据由另一端读取.
+///
+/// 用于在同一个 JVM 中连接两个组件, 或在不受内核干扰的情况下测量协议本身的开销.
+///
+/// - 每个方向使用一个单生产者单消费者的无锁环形缓冲区.
+/// - 缓冲区为空时读取阻塞, 缓冲区已满时写入阻塞 (背压), 阻塞前会短暂自旋.
+/// - 关闭任意一端时, 对端读取完剩余数据后读到末尾, 对端的写入会抛出异常.
+///
+/// 和其他 ByteEndpoint 一样, 每个方向同一时刻只允许一个线程读取, 一个线程写入.
+///
+/// @author scx567888
+public final class PipeByteEndpoint implements ByteEndpoint {
+
+    private final Ring inbound;
+    private final Ring outbound;
+    private final ByteInput in;
+    private final ByteOutput out;
+
+    private PipeByteEndpoint(Ring inbound, Ring outbound) {
+        this.inbound = inbound;
+        this.outbound = outbound;
+        this.in = ScxIO.createByteInput(new RingInputStream(inbound));
+        this.out = ScxIO.createByteOutput(new RingOutputStream(outbound));
+    }
+
+    /// 创建一对互相连接的端点.
+    ///
+    /// @param capacity 每个方向的缓冲区大小 (会向上取整为 2 的幂)
+    public static PipeByteEndpoint[] pair(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be > 0");
+        }
+        var a = new Ring(capacity);
+        var b = new Ring(capacity);
+        return new PipeByteEndpoint[]{new PipeByteEndpoint(a, b), new PipeByteEndpoint(b, a)};
+    }
+
+    public static PipeByteEndpoint[] pair() {
+        return pair(64 * 1024); // 默认 64 KB
+    }
+
+    @Override
+    public ByteInput in() {
+        return in;
+    }
+
+    @Override
+    public ByteOutput out() {
+        return out;
+    }
+
+    @Override
+    public void close() {
+        outbound.close();
+        inbound.close();
+    }
+
+    /// 单生产者单消费者的环形缓冲区.
+    ///
+    /// head 只由读取线程修改, tail 只由写入线程修改. 等待的一方先发布自己的线程, 再重新检查一次, 然后 park.
+    /// 另一方在移动位置后检查是否有等待的线程并 unpark, 两者都是 volatile 访问, 因此不会丢失唤醒.
+    private static final class Ring {
+
+        /// 阻塞前的自旋次数, 在两端都很活跃时可以避免 park/unpark 的开销. 单核时自旋没有意义.
+        private static final int SPIN_COUNT = Runtime.getRuntime().availableProcessors() > 1 ? 128 : 0;
+
+        private final byte[] buffer;
+        private final int mask;
+        private volatile long head; // 下一个读取的位置
+        private volatile long tail; // 下一个写入的位置
+        private volatile boolean closed;
+        private volatile Thread waitingReader;
+        private volatile Thread waitingWriter;
+
+        Ring(int capacity) {
+            var size = Integer.highestOneBit(capacity);
+            if (size < capacity) {
+                size = size << 1;
+            }
+            this.buffer = new byte[size];
+            this.mask = size - 1;
+            this.head = 0;
+            this.tail = 0;
+            this.closed = false;
+        }
+
+        /// 至少读取 1 个字节, 已关闭并且没有剩余数据时返回 -1.
+        int read(byte[] b, int off, int len) {
+            var h = head;
+            var available = awaitReadable(h);
+            if (available == 0) {
+                return -1;
+            }
+            var n = (int) Math.min(len, available);
+            var p = (int) (h & mask);
+            var first = Math.min(n, buffer.length - p);
+            System.arraycopy(buffer, p, b, off, first);
+            if (first < n) {
+                System.arraycopy(buffer, 0, b, off + first, n - first);
+            }
+            head = h + n;
+            wake(waitingWriter);
+            return n;
+        }
+
+        /// 写入全部字节, 缓冲区已满时阻塞.
+        void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                var t = tail;
+                var free = awaitWritable(t);
+                var n = (int) Math.min(len, free);
+                var p = (int) (t & mask);
+                var first = Math.min(n, buffer.length - p);
+                System.arraycopy(b, off, buffer, p, first);
+                if (first < n) {
+                    System.arraycopy(b, off + first, buffer, 0, n - first);
+                }
+                tail = t + n;
+                wake(waitingReader);
+                off = off + n;
+                len = len - n;
+            }
+        }
+
+        int available() {
+            return (int) (tail - head);
+        }
+
+        void close() {
+            closed = true;
+            wake(waitingReader);
+            wake(waitingWriter);
+        }
+
+        private long awaitReadable(long h) {
+            var spins = 0;
+            while (true) {
+                var available = tail - h;
+                if (available > 0) {
+                    return available;
+                }
+                if (closed) {
+                    // 关闭前写入的数据依然可以读取.
+                    return tail - h;
+                }
+                if (spins < SPIN_COUNT) {
+                    spins = spins + 1;
+                    Thread.onSpinWait();
+                    continue;
+                }
+                waitingReader = Thread.currentThread();
+                if (tail == h && !closed) {
+                    LockSupport.park(this);
+                }
+                waitingReader = null;
+            }
+        }
+
+        private long awaitWritable(long t) throws IOException {
+            var spins = 0;
+            while (true) {
+                if (closed) {
+                    throw new IOException("Pipe closed");
+                }
+                var free = buffer.length - (t - head);
+                if (free > 0) {
+                    return free;
+                }
+                if (spins < SPIN_COUNT) {
+                    spins = spins + 1;
+                    Thread.onSpinWait();
+                    continue;
+                }
+                waitingWriter = Thread.currentThread();
+                if (t - head == buffer.length && !closed) {
+                    LockSupport.park(this);
+                }
+                waitingWriter = null;
+            }
+        }
+
+        private static void wake(Thread thread) {
+            if (thread != null) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+    }
+
+    private static final class RingInputStream extends InputStream {
+
+        private final Ring ring;
+        private final byte[] single; // 单字节读取时复用
+
+        RingInputStream(Ring ring) {
+            this.ring = ring;
+            this.single = new byte[1];
+        }
+
+        @Override
+        public int read() {
+            return ring.read(single, 0, 1) == -1 ? -1 : single[0] & 0b1111_1111;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            Objects.checkFromIndexSize(off, len, b.length);
+            if (len == 0) {
+                return 0;
+            }
+            return ring.read(b, off, len);
+        }
+
+        @Override
+        public int available() {
+            return ring.available();
+        }
+
+        @Override
+        public void close() {
+            ring.close();
+        }
+
+    }
+
+    private static final class RingOutputStream extends OutputStream {
+
+        private final Ring ring;
+        private final byte[] single; // 单字节写入时复用
+
+        RingOutputStream(Ring ring) {
+            this.ring = ring;
+            this.single = new byte[1];
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            single[0] = (byte) b;
+            ring.write(single, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            Objects.checkFromIndexSize(off, len, b.length);
+            ring.write(b, off, len);
+        }
+
+        @Override
+        public void close() {
+            ring.close();
+        }
+
+    }
+
+}
@@ -0,0 +1,187 @@
+package dev.scx.websocket.endpoint;
+
+import dev.scx.io.ByteInput;
+import dev.scx.io.ByteOutput;
+import dev.scx.io.ScxIO;
+import dev.scx.io.endpoint.ByteEndpoint;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Objects;
+
+/// 基于 (阻塞模式的) [SocketChannel] 的 ByteEndpoint.
+///
+/// - 读取使用直接缓冲区, 避免 JDK 内部每次读取时的临时直接缓冲区复制.
+/// - 较小的写入先复制到直接缓冲区中, flush 时一次写出.
+/// - 较大的写入按缓冲区大小分段复制到同一个直接缓冲区中写出 (第一段会和缓冲区中已有的数据, 如帧头, 一起写出).
+///   堆数组无论如何都需要复制一次才能写入 channel, 由自己的直接缓冲区完成复制,
+///   可以避免 JDK 内部按写入大小分配 (并按线程缓存) 临时直接缓冲区.
+///
+/// @author scx567888
+public final class SocketChannelByteEndpoint implements ByteEndpoint {
+
+    private final SocketChannel channel;
+    private final ByteInput in;
+    private final ByteOutput out;
+
+    public SocketChannelByteEndpoint(SocketChannel channel, SocketChannelByteEndpointOptions options) throws IOException {
+        this.channel = channel;
+        channel.configureBlocking(true);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, options.tcpNoDelay());
+        if (options.sendBufferSize() > 0) {
+            channel.setOption(StandardSocketOptions.SO_SNDBUF, options.sendBufferSize());
+        }
+        if (options.receiveBufferSize() > 0) {
+            channel.setOption(StandardSocketOptions.SO_RCVBUF, options.receiveBufferSize());
+        }
+        this.in = ScxIO.createByteInput(new ChannelInputStream(channel, options.readBufferSize()));
+        this.out = ScxIO.createByteOutput(new ChannelOutputStream(channel, options.writeBufferSize()));
+    }
+
+    public SocketChannelByteEndpoint(SocketChannel channel) throws IOException {
+        this(channel, new SocketChannelByteEndpointOptions());
+    }
+
+    public SocketChannel channel() {
+        return channel;
+    }
+
+    @Override
+    public ByteInput in() {
+        return in;
+    }
+
+    @Override
+    public ByteOutput out() {
+        return out;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static final class ChannelInputStream extends InputStream {
+
+        private final SocketChannel channel;
+        private final ByteBuffer buffer; // 读模式 (position 到 limit 为未读取的数据)
+
+        ChannelInputStream(SocketChannel channel, int bufferSize) {
+            this.channel = channel;
+            this.buffer = ByteBuffer.allocateDirect(bufferSize).limit(0);
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!buffer.hasRemaining() && fill() == -1) {
+                return -1;
+            }
+            return buffer.get() & 0b1111_1111;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            Objects.checkFromIndexSize(off, len, b.length);
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining() && fill() == -1) {
+                return -1;
+            }
+            var n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+
+        private int fill() throws IOException {
+            buffer.clear();
+            int n;
+            do {
+                n = channel.read(buffer);
+            } while (n == 0);
+            buffer.flip();
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+
+    }
+
+    private static final class ChannelOutputStream extends OutputStream {
+
+        private final SocketChannel channel;
+        private final ByteBuffer buffer; // 写模式 (0 到 position 为待写出的数据)
+
+        ChannelOutputStream(SocketChannel channel, int bufferSize) {
+            this.channel = channel;
+            this.buffer = ByteBuffer.allocateDirect(bufferSize);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (!buffer.hasRemaining()) {
+                drain();
+            }
+            buffer.put((byte) b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            Objects.checkFromIndexSize(off, len, b.length);
+            if (len <= buffer.remaining()) {
+                buffer.put(b, off, len);
+                return;
+            }
+            if (len < buffer.capacity()) {
+                // 先写出缓冲区, 再放入缓冲区.
+                drain();
+                buffer.put(b, off, len);
+                return;
+            }
+            // 较大的写入, 分段填满缓冲区后写出, 最后不足一段的部分留在缓冲区中.
+            while (len > buffer.remaining()) {
+                var n = buffer.remaining();
+                buffer.put(b, off, n);
+                off = off + n;
+                len = len - n;
+                drain();
+            }
+            buffer.put(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            drain();
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            try {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            } finally {
+                buffer.clear();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+
+    }
+
+}
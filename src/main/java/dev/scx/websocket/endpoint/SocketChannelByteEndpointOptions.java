@@ -0,0 +1,84 @@
+package dev.scx.websocket.endpoint;
+
+/// SocketChannelByteEndpointOptions
+///
+/// 创建 [SocketChannelByteEndpoint] 时使用的配置. 配置会在创建时被复制, 之后的修改不影响已创建的实例.
+///
+/// @author scx567888
+public final class SocketChannelByteEndpointOptions {
+
+    private boolean tcpNoDelay; // TCP_NODELAY
+    private int sendBufferSize; // SO_SNDBUF, 0 表示使用系统默认值
+    private int receiveBufferSize; // SO_RCVBUF, 0 表示使用系统默认值
+    private int readBufferSize; // 读取使用的直接缓冲区大小
+    private int writeBufferSize; // 写出使用的直接缓冲区大小
+
+    public SocketChannelByteEndpointOptions() {
+        this.tcpNoDelay = true;
+        this.sendBufferSize = 0;
+        this.receiveBufferSize = 0;
+        this.readBufferSize = 64 * 1024; // 默认 64 KB
+        this.writeBufferSize = 64 * 1024; // 默认 64 KB
+    }
+
+    public boolean tcpNoDelay() {
+        return tcpNoDelay;
+    }
+
+    /// WebSocket 的帧通常已经由上层合并写出, 默认开启.
+    public SocketChannelByteEndpointOptions tcpNoDelay(boolean tcpNoDelay) {
+        this.tcpNoDelay = tcpNoDelay;
+        return this;
+    }
+
+    public int sendBufferSize() {
+        return sendBufferSize;
+    }
+
+    public SocketChannelByteEndpointOptions sendBufferSize(int sendBufferSize) {
+        if (sendBufferSize < 0) {
+            throw new IllegalArgumentException("sendBufferSize must be >= 0");
+        }
+        this.sendBufferSize = sendBufferSize;
+        return this;
+    }
+
+    public int receiveBufferSize() {
+        return receiveBufferSize;
+    }
+
+    public SocketChannelByteEndpointOptions receiveBufferSize(int receiveBufferSize) {
+        if (receiveBufferSize < 0) {
+            throw new IllegalArgumentException("receiveBufferSize must be >= 0");
+        }
+        this.receiveBufferSize = receiveBufferSize;
+        return this;
+    }
+
+    public int readBufferSize() {
+        return readBufferSize;
+    }
+
+    public SocketChannelByteEndpointOptions readBufferSize(int readBufferSize) {
+        if (readBufferSize <= 0) {
+            throw new IllegalArgumentException("readBufferSize must be > 0");
+        }
+        this.readBufferSize = readBufferSize;
+        return this;
+    }
+
+    public int writeBufferSize() {
+        return writeBufferSize;
+    }
+
+    /// 小于该大小的写入会先复制到直接缓冲区中, 在 flush 时一次写出.
+    /// 更大的写入会按该大小分段写出, 因此也决定了大消息每次系统调用写出的字节数.
+    public SocketChannelByteEndpointOptions writeBufferSize(int writeBufferSize) {
+        if (writeBufferSize <= 0) {
+            throw new IllegalArgumentException("writeBufferSize must be > 0");
+        }
+        this.writeBufferSize = writeBufferSize;
+        return this;
+    }
+
+}
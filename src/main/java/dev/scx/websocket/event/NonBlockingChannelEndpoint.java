@@ -0,0 +1,245 @@
+package dev.scx.websocket.event;
+
+import dev.scx.io.ByteInput;
+import dev.scx.io.ByteOutput;
+import dev.scx.io.ScxIO;
+import dev.scx.io.endpoint.ByteEndpoint;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/// 事件循环中的连接使用的 ByteEndpoint, 只用于写出 (读取由事件循环负责).
+///
+/// 通道处于非阻塞模式. 写出时先直接写入通道, 发送缓冲区已满时, 剩余的数据被复制到队列中,
+/// 并在连接的 SelectionKey 上注册 OP_WRITE, 由事件循环在通道可写时继续写出 ([#onWritable()]).
+/// 因此事件循环线程 (自动 Pong / Close, 以及直接执行的回调) 的写出永远不会阻塞, 不会拖慢同一事件循环中的其他连接.
+///
+/// 写出本身从不等待: 调用方持有帧级别的写锁, 在这里等待的话, 事件循环的自动回复 (Pong / Close) 会阻塞在写锁上,
+/// 而只有事件循环能写出队列, 整个事件循环都会死锁. 因此背压在开始发送之前 (不持有任何写锁时) 进行:
+///
+/// - 其他线程发送消息之前调用 [#awaitDrained()], 等待队列降到 [#MAX_PENDING_BYTES] 以下.
+///   已经开始的帧总是完整入队, 因此队列最多超出上限若干个正在发送的帧.
+/// - 事件循环线程自己排队的数据 (自动回复, 直接执行的回调) 超过上限时, 对端读取过慢, 直接关闭通道.
+///   此时帧可能已经写出了一部分, 关闭通道 (而不是只让本次写出失败) 才能保证对端不会收到残缺的帧.
+///   其他线程排队的数据已经由背压限制, 不计入此上限, 否则对端的 Ping 会因为其他线程的积压而得不到回复.
+///
+/// 队列为空时不持有任何缓冲区, 以降低大量空闲连接的内存占用.
+///
+/// @author scx567888
+final class NonBlockingChannelEndpoint implements ByteEndpoint {
+
+    /// 单个连接等待写出的字节数上限.
+    static final int MAX_PENDING_BYTES = 4 * 1024 * 1024;
+
+    /// 读取端永远不会被使用, 所有连接共享同一个.
+    private static final ByteInput EMPTY_INPUT = ScxIO.createByteInput(InputStream.nullInputStream());
+
+    private final SocketChannel channel;
+    private final WebSocketEventLoop eventLoop;
+    private final ReentrantLock lock;
+    private final Condition drained; // 队列降到上限以下 或 已关闭
+    private final ArrayDeque<PendingWrite> pending; // 等待写出的数据, 只在持有 lock 时访问
+    private final ByteOutput out;
+    private long pendingBytes;
+    private long eventLoopPendingBytes; // pendingBytes 中由事件循环线程排队的部分
+    private SelectionKey key; // 注册到事件循环后设置
+    private boolean closed;
+    private boolean overflowed; // 是否因为事件循环线程排队的数据超过上限而关闭
+
+    NonBlockingChannelEndpoint(SocketChannel channel, WebSocketEventLoop eventLoop) {
+        this.channel = channel;
+        this.eventLoop = eventLoop;
+        this.lock = new ReentrantLock();
+        this.drained = lock.newCondition();
+        this.pending = new ArrayDeque<>(0);
+        this.out = ScxIO.createByteOutput(new ChannelOutputStream());
+        this.pendingBytes = 0;
+        this.eventLoopPendingBytes = 0;
+        this.key = null;
+        this.closed = false;
+        this.overflowed = false;
+    }
+
+    @Override
+    public ByteInput in() {
+        return EMPTY_INPUT;
+    }
+
+    @Override
+    public ByteOutput out() {
+        return out;
+    }
+
+    /// 由事件循环线程在注册完成后调用. 注册之前排队的数据在此时开始写出.
+    void attach(SelectionKey key) {
+        lock.lock();
+        try {
+            this.key = key;
+            if (!pending.isEmpty()) {
+                key.interestOpsOr(SelectionKey.OP_WRITE);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /// 由事件循环线程在通道可写时调用, 尽可能多地写出队列中的数据.
+    void onWritable() throws IOException {
+        lock.lock();
+        try {
+            while (!pending.isEmpty()) {
+                var write = pending.peek();
+                var buffer = write.buffer();
+                var n = channel.write(buffer);
+                pendingBytes = pendingBytes - n;
+                if (write.eventLoop()) {
+                    eventLoopPendingBytes = eventLoopPendingBytes - n;
+                }
+                if (buffer.hasRemaining()) {
+                    // 发送缓冲区又满了, 等待下一次可写.
+                    signalIfDrained();
+                    return;
+                }
+                pending.poll();
+            }
+            key.interestOpsAnd(~SelectionKey.OP_WRITE);
+            signalIfDrained();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /// 在开始发送一条消息之前调用, 等待队列降到上限以下 (背压). 调用方不能持有任何写锁.
+    ///
+    /// 事件循环线程中调用时直接返回, 已关闭时也直接返回 (之后的写出会失败).
+    void awaitDrained() throws InterruptedIOException {
+        if (eventLoop.inEventLoop()) {
+            return;
+        }
+        lock.lock();
+        try {
+            while (!closed && pendingBytes >= MAX_PENDING_BYTES) {
+                try {
+                    drained.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("interrupted while waiting for pending writes");
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /// 是否因为事件循环线程排队的数据超过上限而关闭. 由事件循环线程在分发消息之后检查.
+    boolean isOverflowed() {
+        lock.lock();
+        try {
+            return overflowed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            closed = true;
+            pending.clear();
+            pendingBytes = 0;
+            eventLoopPendingBytes = 0;
+            drained.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        channel.close();
+    }
+
+    private void write(byte[] b, int off, int len) throws IOException {
+        lock.lock();
+        try {
+            // 调用方持有帧级别的写锁, 这里不能等待 (见类注释).
+            var inEventLoop = eventLoop.inEventLoop();
+            if (closed) {
+                throw new ClosedChannelException();
+            }
+            // 没有排队的数据时直接写入通道, 以保证顺序.
+            if (pending.isEmpty()) {
+                var buffer = ByteBuffer.wrap(b, off, len);
+                while (buffer.hasRemaining() && channel.write(buffer) > 0) {
+                    // 继续写出
+                }
+                if (!buffer.hasRemaining()) {
+                    return;
+                }
+                off = buffer.position();
+                len = buffer.remaining();
+            }
+            if (inEventLoop) {
+                if (eventLoopPendingBytes + len > MAX_PENDING_BYTES) {
+                    overflowed = true;
+                    close();
+                    throw new IOException("slow consumer : too many pending bytes");
+                }
+                eventLoopPendingBytes = eventLoopPendingBytes + len;
+            }
+            // 调用方的数组可能会被复用, 必须复制.
+            pending.add(new PendingWrite(ByteBuffer.wrap(Arrays.copyOfRange(b, off, off + len)), inEventLoop));
+            pendingBytes = pendingBytes + len;
+            if (pending.size() == 1 && key != null) {
+                key.interestOpsOr(SelectionKey.OP_WRITE);
+                if (!inEventLoop) {
+                    eventLoop.selector().wakeup();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void signalIfDrained() {
+        if (pendingBytes < MAX_PENDING_BYTES) {
+            drained.signalAll();
+        }
+    }
+
+    private record PendingWrite(ByteBuffer buffer, boolean eventLoop) {
+
+    }
+
+    private final class ChannelOutputStream extends OutputStream {
+
+        private final byte[] single = new byte[1]; // 单字节写入时复用, 写入由上层的锁串行化
+
+        @Override
+        public void write(int b) throws IOException {
+            single[0] = (byte) b;
+            NonBlockingChannelEndpoint.this.write(single, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            Objects.checkFromIndexSize(off, len, b.length);
+            NonBlockingChannelEndpoint.this.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            NonBlockingChannelEndpoint.this.close();
+        }
+
+    }
+
+}
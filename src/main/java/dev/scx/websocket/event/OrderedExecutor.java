@@ -0,0 +1,86 @@
+package dev.scx.websocket.event;
+
+import java.lang.System.Logger;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static java.lang.System.Logger.Level.ERROR;
+import static java.lang.System.getLogger;
+
+/// 串行执行器, 提交的任务在底层 (共享的) executor 上按提交顺序逐个执行, 不会并发.
+///
+/// 类似 actor 的邮箱: 同一时刻最多只有一个排空任务在底层 executor 中,
+/// 每次排空最多执行 MAX_BATCH_SIZE 个任务后重新提交, 以免长期占用底层线程.
+///
+/// @author scx567888
+final class OrderedExecutor implements Executor {
+
+    private static final Logger LOGGER = getLogger(OrderedExecutor.class.getName());
+
+    private static final int MAX_BATCH_SIZE = 64;
+
+    private final Executor executor;
+    private final ConcurrentLinkedQueue<Runnable> tasks;
+    private final AtomicBoolean scheduled; // 是否已经有排空任务
+    private final Runnable drainTask;
+
+    OrderedExecutor(Executor executor) {
+        this.executor = executor;
+        this.tasks = new ConcurrentLinkedQueue<>();
+        this.scheduled = new AtomicBoolean(false);
+        this.drainTask = this::drain;
+    }
+
+    /// 底层 executor 拒绝排空任务时, 抛出其异常, 并且 task 不会被执行.
+    @Override
+    public void execute(Runnable task) {
+        tasks.add(task);
+        if (scheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(drainTask);
+            } catch (RuntimeException e) {
+                // 此时没有排空任务, 可以安全地移除, 否则调用方收到异常之后 task 仍可能被之后的排空执行.
+                tasks.remove(task);
+                scheduled.set(false);
+                throw e;
+            }
+        }
+    }
+
+    private void drain() {
+        try {
+            for (int i = 0; i < MAX_BATCH_SIZE; i = i + 1) {
+                var task = tasks.poll();
+                if (task == null) {
+                    break;
+                }
+                try {
+                    task.run();
+                } catch (Exception e) {
+                    LOGGER.log(ERROR, "Error while running callback : ", e);
+                }
+            }
+        } finally {
+            // 任务抛出 Error 时同样需要重置, 否则之后的任务永远不会执行.
+            scheduled.set(false);
+            // 退出前再次检查, 防止和提交竞争导致任务滞留.
+            if (!tasks.isEmpty()) {
+                reschedule();
+            }
+        }
+    }
+
+    /// 重新提交排空任务. 失败时 (如底层 executor 已关闭) 剩余的任务留在队列中, 由下一次提交触发执行.
+    private void reschedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(drainTask);
+            } catch (RuntimeException e) {
+                scheduled.set(false);
+                LOGGER.log(ERROR, "Error while scheduling callbacks : ", e);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,150 @@
+package dev.scx.websocket.event;
+
+import dev.scx.websocket.buffer.WebSocketBufferPool;
+import dev.scx.websocket.exception.WebSocketIOException;
+import dev.scx.websocket.exception.WebSocketProtocolException;
+import dev.scx.websocket.frame.*;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static dev.scx.websocket.WebSocketCloseInfo.TOO_BIG;
+
+/// 由事件循环驱动的 ScxFrameWebSocket.
+///
+/// 读取端: 事件循环将解码完成的帧放入队列, 读取方法只从队列中取出, 不会阻塞.
+/// 只在 [#hasCompleteMessage()] 为 true 时读取, 才能保证 ScxWebSocket 的一次 read() 不会读到空队列.
+/// 写入端: 委托给普通的 ScxFrameWebSocket.
+///
+/// 未结束的消息的分片会一直留在队列中, 因此入队时就按 maxMessageSize 限制其总大小,
+/// 而不是等到 ScxWebSocket 聚合时才校验, 否则对端可以无限发送 CONTINUATION 帧耗尽内存.
+///
+/// 读取相关的方法只能在事件循环线程中调用.
+///
+/// @author scx567888
+final class QueuedFrameWebSocket implements ScxFrameWebSocket {
+
+    private final ScxFrameWebSocket writer;
+    private final long maxMessageSize;
+    private final ArrayDeque<WebSocketFrame> frames;
+    private int completeCount; // 队列中 可以结束一次 ScxWebSocket.read() 的帧 (控制帧 或 fin 数据帧) 的数量
+    private long messageBytes; // 当前未结束的消息已入队的 payload 字节数
+
+    QueuedFrameWebSocket(ScxFrameWebSocket writer, long maxMessageSize) {
+        this.writer = writer;
+        this.maxMessageSize = maxMessageSize;
+        this.frames = new ArrayDeque<>(2);
+        this.completeCount = 0;
+        this.messageBytes = 0;
+    }
+
+    void offer(WebSocketFrame frame) throws WebSocketProtocolException {
+        switch (frame.opCode()) {
+            case PING, PONG, CLOSE -> {
+            }
+            default -> {
+                messageBytes = messageBytes + frame.payloadData().length;
+                if (messageBytes > maxMessageSize) {
+                    throw new WebSocketProtocolException(TOO_BIG.code(), "message too large");
+                }
+                if (frame.fin()) {
+                    messageBytes = 0;
+                }
+            }
+        }
+        frames.add(frame);
+        if (isComplete(frame)) {
+            completeCount = completeCount + 1;
+        }
+    }
+
+    boolean hasCompleteMessage() {
+        return completeCount > 0;
+    }
+
+    @Override
+    public boolean isClient() {
+        return writer.isClient();
+    }
+
+    @Override
+    public WebSocketFrame readFrame() throws WebSocketIOException {
+        var frame = frames.poll();
+        if (frame == null) {
+            throw new IllegalStateException("No frame available");
+        }
+        if (isComplete(frame)) {
+            completeCount = completeCount - 1;
+        }
+        return frame;
+    }
+
+    @Override
+    public WebSocketPooledFrame readPooledFrame() throws WebSocketIOException {
+        var frame = readFrame();
+        var payloadData = frame.payloadData();
+        var payload = WebSocketBufferPool.global().lease(payloadData.length);
+        System.arraycopy(payloadData, 0, payload.array(), 0, payloadData.length);
+        return new WebSocketPooledFrame(frame.opCode(), payload, frame.fin(), frame.rsv1());
+    }
+
+    @Override
+    public WebSocketFrameStream readFrameStream() throws WebSocketIOException {
+        var frame = readFrame();
+        var payloadData = frame.payloadData();
+        return new WebSocketFrameStream(frame.opCode(), frame.fin(), frame.rsv1(), payloadData.length, new FramePayloadInputStream(payloadData));
+    }
+
+    @Override
+    public void sendFrame(WebSocketFrame frame) throws WebSocketIOException, WebSocketProtocolException {
+        writer.sendFrame(frame);
+    }
+
+    @Override
+    public void sendFrames(List<WebSocketFrame> frames) throws WebSocketIOException, WebSocketProtocolException {
+        writer.sendFrames(frames);
+    }
+
+    @Override
+    public void sendPreparedFrame(PreparedWebSocketFrame preparedFrame) throws WebSocketIOException, WebSocketProtocolException {
+        writer.sendPreparedFrame(preparedFrame);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> sendFrameAsync(WebSocketFrame frame) {
+        return writer.sendFrameAsync(frame);
+    }
+
+    @Override
+    public void close() {
+        writer.close();
+    }
+
+    private static boolean isComplete(WebSocketFrame frame) {
+        return switch (frame.opCode()) {
+            case PING, PONG, CLOSE -> true;
+            default -> frame.fin();
+        };
+    }
+
+    /// 整体读取时直接返回原数组, 避免再复制一次.
+    private static final class FramePayloadInputStream extends ByteArrayInputStream {
+
+        FramePayloadInputStream(byte[] buf) {
+            super(buf);
+        }
+
+        @Override
+        public synchronized byte[] readAllBytes() {
+            if (pos == 0 && count == buf.length) {
+                pos = count;
+                return buf;
+            }
+            return super.readAllBytes();
+        }
+
+    }
+
+}
@@ -6,6 +6,10 @@ import dev.scx.websocket.exception.WebSocketInvalidStateException;
 import dev.scx.websocket.exception.WebSocketProtocolException;
 import dev.scx.websocket.frame.ScxFrameWebSocket;
 
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
 import java.util.function.Consumer;
 
@@ -66,13 +70,19 @@ import static dev.scx.websocket.WebSocketCloseInfo.NORMAL_CLOSE;
 /// @author scx567888
 public interface ScxEventWebSocket extends AutoCloseable {
 
+    static ScxEventWebSocket of(ScxWebSocket messageWebSocket, ScxEventWebSocketOptions options) {
+        return new ScxEventWebSocketImpl(messageWebSocket, options);
+    }
+
     static ScxEventWebSocket of(ScxWebSocket messageWebSocket) {
-        return new ScxEventWebSocketImpl(messageWebSocket);
+        return new ScxEventWebSocketImpl(messageWebSocket, new ScxEventWebSocketOptions());
     }
 
-    /// 为了防止 回调之间互相阻塞 可以传递一个 callbackExecutor 来处理每个 callback
+    /// 为了防止 回调之间互相阻塞 可以传递一个 callbackExecutor 来处理每个 callback.
+    ///
+    /// 每个 callback 单独提交, 不保证顺序. 如需保证顺序, 使用 [#of(ScxWebSocket, ScxEventWebSocketOptions)].
     static ScxEventWebSocket of(ScxWebSocket messageWebSocket, Executor callbackExecutor) {
-        return new ScxEventWebSocketImpl(messageWebSocket, callbackExecutor);
+        return of(messageWebSocket, new ScxEventWebSocketOptions().callbackExecutor(callbackExecutor).orderedDispatch(false));
     }
 
     ScxEventWebSocket onText(Consumer<String> textHandler);
@@ -89,7 +99,24 @@ public interface ScxEventWebSocket extends AutoCloseable {
 
     void send(WebSocketMessage message) throws WebSocketIOException, WebSocketProtocolException, WebSocketInvalidStateException;
 
+    /// 语义同 [ScxWebSocket#sendMessages(List)]
+    void sendMessages(List<? extends WebSocketMessage> messages) throws WebSocketIOException, WebSocketProtocolException, WebSocketInvalidStateException;
+
+    /// 语义同 [ScxWebSocket#sendAsync(WebSocketMessage)]
+    CompletableFuture<Boolean> sendAsync(WebSocketMessage message) throws WebSocketInvalidStateException;
+
+    /// 语义同 [ScxWebSocket#sendPrepared(PreparedMessage)]
+    void sendPrepared(PreparedMessage message) throws WebSocketIOException, WebSocketProtocolException, WebSocketInvalidStateException;
+
+    /// 语义同 [ScxWebSocket#sendBinaryStream()]
+    OutputStream sendBinaryStream() throws WebSocketInvalidStateException;
+
+    /// 语义同 [ScxWebSocket#sendTextStream()]
+    Writer sendTextStream() throws WebSocketInvalidStateException;
+
     /// 以上回调设置完成之后调用以便启动 websocket 监听 (这个方法是 阻塞的)
+    ///
+    /// 通过 [ScxEventWebSocketEngine] 注册的连接例外, 此时只会注册到事件循环中, 立即返回.
     void start();
 
     /// close 语义等同于 [ScxFrameWebSocket#close()]
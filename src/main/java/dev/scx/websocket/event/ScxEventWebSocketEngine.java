@@ -0,0 +1,92 @@
+package dev.scx.websocket.event;
+
+import dev.scx.websocket.ScxWebSocket;
+import dev.scx.websocket.ScxWebSocketOptions;
+import dev.scx.websocket.frame.ScxFrameWebSocket;
+import dev.scx.websocket.frame.ScxFrameWebSocketOptions;
+import dev.scx.websocket.frame.WebSocketFrameDecoder;
+
+import java.io.IOException;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/// 基于 Selector 的非阻塞事件循环引擎, 用少量线程驱动大量 [ScxEventWebSocket].
+///
+/// 与 [ScxEventWebSocket#of(ScxWebSocket)] 的 "每个连接一个阻塞的读取线程" 不同,
+/// 通过引擎注册的连接, start() 不会阻塞, 而是将连接注册到某个事件循环中,
+/// 由事件循环增量解码 ([WebSocketFrameDecoder]), 每当收到完整的消息时分发给回调.
+/// 空闲连接不占用线程, 也不持有读写缓冲区.
+///
+/// 注意:
+///
+/// - 未指定 callbackExecutor ([ScxEventWebSocketOptions]) 时, 回调直接在事件循环线程中执行, 不应在回调中阻塞.
+/// - 流式读取 (readStream) 不适用于此模型, 消息总是被完整聚合后分发.
+/// - 写出由调用方线程完成. 发送缓冲区已满时, 事件循环线程不会阻塞, 剩余数据排队后由事件循环在可写时写出 (见 [NonBlockingChannelEndpoint]).
+///   排队的数据过多时, 其他线程的 send 会在开始发送之前等待.
+///
+/// @author scx567888
+public final class ScxEventWebSocketEngine implements AutoCloseable {
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private final WebSocketEventLoop[] eventLoops;
+    private final AtomicInteger next;
+
+    public ScxEventWebSocketEngine(int eventLoopCount) throws IOException {
+        if (eventLoopCount <= 0) {
+            throw new IllegalArgumentException("eventLoopCount must be > 0");
+        }
+        this.eventLoops = new WebSocketEventLoop[eventLoopCount];
+        for (int i = 0; i < eventLoopCount; i = i + 1) {
+            this.eventLoops[i] = new WebSocketEventLoop("scx-websocket-event-loop-" + i, READ_BUFFER_SIZE);
+        }
+        this.next = new AtomicInteger(0);
+    }
+
+    /// 事件循环数量为 CPU 核心数.
+    public ScxEventWebSocketEngine() throws IOException {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /// 注册一个 (已完成握手的) 连接. 设置好回调后调用 start() 开始读取.
+    ///
+    /// 通道会被切换为非阻塞模式.
+    public ScxEventWebSocket register(SocketChannel channel, boolean isClient, ScxWebSocketOptions options, ScxEventWebSocketOptions eventOptions) throws IOException {
+        channel.configureBlocking(false);
+        var frameOptions = new ScxFrameWebSocketOptions().rsv1Allowed(options.perMessageDeflate() != null).metrics(options.metrics()).observer(options.observer());
+        var eventLoop = eventLoops[Math.floorMod(next.getAndIncrement(), eventLoops.length)];
+        var endpoint = new NonBlockingChannelEndpoint(channel, eventLoop);
+        var writer = ScxFrameWebSocket.of(endpoint, isClient, frameOptions);
+        var frameWebSocket = new QueuedFrameWebSocket(writer, options.maxMessageSize());
+        var webSocket = ScxWebSocket.of(frameWebSocket, options);
+        var connection = new WebSocketEventLoopConnection(eventLoop, channel, endpoint, new WebSocketFrameDecoder(isClient, frameOptions), frameWebSocket, webSocket);
+        var eventWebSocket = new ScxEventWebSocketImpl(webSocket, eventOptions, connection::start, connection::awaitWritable);
+        connection.bind(eventWebSocket);
+        return eventWebSocket;
+    }
+
+    public ScxEventWebSocket register(SocketChannel channel, boolean isClient, ScxWebSocketOptions options) throws IOException {
+        return register(channel, isClient, options, new ScxEventWebSocketOptions());
+    }
+
+    public ScxEventWebSocket register(SocketChannel channel, boolean isClient) throws IOException {
+        return register(channel, isClient, new ScxWebSocketOptions(), new ScxEventWebSocketOptions());
+    }
+
+    /// 关闭所有事件循环, 并终止其中的所有连接.
+    @Override
+    public void close() {
+        for (var eventLoop : eventLoops) {
+            eventLoop.shutdown();
+        }
+        for (var eventLoop : eventLoops) {
+            try {
+                eventLoop.awaitTermination();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+}
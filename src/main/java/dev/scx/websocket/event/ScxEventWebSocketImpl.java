@@ -4,8 +4,17 @@ import dev.scx.websocket.*;
 import dev.scx.websocket.exception.WebSocketIOException;
 import dev.scx.websocket.exception.WebSocketInvalidStateException;
 import dev.scx.websocket.exception.WebSocketProtocolException;
-
+import dev.scx.websocket.frame.WebSocketOpCode;
+import dev.scx.websocket.metrics.WebSocketMetrics;
+
+import java.io.FilterOutputStream;
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
 import java.lang.System.Logger;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
 import java.util.function.Consumer;
 
@@ -21,6 +30,10 @@ final class ScxEventWebSocketImpl implements ScxEventWebSocket {
 
     private final ScxWebSocket messageWebSocket;
     private final Executor callbackExecutor; // 回调执行器
+    private final Runnable starter; // 由 事件循环 驱动时的启动逻辑, null 表示使用阻塞的读取循环
+    private final Runnable sendGate; // 由 事件循环 驱动时, 发送之前的背压等待 (不持有任何写锁), null 表示不需要
+    private final WebSocketKeepAlive keepAlive; // 心跳服务, null 表示不使用
+    private final WebSocketMetrics metrics; // 运行指标, null 表示不统计
     private Consumer<String> textHandler;
     private Consumer<byte[]> binaryHandler;
     private Consumer<byte[]> pingHandler;
@@ -29,13 +42,21 @@ final class ScxEventWebSocketImpl implements ScxEventWebSocket {
     private Consumer<Throwable> errorHandler;
     private volatile boolean running;
 
-    public ScxEventWebSocketImpl(ScxWebSocket messageWebSocket) {
-        this(messageWebSocket, null);
+    public ScxEventWebSocketImpl(ScxWebSocket messageWebSocket, ScxEventWebSocketOptions options) {
+        this(messageWebSocket, options, null, null);
     }
 
-    public ScxEventWebSocketImpl(ScxWebSocket messageWebSocket, Executor callbackExecutor) {
+    /// 由 [ScxEventWebSocketEngine] 使用, 此时 start() 只负责注册, 消息由事件循环通过 [#dispatchMessage(WebSocketMessage)] 推送.
+    /// 每次发送 (包括流式发送的每次写入) 之前先执行 sendGate.
+    ScxEventWebSocketImpl(ScxWebSocket messageWebSocket, ScxEventWebSocketOptions options, Runnable starter, Runnable sendGate) {
         this.messageWebSocket = messageWebSocket;
-        this.callbackExecutor = callbackExecutor;
+        var executor = options.callbackExecutor();
+        // 有序分发时, 每个连接使用一个独立的串行执行器.
+        this.callbackExecutor = executor != null && options.orderedDispatch() ? new OrderedExecutor(executor) : executor;
+        this.starter = starter;
+        this.sendGate = sendGate;
+        this.keepAlive = options.keepAlive();
+        this.metrics = options.metrics();
         this.textHandler = null;
         this.binaryHandler = null;
         this.pingHandler = null;
@@ -87,6 +108,14 @@ final class ScxEventWebSocketImpl implements ScxEventWebSocket {
             return;
         }
         running = true;
+        if (keepAlive != null) {
+            keepAlive.register(messageWebSocket);
+        }
+        // 由事件循环驱动, 无需阻塞.
+        if (starter != null) {
+            starter.run();
+            return;
+        }
         while (running) {
             try {
                 // 尝试读取 帧
@@ -101,9 +130,40 @@ final class ScxEventWebSocketImpl implements ScxEventWebSocket {
 
     @Override
     public void send(WebSocketMessage message) throws WebSocketIOException, WebSocketInvalidStateException, WebSocketProtocolException {
+        awaitSendGate();
         this.messageWebSocket.send(message);
     }
 
+    @Override
+    public void sendMessages(List<? extends WebSocketMessage> messages) throws WebSocketIOException, WebSocketInvalidStateException, WebSocketProtocolException {
+        awaitSendGate();
+        this.messageWebSocket.sendMessages(messages);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> sendAsync(WebSocketMessage message) throws WebSocketInvalidStateException {
+        awaitSendGate();
+        return this.messageWebSocket.sendAsync(message);
+    }
+
+    @Override
+    public void sendPrepared(PreparedMessage message) throws WebSocketIOException, WebSocketInvalidStateException, WebSocketProtocolException {
+        awaitSendGate();
+        this.messageWebSocket.sendPrepared(message);
+    }
+
+    @Override
+    public OutputStream sendBinaryStream() throws WebSocketInvalidStateException {
+        var out = this.messageWebSocket.sendBinaryStream();
+        return sendGate != null ? new GatedOutputStream(out) : out;
+    }
+
+    @Override
+    public Writer sendTextStream() throws WebSocketInvalidStateException {
+        var writer = this.messageWebSocket.sendTextStream();
+        return sendGate != null ? new GatedWriter(writer) : writer;
+    }
+
     @Override
     public void close() {
         // 关于主动调用 close 如何触发 onClose
@@ -111,6 +171,26 @@ final class ScxEventWebSocketImpl implements ScxEventWebSocket {
         this.messageWebSocket.close();
     }
 
+    private void awaitSendGate() {
+        if (sendGate != null) {
+            sendGate.run();
+        }
+    }
+
+    boolean isRunning() {
+        return running;
+    }
+
+    /// 由事件循环调用, 分发一条已读取的消息.
+    void dispatchMessage(WebSocketMessage message) {
+        _handleMessage(message);
+    }
+
+    /// 由事件循环调用, 处理读取过程中的异常 (会终止连接).
+    void dispatchException(Exception exception) {
+        _handleException(exception);
+    }
+
     private void _handleException(Exception exception) {
         // 1, 调用错误处理器.
         _handleError(exception);
@@ -219,9 +299,9 @@ final class ScxEventWebSocketImpl implements ScxEventWebSocket {
             return;
         }
         if (callbackExecutor == null) {
-            textHandler.accept(text);
+            _invoke(textHandler, text, WebSocketOpCode.TEXT, text.length());
         } else {
-            callbackExecutor.execute(() -> textHandler.accept(text));
+            callbackExecutor.execute(() -> _invoke(textHandler, text, WebSocketOpCode.TEXT, text.length()));
         }
     }
 
@@ -230,9 +310,9 @@ final class ScxEventWebSocketImpl implements ScxEventWebSocket {
             return;
         }
         if (callbackExecutor == null) {
-            binaryHandler.accept(binary);
+            _invoke(binaryHandler, binary, WebSocketOpCode.BINARY, binary.length);
         } else {
-            callbackExecutor.execute(() -> binaryHandler.accept(binary));
+            callbackExecutor.execute(() -> _invoke(binaryHandler, binary, WebSocketOpCode.BINARY, binary.length));
         }
     }
 
@@ -241,9 +321,9 @@ final class ScxEventWebSocketImpl implements ScxEventWebSocket {
             return;
         }
         if (callbackExecutor == null) {
-            pingHandler.accept(bytes);
+            _invoke(pingHandler, bytes, WebSocketOpCode.PING, bytes.length);
         } else {
-            callbackExecutor.execute(() -> pingHandler.accept(bytes));
+            callbackExecutor.execute(() -> _invoke(pingHandler, bytes, WebSocketOpCode.PING, bytes.length));
         }
     }
 
@@ -252,9 +332,9 @@ final class ScxEventWebSocketImpl implements ScxEventWebSocket {
             return;
         }
         if (callbackExecutor == null) {
-            pongHandler.accept(bytes);
+            _invoke(pongHandler, bytes, WebSocketOpCode.PONG, bytes.length);
         } else {
-            callbackExecutor.execute(() -> pongHandler.accept(bytes));
+            callbackExecutor.execute(() -> _invoke(pongHandler, bytes, WebSocketOpCode.PONG, bytes.length));
         }
     }
 
@@ -263,9 +343,9 @@ final class ScxEventWebSocketImpl implements ScxEventWebSocket {
             return;
         }
         if (callbackExecutor == null) {
-            closeHandler.accept(closeInfo);
+            _invoke(closeHandler, closeInfo, WebSocketOpCode.CLOSE, 0);
         } else {
-            callbackExecutor.execute(() -> closeHandler.accept(closeInfo));
+            callbackExecutor.execute(() -> _invoke(closeHandler, closeInfo, WebSocketOpCode.CLOSE, 0));
         }
     }
 
@@ -274,10 +354,87 @@ final class ScxEventWebSocketImpl implements ScxEventWebSocket {
             return;
         }
         if (callbackExecutor == null) {
-            errorHandler.accept(e);
+            _invoke(errorHandler, e, null, 0);
         } else {
-            callbackExecutor.execute(() -> errorHandler.accept(e));
+            callbackExecutor.execute(() -> _invoke(errorHandler, e, null, 0));
         }
     }
 
+    /// 执行回调, 同时统计回调次数和失败次数, 并记录 JFR 事件.
+    private <T> void _invoke(Consumer<T> handler, T value, WebSocketOpCode opCode, long payloadLength) {
+        WebSocketCallbackEvent event = null;
+        if (WebSocketCallbackEvent.enabled()) {
+            event = new WebSocketCallbackEvent();
+            event.begin();
+        }
+        var failed = true;
+        try {
+            handler.accept(value);
+            failed = false;
+        } finally {
+            if (metrics != null) {
+                metrics.recordCallback(failed);
+            }
+            if (event != null) {
+                event.end();
+                if (event.shouldCommit()) {
+                    event.opCode = opCode != null ? opCode.name() : null;
+                    event.payloadLength = payloadLength;
+                    event.failed = failed;
+                    event.commit();
+                }
+            }
+        }
+    }
+
+    /// 流式发送的每次写入之前执行 sendGate.
+    ///
+    /// 此时持有数据消息锁, 因此在事件循环线程中执行的回调不应在流打开期间 (由其他线程) 发送数据消息, 否则会阻塞事件循环.
+    private final class GatedOutputStream extends FilterOutputStream {
+
+        GatedOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            awaitSendGate();
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            awaitSendGate();
+            out.write(b, off, len);
+        }
+
+    }
+
+    /// 同 [GatedOutputStream].
+    private final class GatedWriter extends FilterWriter {
+
+        GatedWriter(Writer out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            awaitSendGate();
+            out.write(c);
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            awaitSendGate();
+            out.write(cbuf, off, len);
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            awaitSendGate();
+            out.write(str, off, len);
+        }
+
+    }
+
 }
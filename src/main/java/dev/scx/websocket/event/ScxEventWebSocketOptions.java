@@ -0,0 +1,71 @@
+package dev.scx.websocket.event;
+
+import dev.scx.websocket.WebSocketKeepAlive;
+import dev.scx.websocket.metrics.WebSocketMetrics;
+
+import java.util.concurrent.Executor;
+
+/// ScxEventWebSocketOptions
+///
+/// 创建 [ScxEventWebSocket] 时使用的配置. 配置会在创建时被复制, 之后的修改不影响已创建的实例.
+///
+/// @author scx567888
+public final class ScxEventWebSocketOptions {
+
+    private Executor callbackExecutor; // 回调执行器, null 表示在读取线程中直接执行
+    private boolean orderedDispatch; // 是否保证同一连接的回调按顺序串行执行
+    private WebSocketKeepAlive keepAlive; // 心跳服务, null 表示不使用
+    private WebSocketMetrics metrics; // 运行指标, null 表示不统计
+
+    public ScxEventWebSocketOptions() {
+        this.callbackExecutor = null;
+        this.orderedDispatch = true;
+        this.keepAlive = null;
+        this.metrics = null;
+    }
+
+    public Executor callbackExecutor() {
+        return callbackExecutor;
+    }
+
+    /// 为了防止 回调之间互相阻塞 (或阻塞读取线程) 可以传递一个 callbackExecutor 来处理每个 callback.
+    public ScxEventWebSocketOptions callbackExecutor(Executor callbackExecutor) {
+        this.callbackExecutor = callbackExecutor;
+        return this;
+    }
+
+    public boolean orderedDispatch() {
+        return orderedDispatch;
+    }
+
+    /// 只在设置了 callbackExecutor 时有效, 默认开启.
+    ///
+    /// 开启时, 同一连接的回调在 callbackExecutor 上按消息顺序串行执行 (onClose 不会先于之前的 onText 执行),
+    /// 不同连接之间依然是并行的. 关闭时, 每个回调单独提交给 callbackExecutor, 不保证顺序.
+    public ScxEventWebSocketOptions orderedDispatch(boolean orderedDispatch) {
+        this.orderedDispatch = orderedDispatch;
+        return this;
+    }
+
+    public WebSocketKeepAlive keepAlive() {
+        return keepAlive;
+    }
+
+    /// 设置后, start() 时会自动将连接注册到心跳服务中.
+    public ScxEventWebSocketOptions keepAlive(WebSocketKeepAlive keepAlive) {
+        this.keepAlive = keepAlive;
+        return this;
+    }
+
+    public WebSocketMetrics metrics() {
+        return metrics;
+    }
+
+    /// 回调级别的指标 (回调次数, 失败次数), null 表示不统计 (默认).
+    /// 消息和帧级别的指标需要在创建底层 ScxWebSocket 时配置.
+    public ScxEventWebSocketOptions metrics(WebSocketMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+}
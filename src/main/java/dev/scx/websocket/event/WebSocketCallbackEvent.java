@@ -0,0 +1,32 @@
+package dev.scx.websocket.event;
+
+import jdk.jfr.*;
+
+/// JFR 事件: 执行一次回调.
+///
+/// @author scx567888
+@Name("dev.scx.websocket.Callback")
+@Label("WebSocket Callback")
+@Category({"SCX", "WebSocket"})
+@Threshold("10 ms")
+@StackTrace(false)
+final class WebSocketCallbackEvent extends Event {
+
+    private static final EventType TYPE = EventType.getEventType(WebSocketCallbackEvent.class);
+
+    @Label("OpCode")
+    @Description("onError 为 null")
+    String opCode;
+
+    @Label("Payload Length")
+    @Description("TEXT 为字符数")
+    long payloadLength;
+
+    @Label("Failed")
+    boolean failed;
+
+    static boolean enabled() {
+        return TYPE.isEnabled();
+    }
+
+}
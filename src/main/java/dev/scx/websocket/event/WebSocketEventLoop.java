@@ -0,0 +1,103 @@
+package dev.scx.websocket.event;
+
+import java.io.IOException;
+import java.lang.System.Logger;
+import java.nio.ByteBuffer;
+import java.nio.channels.Selector;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static java.lang.System.Logger.Level.ERROR;
+import static java.lang.System.getLogger;
+
+/// 单个事件循环, 一个线程 + 一个 Selector.
+///
+/// 所有连接共享同一个读取缓冲区, 因为解码器会完全消费每次读取到的数据.
+///
+/// @author scx567888
+final class WebSocketEventLoop implements Runnable {
+
+    private static final Logger LOGGER = getLogger(WebSocketEventLoop.class.getName());
+
+    private final Selector selector;
+    private final ConcurrentLinkedQueue<Runnable> tasks; // 需要在事件循环线程中执行的任务 (如注册)
+    private final ByteBuffer readBuffer;
+    private final Thread thread;
+    private volatile boolean running;
+
+    WebSocketEventLoop(String name, int readBufferSize) throws IOException {
+        this.selector = Selector.open();
+        this.tasks = new ConcurrentLinkedQueue<>();
+        this.readBuffer = ByteBuffer.allocateDirect(readBufferSize);
+        this.running = true;
+        this.thread = Thread.ofPlatform().name(name).start(this);
+    }
+
+    /// 在事件循环线程中执行 task.
+    void execute(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    Selector selector() {
+        return selector;
+    }
+
+    boolean inEventLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                selector.select();
+                runTasks();
+                var selectedKeys = selector.selectedKeys();
+                for (var key : selectedKeys) {
+                    var connection = (WebSocketEventLoopConnection) key.attachment();
+                    if (key.isValid() && key.isWritable()) {
+                        connection.onWritable();
+                    }
+                    if (key.isValid() && key.isReadable()) {
+                        connection.onReadable(readBuffer);
+                    }
+                }
+                selectedKeys.clear();
+            } catch (Exception e) {
+                LOGGER.log(ERROR, "Error in event loop : ", e);
+            }
+        }
+        // 关闭所有连接.
+        for (var key : selector.keys()) {
+            if (key.attachment() instanceof WebSocketEventLoopConnection connection) {
+                connection.abort();
+            }
+        }
+        try {
+            selector.close();
+        } catch (IOException _) {
+
+        }
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (Exception e) {
+                LOGGER.log(ERROR, "Error while running event loop task : ", e);
+            }
+        }
+    }
+
+    void shutdown() {
+        running = false;
+        selector.wakeup();
+    }
+
+    void awaitTermination() throws InterruptedException {
+        thread.join();
+    }
+
+}
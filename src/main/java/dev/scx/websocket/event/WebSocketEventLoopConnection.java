@@ -0,0 +1,140 @@
+package dev.scx.websocket.event;
+
+import dev.scx.websocket.ScxWebSocket;
+import dev.scx.websocket.exception.WebSocketIOException;
+import dev.scx.websocket.frame.WebSocketFrameDecoder;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+
+/// 事件循环中的单个连接.
+///
+/// 可读时读取数据并增量解码为帧, 每当队列中有完整的消息时, 调用 ScxWebSocket 的 read() 并分发给回调.
+/// 可写时继续写出 [NonBlockingChannelEndpoint] 中排队的数据.
+/// 所有方法 (除 [#start()] 和 [#awaitWritable()] 外) 都只在事件循环线程中调用.
+///
+/// @author scx567888
+final class WebSocketEventLoopConnection {
+
+    private final WebSocketEventLoop eventLoop;
+    private final SocketChannel channel;
+    private final NonBlockingChannelEndpoint endpoint;
+    private final WebSocketFrameDecoder decoder;
+    private final QueuedFrameWebSocket frameWebSocket;
+    private final ScxWebSocket webSocket;
+    private ScxEventWebSocketImpl eventWebSocket;
+    private SelectionKey key;
+
+    WebSocketEventLoopConnection(WebSocketEventLoop eventLoop, SocketChannel channel, NonBlockingChannelEndpoint endpoint, WebSocketFrameDecoder decoder, QueuedFrameWebSocket frameWebSocket, ScxWebSocket webSocket) {
+        this.eventLoop = eventLoop;
+        this.channel = channel;
+        this.endpoint = endpoint;
+        this.decoder = decoder;
+        this.frameWebSocket = frameWebSocket;
+        this.webSocket = webSocket;
+    }
+
+    void bind(ScxEventWebSocketImpl eventWebSocket) {
+        this.eventWebSocket = eventWebSocket;
+    }
+
+    /// 由 ScxEventWebSocket 的 start() 调用 (任意线程), 注册到事件循环中开始读取.
+    void start() {
+        eventLoop.execute(() -> {
+            try {
+                key = channel.register(eventLoop.selector(), SelectionKey.OP_READ, this);
+                endpoint.attach(key);
+            } catch (IOException e) {
+                eventWebSocket.dispatchException(new WebSocketIOException(e));
+            }
+        });
+    }
+
+    /// 由 ScxEventWebSocket 在每次发送之前调用 (任意线程), 发送缓冲区积压过多时等待事件循环写出.
+    void awaitWritable() {
+        try {
+            endpoint.awaitDrained();
+        } catch (InterruptedIOException e) {
+            throw new WebSocketIOException(e);
+        }
+    }
+
+    void onReadable(ByteBuffer readBuffer) {
+        try {
+            while (true) {
+                readBuffer.clear();
+                var n = channel.read(readBuffer);
+                if (n == -1) {
+                    fail(new WebSocketIOException(new EOFException("Connection closed by peer")));
+                    return;
+                }
+                if (n == 0) {
+                    return;
+                }
+                readBuffer.flip();
+                // 解码器会完全消费 readBuffer.
+                while (true) {
+                    var frame = decoder.decode(readBuffer);
+                    if (frame == null) {
+                        break;
+                    }
+                    frameWebSocket.offer(frame);
+                }
+                dispatchMessages();
+                // 自动回复 (或回调) 的写出失败时异常会被忽略, 因此需要在这里检查.
+                if (endpoint.isOverflowed()) {
+                    fail(new WebSocketIOException(new IOException("slow consumer : too many pending bytes")));
+                    return;
+                }
+                if (!eventWebSocket.isRunning()) {
+                    return;
+                }
+                // 没有读满说明暂时没有更多数据了.
+                if (n < readBuffer.capacity()) {
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            fail(new WebSocketIOException(e));
+        } catch (Exception e) {
+            fail(e);
+        }
+    }
+
+    void onWritable() {
+        try {
+            endpoint.onWritable();
+        } catch (IOException e) {
+            fail(new WebSocketIOException(e));
+        } catch (Exception e) {
+            fail(e);
+        }
+    }
+
+    private void dispatchMessages() {
+        while (frameWebSocket.hasCompleteMessage() && eventWebSocket.isRunning()) {
+            // 队列中已有完整的消息, 此处不会阻塞.
+            var message = webSocket.read();
+            eventWebSocket.dispatchMessage(message);
+        }
+    }
+
+    private void fail(Exception e) {
+        if (key != null) {
+            key.cancel();
+        }
+        if (eventWebSocket.isRunning()) {
+            eventWebSocket.dispatchException(e);
+        }
+    }
+
+    /// 事件循环关闭时调用.
+    void abort() {
+        fail(new WebSocketIOException(new EOFException("Event loop closed")));
+    }
+
+}
@@ -0,0 +1,14 @@
+package dev.scx.websocket.exception;
+
+/// WebSocketBackpressureException.
+///
+/// 异步发送队列已满, 且溢出策略为 [dev.scx.websocket.frame.WebSocketSendOverflowPolicy#FAIL].
+///
+/// @author scx567888
+public final class WebSocketBackpressureException extends RuntimeException {
+
+    public WebSocketBackpressureException(String message) {
+        super(message);
+    }
+
+}
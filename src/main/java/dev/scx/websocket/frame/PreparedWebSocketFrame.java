@@ -0,0 +1,59 @@
+package dev.scx.websocket.frame;
+
+import dev.scx.websocket.exception.WebSocketProtocolException;
+
+import static dev.scx.websocket.frame.ScxFrameWebSocketImplHelper.checkFrame;
+import static dev.scx.websocket.frame.WebSocketProtocolFrameHelper.writeProtocolFrameHeader;
+
+/// 预编码的帧, 用于将同一帧发送给大量连接 (如广播).
+///
+/// 服务端发送的帧不需要掩码, 所以帧头 + payload 的字节对于所有连接都是相同的,
+/// 只需要编码一次, 之后通过 [ScxFrameWebSocket#sendPreparedFrame(PreparedWebSocketFrame)] 原样写出.
+///
+/// 客户端发送的帧每次都需要新的掩码, 无法复用, 此时会退化为普通的 [ScxFrameWebSocket#sendFrame(WebSocketFrame)].
+///
+/// @author scx567888
+public final class PreparedWebSocketFrame {
+
+    private final WebSocketFrame frame;
+    private final byte[] wireBytes; // 未掩码的完整帧字节
+
+    private PreparedWebSocketFrame(WebSocketFrame frame, byte[] wireBytes) {
+        this.frame = frame;
+        this.wireBytes = wireBytes;
+    }
+
+    /// 编码并校验 frame. RSV1 是否允许取决于具体连接, 会在发送时校验.
+    ///
+    /// @throws WebSocketProtocolException frame 不合法.
+    public static PreparedWebSocketFrame of(WebSocketFrame frame) throws WebSocketProtocolException {
+        checkFrame(frame, true);
+
+        var protocolFrame = new WebSocketProtocolFrame();
+        protocolFrame.fin = frame.fin();
+        protocolFrame.rsv1 = frame.rsv1();
+        protocolFrame.opCode = frame.opCode().code();
+        protocolFrame.masked = false;
+        protocolFrame.payloadLength = frame.payloadData().length;
+
+        var header = new byte[14];
+        var s = writeProtocolFrameHeader(protocolFrame, header);
+
+        var payloadData = frame.payloadData();
+        var wireBytes = new byte[s + payloadData.length];
+        System.arraycopy(header, 0, wireBytes, 0, s);
+        System.arraycopy(payloadData, 0, wireBytes, s, payloadData.length);
+
+        return new PreparedWebSocketFrame(frame, wireBytes);
+    }
+
+    public WebSocketFrame frame() {
+        return frame;
+    }
+
+    /// 未掩码的完整帧字节, 调用方不应修改.
+    byte[] wireBytes() {
+        return wireBytes;
+    }
+
+}
@@ -4,6 +4,9 @@ import dev.scx.io.endpoint.ByteEndpoint;
 import dev.scx.websocket.exception.WebSocketIOException;
 import dev.scx.websocket.exception.WebSocketProtocolException;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 /// ScxFrameWebSocket 是一个帧级 (frame-level) 的 WebSocket 接口,
 ///
 /// 只负责保证读取和写入时帧的协议合法性 (单帧).
@@ -14,22 +17,72 @@ import dev.scx.websocket.exception.WebSocketProtocolException;
 /// @author scx567888
 public interface ScxFrameWebSocket extends AutoCloseable {
 
+    static ScxFrameWebSocket of(ByteEndpoint endpoint, boolean isClient, ScxFrameWebSocketOptions options) {
+        return new ScxFrameWebSocketImpl(endpoint, isClient, options);
+    }
+
     static ScxFrameWebSocket of(ByteEndpoint endpoint, boolean isClient, long maxWebSocketFrameSize) {
-        return new ScxFrameWebSocketImpl(endpoint, isClient, maxWebSocketFrameSize);
+        return new ScxFrameWebSocketImpl(endpoint, isClient, new ScxFrameWebSocketOptions().maxWebSocketFrameSize(maxWebSocketFrameSize));
     }
 
     static ScxFrameWebSocket of(ByteEndpoint endpoint, boolean isClient) {
-        return new ScxFrameWebSocketImpl(endpoint, isClient, 1024 * 1024 * 16); // 默认 16 MB
+        return new ScxFrameWebSocketImpl(endpoint, isClient, new ScxFrameWebSocketOptions());
     }
 
+    /// 是否为客户端. 客户端发送的帧需要加掩码.
+    boolean isClient();
+
     /// @throws WebSocketIOException       底层 IO 异常.
     /// @throws WebSocketProtocolException 读取到的帧不合法.
     WebSocketFrame readFrame() throws WebSocketIOException, WebSocketProtocolException;
 
+    /// 以池化模式读取一帧, payload 会被读入从 bufferPool 租借的缓冲区中, 而不是新分配的数组.
+    ///
+    /// 调用方使用完成后必须调用 [WebSocketPooledFrame#release()], 否则缓冲区无法回收.
+    /// 帧的长度必须能放入单个数组.
+    ///
+    /// @throws WebSocketIOException       底层 IO 异常.
+    /// @throws WebSocketProtocolException 读取到的帧不合法.
+    WebSocketPooledFrame readPooledFrame() throws WebSocketIOException, WebSocketProtocolException;
+
+    /// 以流的形式读取一帧, payload 不会被一次性读入内存, 由调用方按需读取.
+    ///
+    /// 适用于超大帧 (包括超过 int 范围的帧). 依然受 maxWebSocketFrameSize 约束.
+    /// 返回的 payload 只在下一次调用 [#readFrame()] 或 [#readFrameStream()] 之前有效,
+    /// 未读完的部分会在下一次读取时被自动跳过.
+    ///
+    /// @throws WebSocketIOException       底层 IO 异常.
+    /// @throws WebSocketProtocolException 读取到的帧头不合法.
+    WebSocketFrameStream readFrameStream() throws WebSocketIOException, WebSocketProtocolException;
+
     /// @throws WebSocketIOException       底层 IO 异常.
     /// @throws WebSocketProtocolException 写出的帧不合法.
     void sendFrame(WebSocketFrame frame) throws WebSocketIOException, WebSocketProtocolException;
 
+    /// 批量发送多个帧, 只获取一次锁, 所有帧连续写出后只刷新一次.
+    ///
+    /// 所有帧会在写出前统一校验, 任何一帧不合法时不会写出任何帧.
+    /// 期间其他线程的 [#sendFrame(WebSocketFrame)] 不会穿插到这些帧之间.
+    ///
+    /// @throws WebSocketIOException       底层 IO 异常.
+    /// @throws WebSocketProtocolException 写出的帧不合法.
+    void sendFrames(List<WebSocketFrame> frames) throws WebSocketIOException, WebSocketProtocolException;
+
+    /// 发送预编码的帧. 服务端直接原样写出预编码的字节, 客户端 (需要掩码) 等同于 [#sendFrame(WebSocketFrame)].
+    ///
+    /// @throws WebSocketIOException       底层 IO 异常.
+    /// @throws WebSocketProtocolException 写出的帧不合法 (如未开启 RSV1 却发送了 RSV1 帧).
+    void sendPreparedFrame(PreparedWebSocketFrame preparedFrame) throws WebSocketIOException, WebSocketProtocolException;
+
+    /// 异步发送一帧, 帧会进入有界的发送队列, 由单独的写线程按入队顺序批量写出.
+    ///
+    /// 返回的 future 在帧写出后以 true 完成; 队列满且策略为 DROP 时以 false 完成;
+    /// 帧不合法, 队列满且策略为 FAIL, 或写出失败时以对应异常完成.
+    /// 队列满且策略为 BLOCK 时, 本方法会阻塞直到队列有空位.
+    ///
+    /// 异步发送与 [#sendFrame(WebSocketFrame)] 之间不保证顺序.
+    CompletableFuture<Boolean> sendFrameAsync(WebSocketFrame frame);
+
     /// 立即关闭底层连接并释放相关资源.
     ///
     /// 该方法表示一次**资源级的终止(abort)**, 而非 WebSocket 协议层的关闭：
@@ -2,72 +2,598 @@ package dev.scx.websocket.frame;
 
 import dev.scx.io.endpoint.ByteEndpoint;
 import dev.scx.io.exception.*;
+import dev.scx.websocket.WebSocketObserver;
+import dev.scx.websocket.buffer.WebSocketBuffer;
+import dev.scx.websocket.buffer.WebSocketBufferPool;
 import dev.scx.websocket.exception.WebSocketIOException;
 import dev.scx.websocket.exception.WebSocketProtocolException;
+import dev.scx.websocket.metrics.WebSocketMetrics;
 
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.ref.WeakReference;
+import java.net.SocketTimeoutException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
 
+import static dev.scx.websocket.WebSocketCloseInfo.PROTOCOL_ERROR;
 import static dev.scx.websocket.WebSocketCloseInfo.TOO_BIG;
-import static dev.scx.websocket.frame.ScxFrameWebSocketImplHelper.fromProtocolFrame;
-import static dev.scx.websocket.frame.ScxFrameWebSocketImplHelper.toProtocolFrame;
+import static dev.scx.websocket.WebSocketCloseInfo.VIOLATED_POLICY;
+import static dev.scx.websocket.frame.ScxFrameWebSocketImplHelper.*;
 import static dev.scx.websocket.frame.WebSocketProtocolFrameHelper.*;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
 /// ScxFrameWebSocketImpl
 ///
 /// @author scx567888
 final class ScxFrameWebSocketImpl implements ScxFrameWebSocket {
 
+    /// 单个 byte[] 能容纳的最大长度, 超过此长度的帧只能通过 readFrameStream 读取.
+    private static final long MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+
+    /// 驱逐慢消费者时, 发送 Close 帧 (包括等待写锁) 允许的最长时间.
+    private static final long EVICT_TIMEOUT_NANOS = 1_000_000_000L;
+
     private final ByteEndpoint endpoint; // 端点
     private final boolean isClient; // 是否是客户端 客户端需要加掩码
     private final long maxWebSocketFrameSize; // 最大 帧大小. 只约束接受帧.
+    private final boolean rsv1Allowed; // 是否允许 RSV1 (扩展协商)
+    private final WebSocketBufferPool bufferPool; // 池化读取使用的缓冲区池
+    private final int sendQueueCapacity; // 异步发送队列的容量
+    private final WebSocketSendOverflowPolicy sendOverflowPolicy; // 异步发送队列满时的策略
+    private volatile WebSocketSendQueue sendQueue; // 异步发送队列, 第一次调用 sendFrameAsync 时创建
     private final ReentrantLock lock; // 为了防止底层的 ByteOutput 被乱序写入 此处需要加锁
+    private final WebSocketProtocolFrame readHeader; // 读取时复用的帧头, 只在读取线程中使用
+    private final WebSocketProtocolFrame writeHeader; // 写出时复用的帧头, 只在持有 lock 时使用
+    private boolean closeWritten; // 是否已经写出过 Close 帧, 只在持有 lock 时访问
+    private WebSocketFramePayloadInputStream currentPayload; // 流式读取中尚未读完的 payload
+    private final long writeTimeoutNanos; // 单次写操作的超时时间, 0 表示不限制
+    private final long maxPendingBytes; // 允许等待写出的最大字节数, 0 表示不限制
+    private final AtomicLong pendingBytes; // 等待写出的字节数, 只在 maxPendingBytes > 0 时统计
+    private final AtomicBoolean evicted; // 是否已经作为慢消费者被驱逐
+    private volatile long writeDeadline; // 当前写操作的截止时间, 0 表示没有进行中的写操作
+    private volatile boolean writeTimedOut; // 是否因为写超时被中止
+    private WeakReference<ScxFrameWebSocketImpl> watchdogRef; // 在看门狗中注册的引用, null 表示未注册, 只在持有 this 的监视器时访问
+    private final WebSocketMetrics metrics; // 运行指标, null 表示不统计
+    private final WebSocketObserver observer; // 观察者, null 表示没有
 
-    public ScxFrameWebSocketImpl(ByteEndpoint endpoint, boolean isClient, long maxWebSocketFrameSize) {
+    public ScxFrameWebSocketImpl(ByteEndpoint endpoint, boolean isClient, ScxFrameWebSocketOptions options) {
         this.endpoint = endpoint;
         this.isClient = isClient;
-        this.maxWebSocketFrameSize = maxWebSocketFrameSize;
+        this.maxWebSocketFrameSize = options.maxWebSocketFrameSize();
+        this.rsv1Allowed = options.rsv1Allowed();
+        this.bufferPool = options.bufferPool();
+        this.writeTimeoutNanos = options.writeTimeout().toNanos();
+        this.maxPendingBytes = options.maxPendingBytes();
+        this.pendingBytes = new AtomicLong();
+        this.evicted = new AtomicBoolean(false);
+        this.writeDeadline = 0;
+        this.writeTimedOut = false;
+        this.watchdogRef = null;
+        this.metrics = options.metrics();
+        this.observer = options.observer();
+        this.sendQueueCapacity = options.sendQueueCapacity();
+        this.sendOverflowPolicy = options.sendOverflowPolicy();
+        this.sendQueue = null;
         this.lock = new ReentrantLock();
+        this.readHeader = new WebSocketProtocolFrame();
+        this.writeHeader = new WebSocketProtocolFrame();
+        this.closeWritten = false;
+        this.currentPayload = null;
+        if (writeTimeoutNanos > 0) {
+            registerWatchdog();
+        }
+    }
+
+    @Override
+    public boolean isClient() {
+        return isClient;
     }
 
     @Override
     public WebSocketFrame readFrame() throws WebSocketIOException, WebSocketProtocolException {
+        // 跳过上一个流式帧未读完的部分.
+        skipCurrentPayload();
+
         WebSocketProtocolFrame protocolFrame;
         try {
             // 读取 协议帧 头
-            protocolFrame = readProtocolFrameHeader(endpoint.in());
-            // 太大抛异常.
-            if (protocolFrame.payloadLength > maxWebSocketFrameSize) {
-                throw new WebSocketProtocolException(TOO_BIG.code(), "frame too large");
+            protocolFrame = readProtocolFrameHeader(endpoint.in(), readHeader);
+            recordFrameIn(protocolFrame);
+            // 校验长度.
+            checkPayloadLength(protocolFrame.payloadLength);
+            // 无法放入单个数组.
+            if (protocolFrame.payloadLength > MAX_ARRAY_LENGTH) {
+                throw new WebSocketProtocolException(TOO_BIG.code(), "frame too large, use readFrameStream instead");
             }
             // 读取 body
+            var event = beginFrameRead();
             readProtocolFramePayload(protocolFrame, endpoint.in());
+            commitFrameRead(event, protocolFrame);
+        } catch (NoMoreDataException | ScxInputException | InputAlreadyClosedException e) {
+            throw new WebSocketIOException(e);
+        }
+
+        // fromProtocolFrame 中会进行 协议级别的单帧校验.
+        WebSocketFrame frame;
+        try {
+            frame = fromProtocolFrame(protocolFrame, isClient, rsv1Allowed);
+        } finally {
+            // 帧头会被复用, 不要持有 payload.
+            protocolFrame.payloadData = null;
+        }
+        if (observer != null) {
+            observer.onFrameRead(frame.opCode(), frame.fin(), frame.rsv1(), frame.payloadData().length);
+        }
+        return frame;
+    }
+
+    @Override
+    public WebSocketPooledFrame readPooledFrame() throws WebSocketIOException, WebSocketProtocolException {
+        // 跳过上一个流式帧未读完的部分.
+        skipCurrentPayload();
+
+        WebSocketProtocolFrame protocolFrame;
+        WebSocketBuffer payload;
+        try {
+            // 读取 协议帧 头
+            protocolFrame = readProtocolFrameHeader(endpoint.in(), readHeader);
+            recordFrameIn(protocolFrame);
+            // 校验长度.
+            checkPayloadLength(protocolFrame.payloadLength);
+            // 无法放入单个数组.
+            if (protocolFrame.payloadLength > MAX_ARRAY_LENGTH) {
+                throw new WebSocketProtocolException(TOO_BIG.code(), "frame too large, use readFrameStream instead");
+            }
+            // 读取 body 到池化的缓冲区中
+            payload = bufferPool.lease((int) protocolFrame.payloadLength);
+            var event = beginFrameRead();
+            try {
+                readProtocolFramePayload(endpoint.in(), payload.array(), payload.length());
+            } catch (NoMoreDataException | ScxInputException | InputAlreadyClosedException e) {
+                payload.release();
+                throw e;
+            }
+            commitFrameRead(event, protocolFrame);
         } catch (NoMoreDataException | ScxInputException | InputAlreadyClosedException e) {
             throw new WebSocketIOException(e);
         }
 
         // fromProtocolFrame 中会进行 协议级别的单帧校验.
-        return fromProtocolFrame(protocolFrame, isClient);
+        WebSocketPooledFrame frame;
+        try {
+            frame = fromProtocolFrame(protocolFrame, payload, isClient, rsv1Allowed);
+        } catch (WebSocketProtocolException e) {
+            payload.release();
+            throw e;
+        }
+        if (observer != null) {
+            observer.onFrameRead(frame.opCode(), frame.fin(), frame.rsv1(), payload.length());
+        }
+        return frame;
+    }
+
+    @Override
+    public WebSocketFrameStream readFrameStream() throws WebSocketIOException, WebSocketProtocolException {
+        // 跳过上一个流式帧未读完的部分.
+        skipCurrentPayload();
+
+        WebSocketProtocolFrame protocolFrame;
+        try {
+            // 读取 协议帧 头
+            protocolFrame = readProtocolFrameHeader(endpoint.in(), readHeader);
+            recordFrameIn(protocolFrame);
+        } catch (NoMoreDataException | ScxInputException | InputAlreadyClosedException e) {
+            throw new WebSocketIOException(e);
+        }
+        // 校验长度.
+        checkPayloadLength(protocolFrame.payloadLength);
+
+        // 此处只能根据帧头进行校验.
+        var opCode = checkProtocolFrameHeader(protocolFrame, isClient, rsv1Allowed);
+        if (observer != null) {
+            observer.onFrameRead(opCode, protocolFrame.fin, protocolFrame.rsv1, protocolFrame.payloadLength);
+        }
+
+        var payload = new WebSocketFramePayloadInputStream(endpoint.in(), protocolFrame.masked, protocolFrame.maskingKey, protocolFrame.payloadLength);
+        this.currentPayload = payload;
+
+        // payload 按需读取, 事件在 payload 读取完成时提交. 事件会被 payload 持有, 因此只在启用时创建.
+        var event = beginFrameRead();
+        if (event != null) {
+            event.opCode = opCode.name();
+            event.payloadLength = protocolFrame.payloadLength;
+            payload.commitOnEnd(event);
+        }
+
+        return new WebSocketFrameStream(opCode, protocolFrame.fin, protocolFrame.rsv1, protocolFrame.payloadLength, payload);
     }
 
     @Override
     public void sendFrame(WebSocketFrame frame) throws WebSocketIOException, WebSocketProtocolException {
-        // toProtocolFrame 中会进行 协议级别的单帧校验.
-        var protocolFrame = toProtocolFrame(frame, isClient);
+        var length = frame.payloadData().length;
+        reservePending(length);
+        try {
+            // 这里需要 锁.
+            var event = beginWrite();
+            try {
+                // toProtocolFrame 中会进行 协议级别的单帧校验.
+                var protocolFrame = toProtocolFrame(frame, isClient, rsv1Allowed, writeHeader);
+                writeProtocolFrame(protocolFrame, endpoint.out());
+                markWritten(frame);
+            } catch (ScxOutputException | OutputAlreadyClosedException e) {
+                throw writeException(e);
+            } finally {
+                // 帧头会被复用, 不要持有 payload.
+                writeHeader.payloadData = null;
+                endWrite();
+            }
+            commitFrameWrite(event, frame.opCode(), 1, length);
+            if (observer != null) {
+                observer.onFrameWrite(frame);
+            }
+        } finally {
+            releasePending(length);
+        }
+    }
+
+    @Override
+    public void sendFrames(List<WebSocketFrame> frames) throws WebSocketIOException, WebSocketProtocolException {
+        if (frames.isEmpty()) {
+            return;
+        }
+        // 先统一校验, 保证不会只写出一部分帧.
+        for (var frame : frames) {
+            checkFrame(frame, rsv1Allowed);
+        }
+        var length = payloadLength(frames);
+        reservePending(length);
+        try {
+            writeFrames(frames, false);
+        } finally {
+            releasePending(length);
+        }
+    }
 
+    /// 写出一批已经校验过的帧, 不统计等待写出的字节数 (由调用方统计).
+    ///
+    /// stopAtClose 为 true 时 (供 [WebSocketSendQueue] 使用), Close 帧之后不能再写出任何帧 (RFC 6455 5.5.1):
+    /// 已经写出过 Close 帧时一帧都不写出, 批次中 Close 帧之后的帧也不写出.
+    ///
+    /// @return 写出的帧数
+    int writeFrames(List<WebSocketFrame> frames, boolean stopAtClose) throws WebSocketIOException, WebSocketProtocolException {
         // 这里需要 锁.
-        lock.lock();
+        var event = beginWrite();
+        int count;
         try {
-            writeProtocolFrame(protocolFrame, endpoint.out());
+            count = stopAtClose ? writableCount(frames) : frames.size();
+            if (count > 0) {
+                var byteOutput = endpoint.out();
+                for (int i = 0; i < count; i = i + 1) {
+                    var frame = frames.get(i);
+                    var protocolFrame = toProtocolFrame(frame, isClient, rsv1Allowed, writeHeader);
+                    writeProtocolFrame(protocolFrame, byteOutput, false);
+                    markWritten(frame);
+                }
+                // 只刷新一次.
+                byteOutput.flush();
+            }
         } catch (ScxOutputException | OutputAlreadyClosedException e) {
-            throw new WebSocketIOException(e);
+            throw writeException(e);
         } finally {
-            lock.unlock();
+            // 帧头会被复用, 不要持有 payload.
+            writeHeader.payloadData = null;
+            endWrite();
+        }
+        if (count == 0) {
+            return 0;
+        }
+        var written = count == frames.size() ? frames : frames.subList(0, count);
+        if (event != null) {
+            commitFrameWrite(event, written.getFirst().opCode(), count, payloadLength(written));
         }
+        if (observer != null) {
+            for (var frame : written) {
+                observer.onFrameWrite(frame);
+            }
+        }
+        return count;
+    }
 
+    /// 批次中可以写出的帧数, 必须持有 lock.
+    private int writableCount(List<WebSocketFrame> frames) throws WebSocketIOException {
+        if (closeWritten) {
+            // 被驱逐时的 Close 由连接自己发出, 连接随后会被中止, 等待中的帧按写出失败处理.
+            if (evicted.get()) {
+                throw new WebSocketIOException(new IOException("connection evicted as slow consumer"));
+            }
+            return 0;
+        }
+        for (int i = 0; i < frames.size(); i = i + 1) {
+            if (frames.get(i).opCode() == WebSocketOpCode.CLOSE) {
+                return i + 1;
+            }
+        }
+        return frames.size();
+    }
+
+    @Override
+    public void sendPreparedFrame(PreparedWebSocketFrame preparedFrame) throws WebSocketIOException, WebSocketProtocolException {
+        // 客户端需要掩码, 无法复用预编码的字节.
+        if (isClient) {
+            sendFrame(preparedFrame.frame());
+            return;
+        }
+        // 预编码时无法得知连接是否允许 RSV1, 此处需要再次校验.
+        checkFrame(preparedFrame.frame(), rsv1Allowed);
+        var wireBytes = preparedFrame.wireBytes();
+        reservePending(wireBytes.length);
+        try {
+            // 这里需要 锁.
+            var event = beginWrite();
+            try {
+                var byteOutput = endpoint.out();
+                byteOutput.write(wireBytes);
+                byteOutput.flush();
+                markWritten(preparedFrame.frame());
+            } catch (ScxOutputException | OutputAlreadyClosedException e) {
+                throw writeException(e);
+            } finally {
+                endWrite();
+            }
+            commitFrameWrite(event, preparedFrame.frame().opCode(), 1, preparedFrame.frame().payloadData().length);
+            if (observer != null) {
+                observer.onFrameWrite(preparedFrame.frame());
+            }
+        } finally {
+            releasePending(wireBytes.length);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Boolean> sendFrameAsync(WebSocketFrame frame) {
+        return sendQueue().offer(frame);
+    }
+
+    /// 大部分连接从不使用异步发送, 因此队列 (及其容量信号量) 在第一次使用时才创建.
+    private WebSocketSendQueue sendQueue() {
+        var queue = sendQueue;
+        if (queue != null) {
+            return queue;
+        }
+        // 不能使用写锁, 否则会等待进行中的写操作.
+        synchronized (this) {
+            if (sendQueue == null) {
+                sendQueue = new WebSocketSendQueue(this, rsv1Allowed, sendQueueCapacity, sendOverflowPolicy);
+            }
+            return sendQueue;
+        }
+    }
+
+    /// 获取写锁并设置写操作的截止时间. 等待写锁的时间也计入超时.
+    ///
+    /// @return 已开始的 JFR 事件, 未启用时为 null (不分配).
+    private WebSocketFrameWriteEvent beginWrite() throws WebSocketIOException {
+        WebSocketFrameWriteEvent event = null;
+        if (WebSocketFrameWriteEvent.enabled()) {
+            event = new WebSocketFrameWriteEvent();
+            event.begin();
+        }
+        // 未启用指标 (以及 JFR 事件) 时不读取时钟.
+        var measure = metrics != null || writeTimeoutNanos != 0 || event != null;
+        var start = measure ? System.nanoTime() : 0;
+        if (writeTimeoutNanos == 0) {
+            lock.lock();
+        } else {
+            boolean locked;
+            try {
+                locked = lock.tryLock(writeTimeoutNanos, NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new WebSocketIOException(new InterruptedIOException("interrupted while waiting for write lock"));
+            }
+            if (!locked) {
+                throw new WebSocketIOException(new SocketTimeoutException("write timeout (waiting for write lock)"));
+            }
+            writeDeadline = start + writeTimeoutNanos;
+        }
+        if (measure) {
+            var lockWait = System.nanoTime() - start;
+            if (metrics != null) {
+                metrics.recordSendLockWait(lockWait);
+            }
+            if (event != null) {
+                event.lockWait = lockWait;
+            }
+        }
+        return event;
+    }
+
+    /// @return 已开始的 JFR 事件, 未启用时为 null (不分配).
+    private static WebSocketFrameReadEvent beginFrameRead() {
+        if (!WebSocketFrameReadEvent.enabled()) {
+            return null;
+        }
+        var event = new WebSocketFrameReadEvent();
+        event.begin();
+        return event;
+    }
+
+    private static void commitFrameRead(WebSocketFrameReadEvent event, WebSocketProtocolFrame protocolFrame) {
+        if (event == null) {
+            return;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            var opCode = WebSocketOpCode.find(protocolFrame.opCode);
+            event.opCode = opCode != null ? opCode.name() : String.valueOf(protocolFrame.opCode);
+            event.payloadLength = protocolFrame.payloadLength;
+            event.commit();
+        }
+    }
+
+    private static void commitFrameWrite(WebSocketFrameWriteEvent event, WebSocketOpCode opCode, int frameCount, long payloadLength) {
+        if (event == null) {
+            return;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.opCode = opCode.name();
+            event.frameCount = frameCount;
+            event.payloadLength = payloadLength;
+            event.commit();
+        }
+    }
+
+    private void recordFrameIn(WebSocketProtocolFrame protocolFrame) {
+        if (metrics != null) {
+            // 控制帧的 opCode 最高位为 1.
+            metrics.recordFrameIn((protocolFrame.opCode & 0b1000) != 0, protocolFrame.payloadLength);
+        }
+    }
+
+    private void recordFrameOut(WebSocketFrame frame) {
+        if (metrics != null) {
+            metrics.recordFrameOut((frame.opCode().code() & 0b1000) != 0, frame.payloadData().length);
+        }
+    }
+
+    /// 帧写出之后调用, 必须持有 lock.
+    private void markWritten(WebSocketFrame frame) {
+        if (frame.opCode() == WebSocketOpCode.CLOSE) {
+            closeWritten = true;
+        }
+        recordFrameOut(frame);
+    }
+
+    private void endWrite() {
+        if (writeTimeoutNanos != 0) {
+            writeDeadline = 0;
+        }
+        lock.unlock();
+    }
+
+    private WebSocketIOException writeException(Exception e) {
+        // 写出失败后连接已经不可用 (帧可能只写出了一部分), 不再需要看门狗.
+        unregisterWatchdog();
+        if (writeTimedOut) {
+            var timeoutException = new SocketTimeoutException("write timeout");
+            timeoutException.initCause(e);
+            return new WebSocketIOException(timeoutException);
+        }
+        return new WebSocketIOException(e);
+    }
+
+    private synchronized void registerWatchdog() {
+        if (watchdogRef == null) {
+            watchdogRef = WebSocketWriteWatchdog.register(this);
+        }
+    }
+
+    private synchronized void unregisterWatchdog() {
+        if (watchdogRef != null) {
+            WebSocketWriteWatchdog.unregister(watchdogRef);
+            watchdogRef = null;
+        }
+    }
+
+    /// 由 [WebSocketWriteWatchdog] 调用, 当前写操作超时则中止连接以打断阻塞的写.
+    void checkWriteDeadline(long now) {
+        var deadline = writeDeadline;
+        if (deadline != 0 && now - deadline > 0) {
+            writeTimedOut = true;
+            close();
+        }
+    }
+
+    /// 统计等待写出的字节数, 超过上限时驱逐连接.
+    void reservePending(long length) throws WebSocketIOException {
+        if (maxPendingBytes == 0) {
+            return;
+        }
+        var pending = pendingBytes.addAndGet(length);
+        // 没有其他等待写出的数据时, 单个超大的帧依然允许发送.
+        if (pending > maxPendingBytes && pending != length) {
+            pendingBytes.addAndGet(-length);
+            evict();
+            throw new WebSocketIOException(new InterruptedIOException("slow consumer (pending bytes exceeds " + maxPendingBytes + ")"));
+        }
+    }
+
+    void releasePending(long length) {
+        if (maxPendingBytes == 0) {
+            return;
+        }
+        pendingBytes.addAndGet(-length);
+    }
+
+    /// 驱逐慢消费者: 在限定时间内尝试发送 Close (1008), 然后中止连接. 不会阻塞调用方.
+    private void evict() {
+        if (!evicted.compareAndSet(false, true)) {
+            return;
+        }
+        Thread.ofVirtual().name("scx-websocket-evict").start(() -> {
+            try {
+                if (lock.tryLock(EVICT_TIMEOUT_NANOS, NANOSECONDS)) {
+                    // 写 Close 帧本身也可能阻塞, 交给看门狗限定时间.
+                    registerWatchdog();
+                    writeDeadline = System.nanoTime() + EVICT_TIMEOUT_NANOS;
+                    try {
+                        var reason = "slow consumer".getBytes(UTF_8);
+                        var payload = new byte[2 + reason.length];
+                        payload[0] = (byte) (VIOLATED_POLICY.code() >>> 8);
+                        payload[1] = (byte) (VIOLATED_POLICY.code() & 0xFF);
+                        System.arraycopy(reason, 0, payload, 2, reason.length);
+                        var protocolFrame = toProtocolFrame(new WebSocketFrame(WebSocketOpCode.CLOSE, payload, true), isClient, rsv1Allowed, writeHeader);
+                        writeProtocolFrame(protocolFrame, endpoint.out());
+                        closeWritten = true;
+                    } finally {
+                        writeHeader.payloadData = null;
+                        writeDeadline = 0;
+                        lock.unlock();
+                    }
+                }
+            } catch (Exception _) {
+                // 这里有可能无法发送 我们忽略异常
+            } finally {
+                close();
+            }
+        });
+    }
+
+    private static long payloadLength(List<WebSocketFrame> frames) {
+        var length = 0L;
+        for (var frame : frames) {
+            length = length + frame.payloadData().length;
+        }
+        return length;
+    }
+
+    private void checkPayloadLength(long payloadLength) throws WebSocketProtocolException {
+        // 64 位长度的最高位必须为 0.
+        if (payloadLength < 0) {
+            throw new WebSocketProtocolException(PROTOCOL_ERROR.code(), "invalid payload length");
+        }
+        // 太大抛异常.
+        if (payloadLength > maxWebSocketFrameSize) {
+            throw new WebSocketProtocolException(TOO_BIG.code(), "frame too large");
+        }
+    }
+
+    private void skipCurrentPayload() throws WebSocketIOException {
+        if (currentPayload != null) {
+            currentPayload.skipRemaining();
+            currentPayload = null;
+        }
     }
 
     @Override
     public void close() {
+        unregisterWatchdog();
         try {
             endpoint.close();  // 这里有可能已经被远端关闭 我们忽略异常
         } catch (Exception _) {
@@ -1,9 +1,11 @@
 package dev.scx.websocket.frame;
 
+import dev.scx.websocket.buffer.WebSocketBuffer;
 import dev.scx.websocket.exception.WebSocketProtocolException;
 
 import static dev.scx.random.ScxRandom.randomBytes;
 import static dev.scx.websocket.WebSocketCloseInfo.PROTOCOL_ERROR;
+import static dev.scx.websocket.frame.WebSocketMaskHelper.mask;
 import static dev.scx.websocket.frame.WebSocketOpCode.*;
 
 /// ScxFrameWebSocketImplHelper
@@ -11,83 +13,94 @@ import static dev.scx.websocket.frame.WebSocketOpCode.*;
 /// @author scx567888
 final class ScxFrameWebSocketImplHelper {
 
-    private static void checkFramePayloadAndFin(WebSocketOpCode opCode, byte[] payloadData, boolean fin) throws WebSocketProtocolException {
+    private static void checkFramePayloadAndFin(WebSocketOpCode opCode, long payloadLength, boolean fin) throws WebSocketProtocolException {
         if (opCode == PING || opCode == PONG || opCode == CLOSE) {
-            checkControlFramePayloadAndFin(opCode, payloadData, fin);
+            checkControlFramePayloadAndFin(opCode, payloadLength, fin);
             // close 需要进一步校验.
             if (opCode == CLOSE) {
-                checkCloseFramePayloadAndFin(opCode, payloadData, fin);
+                checkCloseFramePayloadAndFin(opCode, payloadLength, fin);
             }
         }
     }
 
-    private static void checkControlFramePayloadAndFin(WebSocketOpCode opCode, byte[] payloadData, boolean fin) throws WebSocketProtocolException {
+    private static void checkControlFramePayloadAndFin(WebSocketOpCode opCode, long payloadLength, boolean fin) throws WebSocketProtocolException {
         if (!fin) {
             throw new WebSocketProtocolException(PROTOCOL_ERROR.code(), opCode + " frame must have fin = true");
         }
-        if (payloadData.length > 125) {
+        if (payloadLength > 125) {
             throw new WebSocketProtocolException(PROTOCOL_ERROR.code(), opCode + " frame payload length must be <= 125 bytes");
         }
     }
 
-    private static void checkCloseFramePayloadAndFin(WebSocketOpCode opCode, byte[] payloadData, boolean fin) throws WebSocketProtocolException {
-        if (payloadData.length == 1) {
+    private static void checkCloseFramePayloadAndFin(WebSocketOpCode opCode, long payloadLength, boolean fin) throws WebSocketProtocolException {
+        if (payloadLength == 1) {
             throw new WebSocketProtocolException(PROTOCOL_ERROR.code(), "close frame payload length must not be 1");
         }
     }
 
-    /// 根据 WebSocketFrame 创建 WebSocketProtocolFrame. 要同时校验.
-    public static WebSocketProtocolFrame toProtocolFrame(WebSocketFrame frame, boolean isClient) throws WebSocketProtocolException {
+    /// RSV1 只允许出现在 (已协商扩展的) TEXT / BINARY 帧上.
+    /// 按照 RFC 7692, 控制帧和 CONTINUATION 帧 都不允许设置 RSV1.
+    private static void checkFrameRsv1(WebSocketOpCode opCode, boolean rsv1, boolean rsv1Allowed) throws WebSocketProtocolException {
+        if (!rsv1) {
+            return;
+        }
+        if (!rsv1Allowed) {
+            throw new WebSocketProtocolException(PROTOCOL_ERROR.code(), "unsupported rsv");
+        }
+        if (opCode != TEXT && opCode != BINARY) {
+            throw new WebSocketProtocolException(PROTOCOL_ERROR.code(), opCode + " frame must not have rsv1");
+        }
+    }
+
+    /// 校验待发送的 frame.
+    public static void checkFrame(WebSocketFrame frame, boolean rsv1Allowed) throws WebSocketProtocolException {
+        checkFramePayloadAndFin(frame.opCode(), frame.payloadData().length, frame.fin());
+        checkFrameRsv1(frame.opCode(), frame.rsv1(), rsv1Allowed);
+    }
+
+    /// 根据 WebSocketFrame 填充 WebSocketProtocolFrame (原地覆盖). 要同时校验.
+    ///
+    /// payloadData 直接使用原始数组, 不会在此处计算掩码, 掩码在写出时计算.
+    public static WebSocketProtocolFrame toProtocolFrame(WebSocketFrame frame, boolean isClient, boolean rsv1Allowed, WebSocketProtocolFrame protocolFrame) throws WebSocketProtocolException {
         // 校验 frame
-        checkFramePayloadAndFin(frame.opCode(), frame.payloadData(), frame.fin());
+        checkFrame(frame, rsv1Allowed);
 
-        var protocolFrame = new WebSocketProtocolFrame();
         protocolFrame.fin = frame.fin();
-        protocolFrame.rsv1 = false;
+        protocolFrame.rsv1 = frame.rsv1();
         protocolFrame.rsv2 = false;
         protocolFrame.rsv3 = false;
         protocolFrame.opCode = frame.opCode().code();
 
         // 和服务器端不同, 客户端的是需要发送掩码的
         if (isClient) {
+            var k = randomBytes(4);
             protocolFrame.masked = true;
-            protocolFrame.maskingKey = randomBytes(4);
+            protocolFrame.maskingKey = (k[0] & 0xFF) << 24 | (k[1] & 0xFF) << 16 | (k[2] & 0xFF) << 8 | k[3] & 0xFF;
         } else {
             protocolFrame.masked = false;
-            protocolFrame.maskingKey = null;
+            protocolFrame.maskingKey = 0;
         }
 
-        byte[] maskingKey = protocolFrame.maskingKey;
         byte[] payloadData = frame.payloadData();
 
-        // 处理掩码, 这里不要修改原始数组.
-        if (protocolFrame.masked) {
-            var maskedPayloadData = new byte[payloadData.length];
-            for (int i = 0; i < payloadData.length; i = i + 1) {
-                maskedPayloadData[i] = (byte) (payloadData[i] ^ maskingKey[i % 4]);
-            }
-            payloadData = maskedPayloadData;
-        }
-
         protocolFrame.payloadLength = payloadData.length;
         protocolFrame.payloadData = payloadData;
         return protocolFrame;
     }
 
-    /// 转换的同时要校验.
-    public static WebSocketFrame fromProtocolFrame(WebSocketProtocolFrame protocolFrame, boolean isClient) throws WebSocketProtocolException {
-        // 此处在转换的同时需要进行校验
-
+    /// 只根据帧头进行校验 (不依赖 payload), 校验通过时返回 opCode.
+    public static WebSocketOpCode checkProtocolFrameHeader(WebSocketProtocolFrame protocolFrame, boolean isClient, boolean rsv1Allowed) throws WebSocketProtocolException {
         // 1, 先校验 opCode 是不是合法的.
         var opCode = WebSocketOpCode.find(protocolFrame.opCode);
         if (opCode == null) {
             throw new WebSocketProtocolException(PROTOCOL_ERROR.code(), "unknown op code");
         }
 
-        // 2, 校验所有的 rsv 是否全部为 false.
-        if (protocolFrame.rsv1 || protocolFrame.rsv2 || protocolFrame.rsv3) {
+        // 2, 校验 rsv. rsv2 和 rsv3 必须为 false, rsv1 只有在协商了扩展时才允许.
+        if (protocolFrame.rsv2 || protocolFrame.rsv3) {
             throw new WebSocketProtocolException(PROTOCOL_ERROR.code(), "unsupported rsv");
         }
+        checkFrameRsv1(opCode, protocolFrame.rsv1, rsv1Allowed);
 
         // 3, 校验 mask 和所属角色是否正确.
         // 注意这里的 isClient 表示的是接收方, 也就是说 对于帧来讲 应该是相反的角色
@@ -103,9 +116,29 @@ final class ScxFrameWebSocketImplHelper {
         }
 
         // 4, 校验控制帧. payload 长度 以及 fin.
+        checkFramePayloadAndFin(opCode, protocolFrame.payloadLength, protocolFrame.fin);
+
+        return opCode;
+    }
+
+    /// 池化模式的转换, 要同时校验. payload 已经读入 buffer.
+    public static WebSocketPooledFrame fromProtocolFrame(WebSocketProtocolFrame protocolFrame, WebSocketBuffer payload, boolean isClient, boolean rsv1Allowed) throws WebSocketProtocolException {
+        var opCode = checkProtocolFrameHeader(protocolFrame, isClient, rsv1Allowed);
+
+        // 掩码计算, 此处就地计算.
+        if (protocolFrame.masked) {
+            mask(payload.array(), 0, payload.length(), protocolFrame.maskingKey);
+        }
+
+        return new WebSocketPooledFrame(opCode, payload, protocolFrame.fin, protocolFrame.rsv1);
+    }
+
+    /// 转换的同时要校验.
+    public static WebSocketFrame fromProtocolFrame(WebSocketProtocolFrame protocolFrame, boolean isClient, boolean rsv1Allowed) throws WebSocketProtocolException {
+        // 此处在转换的同时需要进行校验
         // 我们无需额外校验 payloadLength == payloadData,
         // 因为 payloadData 是上层根据 protocolFrame.payloadLength 读取出来的. 所以必然是正确的.
-        checkFramePayloadAndFin(opCode, protocolFrame.payloadData, protocolFrame.fin);
+        var opCode = checkProtocolFrameHeader(protocolFrame, isClient, rsv1Allowed);
 
         // 以上全部通过 表示 帧正确.
 
@@ -116,13 +149,11 @@ final class ScxFrameWebSocketImplHelper {
 
         // 掩码计算, 此处就地计算.
         if (masked) {
-            for (int i = 0; i < payloadData.length; i = i + 1) {
-                payloadData[i] = (byte) (payloadData[i] ^ maskingKey[i % 4]);
-            }
+            mask(payloadData, 0, payloadData.length, maskingKey);
         }
 
         // 6, 包装为 WebSocketFrame 返回
-        return new WebSocketFrame(opCode, payloadData, protocolFrame.fin);
+        return new WebSocketFrame(opCode, payloadData, protocolFrame.fin, protocolFrame.rsv1);
     }
 
 }
@@ -0,0 +1,151 @@
+package dev.scx.websocket.frame;
+
+import dev.scx.websocket.WebSocketObserver;
+import dev.scx.websocket.buffer.WebSocketBufferPool;
+import dev.scx.websocket.metrics.WebSocketMetrics;
+
+import java.time.Duration;
+
+/// ScxFrameWebSocketOptions
+///
+/// 创建 [ScxFrameWebSocket] 时使用的配置. 配置会在创建时被复制, 之后的修改不影响已创建的实例.
+///
+/// @author scx567888
+public final class ScxFrameWebSocketOptions {
+
+    private long maxWebSocketFrameSize; // 最大 帧大小. 只约束接受帧.
+    private boolean rsv1Allowed; // 是否允许 RSV1 位 (需由扩展协商得到, 如 permessage-deflate)
+    private WebSocketBufferPool bufferPool; // 池化读取使用的缓冲区池
+    private int sendQueueCapacity; // 异步发送队列的容量
+    private WebSocketSendOverflowPolicy sendOverflowPolicy; // 异步发送队列满时的策略
+    private Duration writeTimeout; // 单次写操作的超时时间, ZERO 表示不限制
+    private long maxPendingBytes; // 允许等待写出的最大字节数, 0 表示不限制
+    private WebSocketMetrics metrics; // 运行指标, null 表示不统计
+    private WebSocketObserver observer; // 观察者, null 表示没有
+
+    public ScxFrameWebSocketOptions() {
+        this.maxWebSocketFrameSize = 1024 * 1024 * 16; // 默认 16 MB
+        this.rsv1Allowed = false;
+        this.bufferPool = WebSocketBufferPool.global();
+        this.sendQueueCapacity = 1024;
+        this.sendOverflowPolicy = WebSocketSendOverflowPolicy.BLOCK;
+        this.writeTimeout = Duration.ZERO;
+        this.maxPendingBytes = 0;
+        this.metrics = null;
+        this.observer = null;
+    }
+
+    public long maxWebSocketFrameSize() {
+        return maxWebSocketFrameSize;
+    }
+
+    public ScxFrameWebSocketOptions maxWebSocketFrameSize(long maxWebSocketFrameSize) {
+        this.maxWebSocketFrameSize = maxWebSocketFrameSize;
+        return this;
+    }
+
+    public boolean rsv1Allowed() {
+        return rsv1Allowed;
+    }
+
+    /// 只有在握手阶段协商了使用 RSV1 的扩展 (如 permessage-deflate) 时才应开启.
+    /// 开启后 TEXT / BINARY 帧允许携带 RSV1, 控制帧和 CONTINUATION 帧依然不允许.
+    public ScxFrameWebSocketOptions rsv1Allowed(boolean rsv1Allowed) {
+        this.rsv1Allowed = rsv1Allowed;
+        return this;
+    }
+
+    public WebSocketBufferPool bufferPool() {
+        return bufferPool;
+    }
+
+    /// [ScxFrameWebSocket#readPooledFrame()] 使用的缓冲区池, 默认为 [WebSocketBufferPool#global()].
+    /// 可以为每个连接单独创建一个池.
+    public ScxFrameWebSocketOptions bufferPool(WebSocketBufferPool bufferPool) {
+        if (bufferPool == null) {
+            throw new NullPointerException("bufferPool must not be null");
+        }
+        this.bufferPool = bufferPool;
+        return this;
+    }
+
+    public int sendQueueCapacity() {
+        return sendQueueCapacity;
+    }
+
+    /// [ScxFrameWebSocket#sendFrameAsync(WebSocketFrame)] 使用的发送队列容量 (帧数), 默认 1024.
+    public ScxFrameWebSocketOptions sendQueueCapacity(int sendQueueCapacity) {
+        if (sendQueueCapacity <= 0) {
+            throw new IllegalArgumentException("sendQueueCapacity must be > 0");
+        }
+        this.sendQueueCapacity = sendQueueCapacity;
+        return this;
+    }
+
+    public WebSocketSendOverflowPolicy sendOverflowPolicy() {
+        return sendOverflowPolicy;
+    }
+
+    /// 发送队列满时的策略, 默认为 [WebSocketSendOverflowPolicy#BLOCK].
+    public ScxFrameWebSocketOptions sendOverflowPolicy(WebSocketSendOverflowPolicy sendOverflowPolicy) {
+        if (sendOverflowPolicy == null) {
+            throw new NullPointerException("sendOverflowPolicy must not be null");
+        }
+        this.sendOverflowPolicy = sendOverflowPolicy;
+        return this;
+    }
+
+    public Duration writeTimeout() {
+        return writeTimeout;
+    }
+
+    /// 单次写操作 (包括等待写锁的时间) 的超时时间, ZERO 表示不限制.
+    ///
+    /// 超时后连接会被中止 (关闭端点), 阻塞中的写操作以 [dev.scx.websocket.exception.WebSocketIOException] 结束,
+    /// 之后该连接不可再使用. 超时的检查精度约为 50 毫秒.
+    public ScxFrameWebSocketOptions writeTimeout(Duration writeTimeout) {
+        if (writeTimeout.isNegative()) {
+            throw new IllegalArgumentException("writeTimeout must be >= 0");
+        }
+        this.writeTimeout = writeTimeout;
+        return this;
+    }
+
+    public long maxPendingBytes() {
+        return maxPendingBytes;
+    }
+
+    /// 慢消费者策略: 等待写出的字节数 (正在等待写锁的同步发送 + 异步发送队列中的帧) 的上限, 0 表示不限制.
+    ///
+    /// 超过上限时, 新的发送以 [dev.scx.websocket.exception.WebSocketIOException] 失败,
+    /// 同时连接会被驱逐: 尝试在限定时间内发送 Close (1008, "slow consumer"), 然后中止连接.
+    /// 单个超过上限的帧在没有其他等待写出的数据时依然允许发送.
+    public ScxFrameWebSocketOptions maxPendingBytes(long maxPendingBytes) {
+        if (maxPendingBytes < 0) {
+            throw new IllegalArgumentException("maxPendingBytes must be >= 0");
+        }
+        this.maxPendingBytes = maxPendingBytes;
+        return this;
+    }
+
+    public WebSocketMetrics metrics() {
+        return metrics;
+    }
+
+    /// 帧级别的指标 (帧数, 字节数, 控制帧, 等待写锁的耗时), null 表示不统计 (默认).
+    public ScxFrameWebSocketOptions metrics(WebSocketMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    public WebSocketObserver observer() {
+        return observer;
+    }
+
+    /// 帧级别的观察者 (帧的读取 / 写出), null 表示没有 (默认).
+    public ScxFrameWebSocketOptions observer(WebSocketObserver observer) {
+        this.observer = observer;
+        return this;
+    }
+
+}
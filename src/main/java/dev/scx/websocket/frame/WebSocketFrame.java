@@ -2,8 +2,9 @@ package dev.scx.websocket.frame;
 
 /// WebSocketFrame
 ///
+/// @param rsv1 RSV1 位. 只有在协商了扩展 (如 permessage-deflate) 时才允许为 true.
 /// @author scx567888
-public record WebSocketFrame(WebSocketOpCode opCode, byte[] payloadData, boolean fin) {
+public record WebSocketFrame(WebSocketOpCode opCode, byte[] payloadData, boolean fin, boolean rsv1) {
 
     public WebSocketFrame {
         if (opCode == null) {
@@ -14,4 +15,8 @@ public record WebSocketFrame(WebSocketOpCode opCode, byte[] payloadData, boolean
         }
     }
 
+    public WebSocketFrame(WebSocketOpCode opCode, byte[] payloadData, boolean fin) {
+        this(opCode, payloadData, fin, false);
+    }
+
 }
@@ -0,0 +1,214 @@
+package dev.scx.websocket.frame;
+
+import dev.scx.websocket.WebSocketObserver;
+import dev.scx.websocket.exception.WebSocketProtocolException;
+import dev.scx.websocket.metrics.WebSocketMetrics;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static dev.scx.websocket.WebSocketCloseInfo.PROTOCOL_ERROR;
+import static dev.scx.websocket.WebSocketCloseInfo.TOO_BIG;
+import static dev.scx.websocket.frame.ScxFrameWebSocketImplHelper.checkProtocolFrameHeader;
+import static dev.scx.websocket.frame.WebSocketMaskHelper.mask;
+
+/// 可恢复的增量帧解码器, 用于非阻塞 IO.
+///
+/// 每次调用 [#decode(ByteBuffer)] 都会尽可能多地消费 buffer 中的数据,
+/// 数据不足时 (可以停在帧头或 payload 的任意位置) 返回 null, 已消费的部分保存在解码器内部, 下一次调用时继续.
+/// 因此调用方无需保留未消费的数据, 可以在多个连接之间复用同一个读取缓冲区.
+///
+/// payload 数组随数据的到达而增长 (至少翻倍), 而不是在解析完帧头时按声明的长度一次分配,
+/// 因此只发送帧头就停止的连接不会占用 payload 大小的内存.
+///
+/// 校验规则与 [ScxFrameWebSocket#readFrame()] 相同. 解码器不是线程安全的.
+///
+/// @author scx567888
+public final class WebSocketFrameDecoder {
+
+    private static final long MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+
+    private static final byte[] EMPTY = new byte[0];
+
+    /// payload 数组的最小初始大小, 避免小块到达时频繁扩容.
+    private static final int MIN_PAYLOAD_CAPACITY = 4096;
+
+    // 状态
+    private static final int HEADER = 0; // 第 1 个字节 (fin, rsv, opCode)
+    private static final int LENGTH = 1; // 第 2 个字节 (mask, 7 位长度)
+    private static final int EXTENDED_LENGTH = 2; // 16 或 64 位扩展长度
+    private static final int MASKING_KEY = 3; // 4 字节掩码
+    private static final int PAYLOAD = 4;
+
+    private final boolean isClient;
+    private final long maxWebSocketFrameSize;
+    private final boolean rsv1Allowed;
+    private final WebSocketProtocolFrame header; // 复用的帧头
+    private final WebSocketMetrics metrics; // 运行指标, null 表示不统计
+    private final WebSocketObserver observer; // 观察者, null 表示没有
+    private int state;
+    private int remaining; // 当前字段 (扩展长度 / 掩码) 还需要的字节数
+    private long value; // 当前字段已读取的值
+    private WebSocketOpCode opCode;
+    private byte[] payloadData; // 容量可能小于 payloadLength, 随数据到达而增长
+    private int payloadOffset;
+
+    public WebSocketFrameDecoder(boolean isClient, ScxFrameWebSocketOptions options) {
+        this.isClient = isClient;
+        this.maxWebSocketFrameSize = options.maxWebSocketFrameSize();
+        this.rsv1Allowed = options.rsv1Allowed();
+        this.header = new WebSocketProtocolFrame();
+        this.metrics = options.metrics();
+        this.observer = options.observer();
+        this.state = HEADER;
+    }
+
+    public WebSocketFrameDecoder(boolean isClient) {
+        this(isClient, new ScxFrameWebSocketOptions());
+    }
+
+    /// 从 buffer 中解码下一帧, 数据不足时返回 null (此时 buffer 已被完全消费).
+    ///
+    /// @throws WebSocketProtocolException 帧不合法, 之后解码器不可再使用.
+    public WebSocketFrame decode(ByteBuffer buffer) throws WebSocketProtocolException {
+        while (true) {
+            switch (state) {
+                case HEADER -> {
+                    if (!buffer.hasRemaining()) {
+                        return null;
+                    }
+                    var b = buffer.get();
+                    header.fin = (b & 0b1000_0000) != 0;
+                    header.rsv1 = (b & 0b0100_0000) != 0;
+                    header.rsv2 = (b & 0b0010_0000) != 0;
+                    header.rsv3 = (b & 0b0001_0000) != 0;
+                    header.opCode = b & 0b0000_1111;
+                    state = LENGTH;
+                }
+                case LENGTH -> {
+                    if (!buffer.hasRemaining()) {
+                        return null;
+                    }
+                    var b = buffer.get();
+                    header.masked = (b & 0b1000_0000) != 0;
+                    var length = b & 0b0111_1111;
+                    if (length == 126) {
+                        remaining = 2;
+                        value = 0;
+                        state = EXTENDED_LENGTH;
+                    } else if (length == 127) {
+                        remaining = 8;
+                        value = 0;
+                        state = EXTENDED_LENGTH;
+                    } else {
+                        header.payloadLength = length;
+                        onLength();
+                    }
+                }
+                case EXTENDED_LENGTH -> {
+                    if (!readValue(buffer)) {
+                        return null;
+                    }
+                    header.payloadLength = value;
+                    onLength();
+                }
+                case MASKING_KEY -> {
+                    if (!readValue(buffer)) {
+                        return null;
+                    }
+                    header.maskingKey = (int) value;
+                    startPayload();
+                }
+                case PAYLOAD -> {
+                    var payloadLength = (int) header.payloadLength;
+                    if (payloadOffset < payloadLength) {
+                        if (!buffer.hasRemaining()) {
+                            return null;
+                        }
+                        var n = Math.min(buffer.remaining(), payloadLength - payloadOffset);
+                        ensurePayloadCapacity(payloadOffset + n);
+                        buffer.get(payloadData, payloadOffset, n);
+                        payloadOffset = payloadOffset + n;
+                        if (payloadOffset < payloadLength) {
+                            return null;
+                        }
+                    }
+                    return finishFrame();
+                }
+                default -> throw new IllegalStateException("Unexpected state: " + state);
+            }
+        }
+    }
+
+    /// 是否停在两帧之间 (没有未完成的帧).
+    public boolean isIdle() {
+        return state == HEADER;
+    }
+
+    private boolean readValue(ByteBuffer buffer) {
+        while (remaining > 0) {
+            if (!buffer.hasRemaining()) {
+                return false;
+            }
+            value = value << 8 | buffer.get() & 0b1111_1111;
+            remaining = remaining - 1;
+        }
+        return true;
+    }
+
+    private void onLength() throws WebSocketProtocolException {
+        var payloadLength = header.payloadLength;
+        // 64 位长度的最高位必须为 0.
+        if (payloadLength < 0) {
+            throw new WebSocketProtocolException(PROTOCOL_ERROR.code(), "invalid payload length");
+        }
+        // 太大抛异常.
+        if (payloadLength > maxWebSocketFrameSize || payloadLength > MAX_ARRAY_LENGTH) {
+            throw new WebSocketProtocolException(TOO_BIG.code(), "frame too large");
+        }
+        // 帧头已完整 (掩码除外), 尽早校验.
+        opCode = checkProtocolFrameHeader(header, isClient, rsv1Allowed);
+        if (header.masked) {
+            remaining = 4;
+            value = 0;
+            state = MASKING_KEY;
+        } else {
+            header.maskingKey = 0;
+            startPayload();
+        }
+    }
+
+    private void startPayload() {
+        payloadData = EMPTY;
+        payloadOffset = 0;
+        state = PAYLOAD;
+    }
+
+    /// 扩容到至少 required, 最多 payloadLength. 最终的数组长度总是恰好等于 payloadLength.
+    private void ensurePayloadCapacity(int required) {
+        if (payloadData.length >= required) {
+            return;
+        }
+        var capacity = Math.max(required, Math.max(payloadData.length * 2L, MIN_PAYLOAD_CAPACITY));
+        payloadData = Arrays.copyOf(payloadData, (int) Math.min(capacity, header.payloadLength));
+    }
+
+    private WebSocketFrame finishFrame() {
+        if (header.masked) {
+            mask(payloadData, 0, payloadData.length, header.maskingKey);
+        }
+        var frame = new WebSocketFrame(opCode, payloadData, header.fin, header.rsv1);
+        if (metrics != null) {
+            metrics.recordFrameIn((header.opCode & 0b1000) != 0, payloadData.length);
+        }
+        if (observer != null) {
+            observer.onFrameRead(opCode, header.fin, header.rsv1, payloadData.length);
+        }
+        // 重置状态, 不要持有 payload.
+        payloadData = null;
+        opCode = null;
+        state = HEADER;
+        return frame;
+    }
+
+}
@@ -0,0 +1,160 @@
+package dev.scx.websocket.frame;
+
+import dev.scx.io.ByteInput;
+import dev.scx.io.exception.InputAlreadyClosedException;
+import dev.scx.io.exception.NoMoreDataException;
+import dev.scx.io.exception.ScxInputException;
+import dev.scx.websocket.exception.WebSocketIOException;
+
+import java.io.InputStream;
+import java.util.Objects;
+
+import static dev.scx.websocket.frame.WebSocketMaskHelper.mask;
+import static dev.scx.websocket.frame.WebSocketMaskHelper.rotate;
+
+/// 单帧 payload 的输入流, 按需从底层读取并就地处理掩码.
+///
+/// @author scx567888
+final class WebSocketFramePayloadInputStream extends InputStream {
+
+    /// 单次从底层读取的最大长度, 用于约束内存占用.
+    private static final int MAX_CHUNK_SIZE = 64 * 1024;
+
+    private final ByteInput byteInput;
+    private final boolean masked;
+    private final int maskingKey;
+    private long remaining; // 剩余未读取的字节数
+    private long position; // 已读取的字节数, 用于计算掩码偏移
+    private WebSocketFrameReadEvent event; // 读取完成时提交的 JFR 事件, null 表示不记录
+
+    public WebSocketFramePayloadInputStream(ByteInput byteInput, boolean masked, int maskingKey, long payloadLength) {
+        this.byteInput = byteInput;
+        this.masked = masked;
+        this.maskingKey = maskingKey;
+        this.remaining = payloadLength;
+        this.position = 0;
+        this.event = null;
+    }
+
+    /// 设置 payload 读取完成时提交的 JFR 事件 (事件需要已经 begin, 并填好字段).
+    void commitOnEnd(WebSocketFrameReadEvent event) {
+        this.event = event;
+        if (remaining == 0) {
+            onEnd();
+        }
+    }
+
+    private void onEnd() {
+        var e = event;
+        if (e != null) {
+            event = null;
+            e.end();
+            if (e.shouldCommit()) {
+                e.commit();
+            }
+        }
+    }
+
+    @Override
+    public int read() throws WebSocketIOException {
+        if (remaining == 0) {
+            return -1;
+        }
+        byte b;
+        try {
+            b = byteInput.read();
+        } catch (NoMoreDataException | ScxInputException | InputAlreadyClosedException e) {
+            throw new WebSocketIOException(e);
+        }
+        if (masked) {
+            b = (byte) (b ^ maskingKey >>> 24 - ((position & 3) << 3));
+        }
+        remaining = remaining - 1;
+        position = position + 1;
+        if (remaining == 0) {
+            onEnd();
+        }
+        return b & 0b1111_1111;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws WebSocketIOException {
+        Objects.checkFromIndexSize(off, len, b.length);
+        if (len == 0) {
+            return 0;
+        }
+        if (remaining == 0) {
+            return -1;
+        }
+        var n = (int) Math.min(Math.min(len, remaining), MAX_CHUNK_SIZE);
+        byte[] data;
+        try {
+            data = byteInput.readFully(n);
+        } catch (NoMoreDataException | ScxInputException | InputAlreadyClosedException e) {
+            throw new WebSocketIOException(e);
+        }
+        if (masked) {
+            mask(data, 0, b, off, n, rotate(maskingKey, position));
+        } else {
+            System.arraycopy(data, 0, b, off, n);
+        }
+        remaining = remaining - n;
+        position = position + n;
+        if (remaining == 0) {
+            onEnd();
+        }
+        return n;
+    }
+
+    /// 一次性读取剩余的全部字节, 只分配一次, 就地计算掩码.
+    @Override
+    public byte[] readAllBytes() throws WebSocketIOException {
+        if (remaining > Integer.MAX_VALUE - 8) {
+            throw new OutOfMemoryError("Required array size too large");
+        }
+        var n = (int) remaining;
+        byte[] data;
+        try {
+            data = byteInput.readFully(n);
+        } catch (NoMoreDataException | ScxInputException | InputAlreadyClosedException e) {
+            throw new WebSocketIOException(e);
+        }
+        if (masked) {
+            mask(data, 0, n, rotate(maskingKey, position));
+        }
+        remaining = 0;
+        position = position + n;
+        onEnd();
+        return data;
+    }
+
+    @Override
+    public long skip(long n) throws WebSocketIOException {
+        var skipped = 0L;
+        while (skipped < n && remaining > 0) {
+            var c = (int) Math.min(Math.min(n - skipped, remaining), MAX_CHUNK_SIZE);
+            try {
+                byteInput.readFully(c);
+            } catch (NoMoreDataException | ScxInputException | InputAlreadyClosedException e) {
+                throw new WebSocketIOException(e);
+            }
+            remaining = remaining - c;
+            position = position + c;
+            skipped = skipped + c;
+        }
+        if (remaining == 0) {
+            onEnd();
+        }
+        return skipped;
+    }
+
+    /// 跳过剩余所有字节.
+    public void skipRemaining() throws WebSocketIOException {
+        skip(remaining);
+    }
+
+    public long remaining() {
+        return remaining;
+    }
+
+}
@@ -0,0 +1,29 @@
+package dev.scx.websocket.frame;
+
+import jdk.jfr.*;
+
+/// JFR 事件: 读取一帧的 payload. 持续时间从帧头读取完成开始计算, 不包括等待下一帧到达的时间.
+///
+/// @author scx567888
+@Name("dev.scx.websocket.FrameRead")
+@Label("WebSocket Frame Read")
+@Category({"SCX", "WebSocket"})
+@Threshold("1 ms")
+@StackTrace(false)
+final class WebSocketFrameReadEvent extends Event {
+
+    private static final EventType TYPE = EventType.getEventType(WebSocketFrameReadEvent.class);
+
+    @Label("OpCode")
+    String opCode;
+
+    @Label("Payload Length")
+    @DataAmount
+    long payloadLength;
+
+    /// 在创建事件之前判断, 未启用时不分配事件.
+    static boolean enabled() {
+        return TYPE.isEnabled();
+    }
+
+}
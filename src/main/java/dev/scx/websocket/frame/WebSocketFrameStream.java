@@ -0,0 +1,25 @@
+package dev.scx.websocket.frame;
+
+import java.io.InputStream;
+
+/// 流式读取的帧.
+///
+/// 帧头已经读取并校验完成, payload 则需要调用方通过 [#payload()] 按需读取 (已处理掩码).
+/// payload 只在读取下一帧之前有效, 未读完的部分会在读取下一帧时被自动跳过.
+///
+/// payload 读取过程中发生的错误会以 [dev.scx.websocket.exception.WebSocketIOException] 抛出.
+///
+/// @param payloadLength payload 长度, 可以超过 int 范围
+/// @author scx567888
+public record WebSocketFrameStream(WebSocketOpCode opCode, boolean fin, boolean rsv1, long payloadLength, InputStream payload) {
+
+    public WebSocketFrameStream {
+        if (opCode == null) {
+            throw new NullPointerException("opCode must not be null");
+        }
+        if (payload == null) {
+            throw new NullPointerException("payload must not be null");
+        }
+    }
+
+}
@@ -0,0 +1,36 @@
+package dev.scx.websocket.frame;
+
+import jdk.jfr.*;
+
+/// JFR 事件: 写出一帧 (或一批帧). 持续时间包括等待写锁的时间, 其中等待写锁的时间单独记录.
+///
+/// @author scx567888
+@Name("dev.scx.websocket.FrameWrite")
+@Label("WebSocket Frame Write")
+@Category({"SCX", "WebSocket"})
+@Threshold("1 ms")
+@StackTrace(false)
+final class WebSocketFrameWriteEvent extends Event {
+
+    private static final EventType TYPE = EventType.getEventType(WebSocketFrameWriteEvent.class);
+
+    @Label("OpCode")
+    @Description("批量写出时为第一帧的 opCode")
+    String opCode;
+
+    @Label("Frame Count")
+    int frameCount;
+
+    @Label("Payload Length")
+    @DataAmount
+    long payloadLength;
+
+    @Label("Lock Wait")
+    @Timespan(Timespan.NANOSECONDS)
+    long lockWait;
+
+    static boolean enabled() {
+        return TYPE.isEnabled();
+    }
+
+}
@@ -0,0 +1,42 @@
+package dev.scx.websocket.frame;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/// WebSocket 掩码计算辅助工具.
+///
+/// 掩码使用按大端序存放的 int 表示, 计算时扩展为 long, 通过 byte[] 的 long 视图每次处理 8 字节, 剩余部分逐字节处理.
+///
+/// @author scx567888
+final class WebSocketMaskHelper {
+
+    private static final VarHandle LONG_VIEW = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    /// 对 src 中的数据进行掩码 (或反掩码) 计算, 并写入 dst. src 和 dst 可以是同一个数组 (就地计算).
+    ///
+    /// @param maskingKey 掩码, src[srcOffset] 对应掩码的第 0 个字节. 若不是从 payload 起始位置开始, 需先调用 [#rotate(int, long)].
+    public static void mask(byte[] src, int srcOffset, byte[] dst, int dstOffset, int length, int maskingKey) {
+        long mask = (maskingKey & 0xFFFF_FFFFL) << 32 | maskingKey & 0xFFFF_FFFFL;
+        int i = 0;
+        int end = length - 7;
+        for (; i < end; i = i + 8) {
+            long v = (long) LONG_VIEW.get(src, srcOffset + i);
+            LONG_VIEW.set(dst, dstOffset + i, v ^ mask);
+        }
+        for (; i < length; i = i + 1) {
+            dst[dstOffset + i] = (byte) (src[srcOffset + i] ^ maskingKey >>> 24 - ((i & 3) << 3));
+        }
+    }
+
+    /// 就地计算.
+    public static void mask(byte[] data, int offset, int length, int maskingKey) {
+        mask(data, offset, data, offset, length, maskingKey);
+    }
+
+    /// 计算从 payload 的第 position 个字节开始时对应的掩码.
+    public static int rotate(int maskingKey, long position) {
+        return Integer.rotateLeft(maskingKey, (int) (position & 3) << 3);
+    }
+
+}
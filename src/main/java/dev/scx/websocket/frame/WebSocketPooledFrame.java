@@ -0,0 +1,37 @@
+package dev.scx.websocket.frame;
+
+import dev.scx.websocket.buffer.WebSocketBuffer;
+
+/// 池化模式下读取的帧, 参见 [ScxFrameWebSocket#readPooledFrame()].
+///
+/// payload 租借自 [dev.scx.websocket.buffer.WebSocketBufferPool], 使用完成后必须调用 [#release()] (或 close) 归还.
+///
+/// @author scx567888
+public record WebSocketPooledFrame(WebSocketOpCode opCode, WebSocketBuffer payload, boolean fin, boolean rsv1) implements AutoCloseable {
+
+    public WebSocketPooledFrame {
+        if (opCode == null) {
+            throw new NullPointerException("opCode must not be null");
+        }
+        if (payload == null) {
+            throw new NullPointerException("payload must not be null");
+        }
+    }
+
+    /// 等同于 `payload().release()`
+    public boolean release() {
+        return payload.release();
+    }
+
+    /// 复制为普通的 [WebSocketFrame].
+    public WebSocketFrame toFrame() {
+        return new WebSocketFrame(opCode, payload.toByteArray(), fin, rsv1);
+    }
+
+    /// 等同于 [#release()]
+    @Override
+    public void close() {
+        release();
+    }
+
+}
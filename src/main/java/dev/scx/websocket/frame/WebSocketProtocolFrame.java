@@ -2,6 +2,8 @@ package dev.scx.websocket.frame;
 
 /// WebSocketProtocolFrame
 ///
+/// 读取时每个连接只持有一个实例, 每次读取帧头时被原地覆盖, 以避免在热路径上分配对象.
+///
 /// @author scx567888
 /// @see <a href="https://www.rfc-editor.org/rfc/rfc6455">https://www.rfc-editor.org/rfc/rfc6455</a>
 final class WebSocketProtocolFrame {
@@ -13,7 +15,7 @@ final class WebSocketProtocolFrame {
     public int opCode;
     public boolean masked;
     public long payloadLength;
-    public byte[] maskingKey;
+    public int maskingKey; // 按大端序存放的 4 字节掩码, 只有 masked 为 true 时有效
     public byte[] payloadData;
 
 }
@@ -5,6 +5,9 @@ import dev.scx.io.ByteInput;
 import dev.scx.io.ByteOutput;
 import dev.scx.io.exception.*;
 
+import static dev.scx.websocket.frame.WebSocketMaskHelper.mask;
+import static dev.scx.websocket.frame.WebSocketMaskHelper.rotate;
+
 /// WebSocket 协议帧二进制编解码辅助工具.
 ///
 /// ### 设计意图
@@ -16,14 +19,17 @@ import dev.scx.io.exception.*;
 ///
 /// 明确不做的事情 (非目标):
 ///   - 不进行任何 WebSocket 协议语义校验 (允许非法帧存在)
-///   - 不执行 payload 掩码或反掩码操作
+///   - 不执行 payload 反掩码操作
 ///   - 不校验控制帧规则(FIN / payload 长度等)
 ///   - 不管理 WebSocket 连接状态(close / ping / pong)
 ///   - 不做消息分片重组
 ///
 /// ### Payload 行为说明
 ///
-/// 如果帧为 masked, 则 payloadData 中保存的是 掩码后的原始字节数据, 本类不会进行任何转换.
+/// 读取时, 如果帧为 masked, 则 payloadData 中保存的是 掩码后的原始字节数据, 本类不会进行任何转换.
+///
+/// 写出时, 如果帧为 masked, 则 payloadData 中保存的是 未掩码的数据,
+/// 本类会在写出的过程中分块计算掩码 (使用临时缓冲区, 不修改原始数组), 以避免为掩码结果额外分配整个 payload 大小的数组.
 ///
 /// 本类不是安全 WebSocket 实现, 也不适用于直接业务使用.
 ///
@@ -31,10 +37,13 @@ import dev.scx.io.exception.*;
 /// @see <a href="https://www.rfc-editor.org/rfc/rfc6455">https://www.rfc-editor.org/rfc/rfc6455</a>
 final class WebSocketProtocolFrameHelper {
 
-    /// 完全原样读取 protocolFrame, 不涉及任何校验或掩码处理.
-    public static WebSocketProtocolFrame readProtocolFrameHeader(ByteInput byteInput) throws NoMoreDataException, ScxInputException, InputAlreadyClosedException {
-        var protocolFrame = new WebSocketProtocolFrame();
+    /// 批量读取 payload 时每块的大小, 足够摊薄调用开销, 同时临时数组足够小 (可以直接在 TLAB 中分配).
+    private static final int READ_CHUNK_SIZE = 8 * 1024;
 
+    /// 完全原样读取 protocolFrame, 不涉及任何校验或掩码处理.
+    ///
+    /// 读取结果直接写入传入的 protocolFrame (原地覆盖), 扩展长度和掩码逐字节读取并直接解码为基本类型, 不分配任何对象.
+    public static WebSocketProtocolFrame readProtocolFrameHeader(ByteInput byteInput, WebSocketProtocolFrame protocolFrame) throws NoMoreDataException, ScxInputException, InputAlreadyClosedException {
         byte b1 = byteInput.read();
 
         protocolFrame.fin = (b1 & 0b1000_0000) != 0;
@@ -50,44 +59,105 @@ final class WebSocketProtocolFrameHelper {
 
         // 读取扩展长度
         if (payloadLength == 126) {
-            byte[] extendedPayloadLength = byteInput.readFully(2);
-            payloadLength = (extendedPayloadLength[0] & 0b1111_1111L) << 8 |
-                extendedPayloadLength[1] & 0b1111_1111L;
+            payloadLength = readUnsignedLong(byteInput, 2);
         } else if (payloadLength == 127) {
-            byte[] extendedPayloadLength = byteInput.readFully(8);
-            payloadLength = (extendedPayloadLength[0] & 0b1111_1111L) << 56 |
-                (extendedPayloadLength[1] & 0b1111_1111L) << 48 |
-                (extendedPayloadLength[2] & 0b1111_1111L) << 40 |
-                (extendedPayloadLength[3] & 0b1111_1111L) << 32 |
-                (extendedPayloadLength[4] & 0b1111_1111L) << 24 |
-                (extendedPayloadLength[5] & 0b1111_1111L) << 16 |
-                (extendedPayloadLength[6] & 0b1111_1111L) << 8 |
-                extendedPayloadLength[7] & 0b1111_1111L;
+            payloadLength = readUnsignedLong(byteInput, 8);
         }
 
         protocolFrame.payloadLength = payloadLength;
 
         if (protocolFrame.masked) {
-            protocolFrame.maskingKey = byteInput.readFully(4);
+            protocolFrame.maskingKey = (int) readUnsignedLong(byteInput, 4);
+        } else {
+            protocolFrame.maskingKey = 0;
         }
 
+        protocolFrame.payloadData = null;
+
         return protocolFrame;
     }
 
+    /// 按大端序读取 n 个字节.
+    private static long readUnsignedLong(ByteInput byteInput, int n) throws NoMoreDataException, ScxInputException, InputAlreadyClosedException {
+        long value = 0;
+        for (int i = 0; i < n; i = i + 1) {
+            value = value << 8 | byteInput.read() & 0b1111_1111L;
+        }
+        return value;
+    }
+
     /// 完全原样读取 protocolFrame, 不涉及任何校验或掩码处理.
     public static WebSocketProtocolFrame readProtocolFramePayload(WebSocketProtocolFrame protocolFrame, ByteInput byteInput) throws NoMoreDataException, ScxInputException, InputAlreadyClosedException {
 
-        // 这里我们假设 payloadLength 小于 int 值. 此处强转.
+        // 上层保证 payloadLength 可以放入单个数组 (超大帧需要使用流式读取). 此处强转.
         protocolFrame.payloadData = byteInput.readFully((int) protocolFrame.payloadLength);
 
         return protocolFrame;
     }
 
-    /// 完全原样写出 protocolFrame, 不涉及任何校验或掩码处理.
+    /// 完全原样将 payload 读入 dst, 不涉及任何校验或掩码处理.
+    ///
+    /// 按 [#READ_CHUNK_SIZE] 分块批量读取. ByteInput 的批量读取会返回新数组, 这些只是很快被回收的临时数组,
+    /// 长期持有的 dst 依然来自池. 相比逐字节调用 read(), 每块只需一次调用和一次 arraycopy.
+    public static void readProtocolFramePayload(ByteInput byteInput, byte[] dst, int length) throws NoMoreDataException, ScxInputException, InputAlreadyClosedException {
+        var position = 0;
+        while (position < length) {
+            var n = Math.min(length - position, READ_CHUNK_SIZE);
+            var chunk = byteInput.readFully(n);
+            System.arraycopy(chunk, 0, dst, position, n);
+            position = position + n;
+        }
+    }
+
+    /// 写出 protocolFrame, 不涉及任何校验. masked 帧会在写出时计算掩码.
+    ///
+    /// 帧头和 payload 的第一块会被合并到同一个临时缓冲区中一次写出.
     public static void writeProtocolFrame(WebSocketProtocolFrame protocolFrame, ByteOutput byteOutput) throws ScxOutputException, OutputAlreadyClosedException {
-        // 创建 header 防止频繁写入底层.
-        byte[] header = new byte[14];
+        writeProtocolFrame(protocolFrame, byteOutput, true);
+    }
 
+    /// 同 [#writeProtocolFrame(WebSocketProtocolFrame, ByteOutput)], flush 为 false 时不会刷新 byteOutput,
+    /// 用于批量写出多个帧后只刷新一次.
+    public static void writeProtocolFrame(WebSocketProtocolFrame protocolFrame, ByteOutput byteOutput, boolean flush) throws ScxOutputException, OutputAlreadyClosedException {
+        var buffer = WebSocketScratchBuffer.acquire();
+        try {
+            // 帧头
+            var s = writeProtocolFrameHeader(protocolFrame, buffer);
+
+            byte[] payloadData = protocolFrame.payloadData;
+            var length = payloadData.length;
+
+            if (protocolFrame.masked) {
+                // 分块掩码, 第一块与帧头一起写出.
+                var maskingKey = protocolFrame.maskingKey;
+                var position = 0;
+                do {
+                    var n = Math.min(length - position, buffer.length - s);
+                    mask(payloadData, position, buffer, s, n, rotate(maskingKey, position));
+                    byteOutput.write(ByteChunk.of(buffer, 0, s + n));
+                    position = position + n;
+                    s = 0;
+                } while (position < length);
+            } else if (length <= buffer.length - s) {
+                // payload 较小, 与帧头合并后一次写出.
+                System.arraycopy(payloadData, 0, buffer, s, length);
+                byteOutput.write(ByteChunk.of(buffer, 0, s + length));
+            } else {
+                // payload 较大, 复制的开销大于多一次写出的开销.
+                byteOutput.write(ByteChunk.of(buffer, 0, s));
+                byteOutput.write(payloadData);
+            }
+
+            if (flush) {
+                byteOutput.flush();
+            }
+        } finally {
+            WebSocketScratchBuffer.release(buffer);
+        }
+    }
+
+    /// 将帧头写入 header, 返回帧头长度 (最多 14 字节).
+    public static int writeProtocolFrameHeader(WebSocketProtocolFrame protocolFrame, byte[] header) {
         // 头部
         header[0] = (byte) ((protocolFrame.fin ? 0b1000_0000 : 0) |
             (protocolFrame.rsv1 ? 0b0100_0000 : 0) |
@@ -122,22 +192,15 @@ final class WebSocketProtocolFrameHelper {
 
         // 写入掩码键 (如果有)
         if (protocolFrame.masked) {
-            byte[] maskingKey = protocolFrame.maskingKey;
-            header[s] = maskingKey[0];
-            header[s + 1] = maskingKey[1];
-            header[s + 2] = maskingKey[2];
-            header[s + 3] = maskingKey[3];
+            int maskingKey = protocolFrame.maskingKey;
+            header[s] = (byte) (maskingKey >>> 24);
+            header[s + 1] = (byte) (maskingKey >>> 16);
+            header[s + 2] = (byte) (maskingKey >>> 8);
+            header[s + 3] = (byte) maskingKey;
             s = s + 4;
         }
 
-        // 写出头.
-        byteOutput.write(ByteChunk.of(header, 0, s));
-
-        byte[] payloadData = protocolFrame.payloadData;
-
-        // 写入有效负载数据
-        byteOutput.write(payloadData);
-        byteOutput.flush();
+        return s;
     }
 
 }
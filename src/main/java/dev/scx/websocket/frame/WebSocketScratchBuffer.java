@@ -0,0 +1,51 @@
+package dev.scx.websocket.frame;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/// 写出帧时使用的临时缓冲区池.
+///
+/// 按线程分槽 (striped), 每个槽最多保留一个缓冲区, 因此总保留量有上限.
+/// 从线程对应的槽开始依次探测相邻的几个槽, 避免两个线程映射到同一个槽时互相抢走缓冲区.
+/// 探测的槽都为空时直接分配新的缓冲区, 都已满时归还的缓冲区会被丢弃.
+///
+/// @author scx567888
+final class WebSocketScratchBuffer {
+
+    /// 缓冲区大小. 需要能容纳最大的帧头 (14 字节), 剩余部分用于 payload.
+    public static final int SIZE = 1024 * 16;
+
+    private static final int STRIPES = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 2);
+
+    private static final int PROBES = Math.min(STRIPES, 4);
+
+    private static final AtomicReferenceArray<byte[]> SLOTS = new AtomicReferenceArray<>(STRIPES);
+
+    public static byte[] acquire() {
+        var slot = slot();
+        for (int i = 0; i < PROBES; i = i + 1) {
+            var index = slot + i & STRIPES - 1;
+            // 先读再交换, 避免对空槽的无效写入.
+            if (SLOTS.get(index) != null) {
+                var buffer = SLOTS.getAndSet(index, null);
+                if (buffer != null) {
+                    return buffer;
+                }
+            }
+        }
+        return new byte[SIZE];
+    }
+
+    public static void release(byte[] buffer) {
+        var slot = slot();
+        for (int i = 0; i < PROBES; i = i + 1) {
+            if (SLOTS.compareAndSet(slot + i & STRIPES - 1, null, buffer)) {
+                return;
+            }
+        }
+    }
+
+    private static int slot() {
+        return (int) Thread.currentThread().threadId() & STRIPES - 1;
+    }
+
+}
@@ -0,0 +1,17 @@
+package dev.scx.websocket.frame;
+
+/// 异步发送队列达到容量上限时的处理策略.
+///
+/// @author scx567888
+public enum WebSocketSendOverflowPolicy {
+
+    /// 阻塞调用方, 直到队列有空位.
+    BLOCK,
+
+    /// 直接丢弃该帧, 返回的 future 以 false 完成.
+    DROP,
+
+    /// 返回的 future 以 [dev.scx.websocket.exception.WebSocketBackpressureException] 异常完成.
+    FAIL
+
+}
@@ -0,0 +1,140 @@
+package dev.scx.websocket.frame;
+
+import dev.scx.websocket.exception.WebSocketBackpressureException;
+import dev.scx.websocket.exception.WebSocketIOException;
+import dev.scx.websocket.exception.WebSocketInvalidStateException;
+import dev.scx.websocket.exception.WebSocketProtocolException;
+
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static dev.scx.websocket.frame.ScxFrameWebSocketImplHelper.checkFrame;
+
+/// 异步发送队列.
+///
+/// 多个生产者无锁入队, 由单个写线程 (虚拟线程) 顺序出队写出.
+/// 写线程每次取出当前队列中的所有帧 (最多 MAX_BATCH_SIZE 个) 批量写出, 只刷新一次.
+/// 队列空时写线程退出, 下一次入队时再重新启动.
+/// Close 帧写出之后, 队列中剩余的帧 (以及之后入队的帧) 都会失败, 不会写出 (RFC 6455 5.5.1).
+///
+/// @author scx567888
+final class WebSocketSendQueue {
+
+    private static final int MAX_BATCH_SIZE = 64;
+
+    private final ScxFrameWebSocketImpl frameWebSocket;
+    private final boolean rsv1Allowed;
+    private final WebSocketSendOverflowPolicy overflowPolicy;
+    private final ConcurrentLinkedQueue<Entry> queue;
+    private final Semaphore permits; // 剩余容量
+    private final AtomicBoolean draining; // 写线程是否在运行
+
+    WebSocketSendQueue(ScxFrameWebSocketImpl frameWebSocket, boolean rsv1Allowed, int capacity, WebSocketSendOverflowPolicy overflowPolicy) {
+        this.frameWebSocket = frameWebSocket;
+        this.rsv1Allowed = rsv1Allowed;
+        this.overflowPolicy = overflowPolicy;
+        this.queue = new ConcurrentLinkedQueue<>();
+        this.permits = new Semaphore(capacity);
+        this.draining = new AtomicBoolean(false);
+    }
+
+    public CompletableFuture<Boolean> offer(WebSocketFrame frame) {
+        var future = new CompletableFuture<Boolean>();
+        // 入队前先校验, 保证批量写出时不会因为某一帧不合法而影响其他帧.
+        try {
+            checkFrame(frame, rsv1Allowed);
+        } catch (WebSocketProtocolException e) {
+            future.completeExceptionally(e);
+            return future;
+        }
+        var length = frame.payloadData().length;
+        // 队列中的帧同样计入等待写出的字节数 (慢消费者策略).
+        try {
+            frameWebSocket.reservePending(length);
+        } catch (WebSocketIOException e) {
+            future.completeExceptionally(e);
+            return future;
+        }
+        if (!acquirePermit()) {
+            frameWebSocket.releasePending(length);
+            switch (overflowPolicy) {
+                case DROP -> future.complete(false);
+                default -> future.completeExceptionally(new WebSocketBackpressureException("send queue is full"));
+            }
+            return future;
+        }
+        queue.add(new Entry(frame, future));
+        // 没有写线程时启动一个.
+        if (draining.compareAndSet(false, true)) {
+            Thread.ofVirtual().name("scx-websocket-writer").start(this::drain);
+        }
+        return future;
+    }
+
+    private boolean acquirePermit() {
+        if (overflowPolicy != WebSocketSendOverflowPolicy.BLOCK) {
+            return permits.tryAcquire();
+        }
+        try {
+            permits.acquire();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void drain() {
+        var entries = new ArrayList<Entry>(MAX_BATCH_SIZE);
+        var frames = new ArrayList<WebSocketFrame>(MAX_BATCH_SIZE);
+        while (true) {
+            Entry entry;
+            while (entries.size() < MAX_BATCH_SIZE && (entry = queue.poll()) != null) {
+                entries.add(entry);
+                frames.add(entry.frame);
+            }
+            if (entries.isEmpty()) {
+                draining.set(false);
+                // 退出前再次检查, 防止和入队竞争导致帧滞留在队列中.
+                if (queue.isEmpty() || !draining.compareAndSet(false, true)) {
+                    return;
+                }
+                continue;
+            }
+            Throwable error = null;
+            var written = 0;
+            var length = 0L;
+            for (var frame : frames) {
+                length = length + frame.payloadData().length;
+            }
+            try {
+                // 入队时已经校验并统计过.
+                written = frameWebSocket.writeFrames(frames, true);
+            } catch (Throwable e) {
+                error = e;
+            }
+            frameWebSocket.releasePending(length);
+            permits.release(entries.size());
+            for (int i = 0; i < entries.size(); i = i + 1) {
+                var e = entries.get(i);
+                if (error != null) {
+                    e.future.completeExceptionally(error);
+                } else if (i < written) {
+                    e.future.complete(true);
+                } else {
+                    e.future.completeExceptionally(new WebSocketInvalidStateException("Cannot send " + e.frame.opCode() + " after CLOSE has been sent"));
+                }
+            }
+            entries.clear();
+            frames.clear();
+        }
+    }
+
+    private record Entry(WebSocketFrame frame, CompletableFuture<Boolean> future) {
+
+    }
+
+}
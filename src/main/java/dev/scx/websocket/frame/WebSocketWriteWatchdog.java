@@ -0,0 +1,60 @@
+package dev.scx.websocket.frame;
+
+import java.lang.ref.WeakReference;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.LockSupport;
+
+/// 写超时看门狗.
+///
+/// 所有配置了写超时的连接共享一个守护线程, 定期检查各连接当前写操作的截止时间, 超时则中止连接 (关闭端点),
+/// 从而打断阻塞中的写操作. 写操作本身只需要设置和清除一个 volatile 截止时间, 不需要为每次写入创建定时任务.
+///
+/// 连接在 close, 写出失败时注销. 看门狗只持有连接的弱引用, 因此没有关闭就被丢弃的连接也不会被一直持有.
+///
+/// @author scx567888
+final class WebSocketWriteWatchdog {
+
+    /// 检查间隔, 也是写超时的精度.
+    private static final long CHECK_INTERVAL_NANOS = 50_000_000L;
+
+    private static final Set<WeakReference<ScxFrameWebSocketImpl>> WEB_SOCKETS = ConcurrentHashMap.newKeySet();
+
+    private static volatile Thread thread;
+
+    /// @return 注销时使用的引用.
+    static WeakReference<ScxFrameWebSocketImpl> register(ScxFrameWebSocketImpl webSocket) {
+        var ref = new WeakReference<>(webSocket);
+        WEB_SOCKETS.add(ref);
+        if (thread == null) {
+            startThread();
+        }
+        return ref;
+    }
+
+    static void unregister(WeakReference<ScxFrameWebSocketImpl> ref) {
+        WEB_SOCKETS.remove(ref);
+    }
+
+    private static synchronized void startThread() {
+        if (thread == null) {
+            thread = Thread.ofPlatform().name("scx-websocket-write-watchdog").daemon(true).start(WebSocketWriteWatchdog::run);
+        }
+    }
+
+    private static void run() {
+        while (true) {
+            LockSupport.parkNanos(CHECK_INTERVAL_NANOS);
+            var now = System.nanoTime();
+            for (var ref : WEB_SOCKETS) {
+                var webSocket = ref.get();
+                if (webSocket == null) {
+                    WEB_SOCKETS.remove(ref);
+                } else {
+                    webSocket.checkWriteDeadline(now);
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,79 @@
+package dev.scx.websocket.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/// 无锁的耗时直方图, 以 2 的幂划分桶 (纳秒), 第 i 个桶记录 [2^(i-1), 2^i) 范围内的值, 第 0 个桶记录 0.
+///
+/// 记录只需要一次数组元素的原子自增, 精度为 2 倍, 适用于观察分布和长尾而不是精确计时.
+///
+/// @author scx567888
+public final class WebSocketLatencyHistogram {
+
+    private static final int BUCKET_COUNT = 64;
+
+    private final AtomicLongArray buckets;
+    private final LongAdder sum;
+
+    public WebSocketLatencyHistogram() {
+        this.buckets = new AtomicLongArray(BUCKET_COUNT);
+        this.sum = new LongAdder();
+    }
+
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        buckets.getAndIncrement(64 - Long.numberOfLeadingZeros(nanos));
+        sum.add(nanos);
+    }
+
+    public long count() {
+        var count = 0L;
+        for (int i = 0; i < BUCKET_COUNT; i = i + 1) {
+            count = count + buckets.get(i);
+        }
+        return count;
+    }
+
+    /// 所有记录值的总和 (纳秒).
+    public long sum() {
+        return sum.sum();
+    }
+
+    /// 返回 percentile (0 ~ 100) 分位值所在桶的上界 (纳秒), 没有记录时返回 0.
+    public long valueAtPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile must be in [0, 100]");
+        }
+        var counts = new long[BUCKET_COUNT];
+        var total = 0L;
+        for (int i = 0; i < BUCKET_COUNT; i = i + 1) {
+            counts[i] = buckets.get(i);
+            total = total + counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        var target = Math.max((long) Math.ceil(total * percentile / 100), 1);
+        var seen = 0L;
+        for (int i = 0; i < BUCKET_COUNT; i = i + 1) {
+            seen = seen + counts[i];
+            if (seen >= target) {
+                return bucketUpperBound(i);
+            }
+        }
+        return bucketUpperBound(BUCKET_COUNT - 1);
+    }
+
+    /// 第 i 个桶的记录数.
+    public long bucketCount(int i) {
+        return buckets.get(i);
+    }
+
+    /// 第 i 个桶的上界 (不包含, 纳秒).
+    public static long bucketUpperBound(int i) {
+        return i == 0 ? 0 : i >= 63 ? Long.MAX_VALUE : 1L << i;
+    }
+
+}
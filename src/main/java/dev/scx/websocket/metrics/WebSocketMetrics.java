@@ -0,0 +1,214 @@
+package dev.scx.websocket.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/// WebSocketMetrics
+///
+/// 连接的运行指标. 计数使用 [LongAdder], 耗时使用 [WebSocketLatencyHistogram], 记录时均无锁.
+///
+/// - 通过各层 Options 的 metrics(...) 启用, 未设置 (null) 时实现内部只有一次 null 判断, 不会读取时钟.
+/// - 可以为每个连接创建一个实例, 并指定 parent (如 [#global()]), 记录时会同时累加到 parent 上, 从而同时得到单连接和全局的指标.
+/// - 多个连接也可以直接共享同一个实例.
+///
+/// record 开头的方法由实现内部调用.
+///
+/// @author scx567888
+public final class WebSocketMetrics {
+
+    private static final WebSocketMetrics GLOBAL = new WebSocketMetrics(null);
+
+    /// 按 close code 统计的协议错误只覆盖 1000 ~ 1015, 其余计入 1000.
+    private static final int MIN_CLOSE_CODE = 1000;
+    private static final int MAX_CLOSE_CODE = 1015;
+
+    private final WebSocketMetrics parent;
+    private final LongAdder framesIn;
+    private final LongAdder framesOut;
+    private final LongAdder bytesIn;
+    private final LongAdder bytesOut;
+    private final LongAdder controlFramesIn;
+    private final LongAdder controlFramesOut;
+    private final LongAdder fragmentsAggregated;
+    private final LongAdder messagesIn;
+    private final LongAdder messagesOut;
+    private final LongAdder protocolErrors;
+    private final LongAdder[] protocolErrorsByCode;
+    private final LongAdder callbacks;
+    private final LongAdder callbackErrors;
+    private final WebSocketLatencyHistogram sendLockWait;
+
+    public WebSocketMetrics(WebSocketMetrics parent) {
+        this.parent = parent;
+        this.framesIn = new LongAdder();
+        this.framesOut = new LongAdder();
+        this.bytesIn = new LongAdder();
+        this.bytesOut = new LongAdder();
+        this.controlFramesIn = new LongAdder();
+        this.controlFramesOut = new LongAdder();
+        this.fragmentsAggregated = new LongAdder();
+        this.messagesIn = new LongAdder();
+        this.messagesOut = new LongAdder();
+        this.protocolErrors = new LongAdder();
+        this.protocolErrorsByCode = new LongAdder[MAX_CLOSE_CODE - MIN_CLOSE_CODE + 1];
+        for (int i = 0; i < protocolErrorsByCode.length; i = i + 1) {
+            this.protocolErrorsByCode[i] = new LongAdder();
+        }
+        this.callbacks = new LongAdder();
+        this.callbackErrors = new LongAdder();
+        this.sendLockWait = new WebSocketLatencyHistogram();
+    }
+
+    public WebSocketMetrics() {
+        this(null);
+    }
+
+    /// 全局实例, 可以直接使用, 也可以作为单连接实例的 parent.
+    public static WebSocketMetrics global() {
+        return GLOBAL;
+    }
+
+    // ******************* record **********************
+
+    public void recordFrameIn(boolean control, long payloadLength) {
+        framesIn.increment();
+        bytesIn.add(payloadLength);
+        if (control) {
+            controlFramesIn.increment();
+        }
+        if (parent != null) {
+            parent.recordFrameIn(control, payloadLength);
+        }
+    }
+
+    public void recordFrameOut(boolean control, long payloadLength) {
+        framesOut.increment();
+        bytesOut.add(payloadLength);
+        if (control) {
+            controlFramesOut.increment();
+        }
+        if (parent != null) {
+            parent.recordFrameOut(control, payloadLength);
+        }
+    }
+
+    /// 记录被聚合的分片数 (包括起始帧).
+    public void recordFragmentsAggregated(long fragments) {
+        fragmentsAggregated.add(fragments);
+        if (parent != null) {
+            parent.recordFragmentsAggregated(fragments);
+        }
+    }
+
+    public void recordMessageIn() {
+        messagesIn.increment();
+        if (parent != null) {
+            parent.recordMessageIn();
+        }
+    }
+
+    public void recordMessagesOut(long messages) {
+        messagesOut.add(messages);
+        if (parent != null) {
+            parent.recordMessagesOut(messages);
+        }
+    }
+
+    public void recordProtocolError(int closeCode) {
+        protocolErrors.increment();
+        protocolErrorsByCode[closeCodeIndex(closeCode)].increment();
+        if (parent != null) {
+            parent.recordProtocolError(closeCode);
+        }
+    }
+
+    public void recordCallback(boolean failed) {
+        callbacks.increment();
+        if (failed) {
+            callbackErrors.increment();
+        }
+        if (parent != null) {
+            parent.recordCallback(failed);
+        }
+    }
+
+    public void recordSendLockWait(long nanos) {
+        sendLockWait.record(nanos);
+        if (parent != null) {
+            parent.recordSendLockWait(nanos);
+        }
+    }
+
+    // ******************* read **********************
+
+    public WebSocketMetrics parent() {
+        return parent;
+    }
+
+    public long framesIn() {
+        return framesIn.sum();
+    }
+
+    public long framesOut() {
+        return framesOut.sum();
+    }
+
+    /// 接收的 payload 字节数 (不包括帧头).
+    public long bytesIn() {
+        return bytesIn.sum();
+    }
+
+    /// 发送的 payload 字节数 (不包括帧头).
+    public long bytesOut() {
+        return bytesOut.sum();
+    }
+
+    public long controlFramesIn() {
+        return controlFramesIn.sum();
+    }
+
+    public long controlFramesOut() {
+        return controlFramesOut.sum();
+    }
+
+    public long fragmentsAggregated() {
+        return fragmentsAggregated.sum();
+    }
+
+    public long messagesIn() {
+        return messagesIn.sum();
+    }
+
+    public long messagesOut() {
+        return messagesOut.sum();
+    }
+
+    public long protocolErrors() {
+        return protocolErrors.sum();
+    }
+
+    public long protocolErrors(int closeCode) {
+        return protocolErrorsByCode[closeCodeIndex(closeCode)].sum();
+    }
+
+    /// 事件回调的执行次数 (只统计 ScxEventWebSocket).
+    public long callbacks() {
+        return callbacks.sum();
+    }
+
+    public long callbackErrors() {
+        return callbackErrors.sum();
+    }
+
+    /// 发送时等待写锁的耗时.
+    public WebSocketLatencyHistogram sendLockWait() {
+        return sendLockWait;
+    }
+
+    private static int closeCodeIndex(int closeCode) {
+        if (closeCode < MIN_CLOSE_CODE || closeCode > MAX_CLOSE_CODE) {
+            return 0;
+        }
+        return closeCode - MIN_CLOSE_CODE;
+    }
+
+}
@@ -0,0 +1,216 @@
+package dev.scx.websocket.test;
+
+import dev.scx.websocket.BinaryMessage;
+import dev.scx.websocket.CloseMessage;
+import dev.scx.websocket.PingMessage;
+import dev.scx.websocket.PongMessage;
+import dev.scx.websocket.ScxWebSocket;
+import dev.scx.websocket.ScxWebSocketOptions;
+import dev.scx.websocket.endpoint.PipeByteEndpoint;
+import dev.scx.websocket.frame.ScxFrameWebSocket;
+import dev.scx.websocket.frame.WebSocketFrame;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static dev.scx.websocket.frame.WebSocketOpCode.BINARY;
+import static dev.scx.websocket.frame.WebSocketOpCode.CLOSE;
+
+/// 热路径上每条消息的分配预算.
+///
+/// 通过 ThreadMXBean 统计当前线程分配的字节数 (对端在另一个线程上运行, 不计入).
+/// 预算按预期的分配量设定: 消息数据只分配必需的数组 (读取时的数组和最终的消息数组), 另加少量固定开销.
+/// 多复制一次消息数据的改动会使测试失败.
+public class AllocationBudgetTest {
+
+    private static final int WARMUP = 20000;
+    private static final int ITERATIONS = 10000;
+
+    public static void main(String[] args) throws Exception {
+        test1();
+        test2();
+        test3();
+        test4();
+        test5();
+    }
+
+    /// 小的未分片文本: read() + send() 回显.
+    @Test
+    public static void test1() throws Exception {
+        var endpoints = PipeByteEndpoint.pair();
+        var text = "Allocation 测试文本";
+        var peer = Thread.ofPlatform().start(() -> {
+            try {
+                var client = ScxWebSocket.of(endpoints[0], true);
+                for (int i = 0; i < WARMUP + ITERATIONS; i = i + 1) {
+                    client.send(text);
+                    client.read();
+                }
+                client.sendClose();
+                client.read();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        var server = ScxWebSocket.of(endpoints[1], false);
+        var perMessage = measure(() -> server.send(server.read()));
+        Assert.assertTrue(server.read() instanceof CloseMessage);
+        peer.join();
+        server.close();
+        assertBudget("small text echo", perMessage, 448);
+    }
+
+    /// 二进制帧回显: readFrame() + sendFrame().
+    @Test
+    public static void test2() throws Exception {
+        var endpoints = PipeByteEndpoint.pair();
+        var payload = new byte[1024];
+        var peer = Thread.ofPlatform().start(() -> {
+            try {
+                var client = ScxFrameWebSocket.of(endpoints[0], true);
+                for (int i = 0; i < WARMUP + ITERATIONS; i = i + 1) {
+                    client.sendFrame(new WebSocketFrame(BINARY, payload, true));
+                    client.readFrame();
+                }
+                client.sendFrame(new WebSocketFrame(CLOSE, new byte[0], true));
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        var server = ScxFrameWebSocket.of(endpoints[1], false);
+        var perMessage = measure(() -> server.sendFrame(server.readFrame()));
+        Assert.assertEquals(server.readFrame().opCode(), CLOSE);
+        peer.join();
+        server.close();
+        // payload 本身 (1 KB) + 固定开销.
+        assertBudget("binary frame echo", perMessage, 1024 + 640);
+    }
+
+    /// 分片消息的聚合: 64 KB 的消息分为 16 个分片, read() 聚合为一条消息.
+    @Test
+    public static void test3() throws Exception {
+        var endpoints = PipeByteEndpoint.pair();
+        var payload = new byte[64 * 1024];
+        var peer = Thread.ofPlatform().start(() -> {
+            try {
+                var client = ScxWebSocket.of(endpoints[0], true, new ScxWebSocketOptions().fragmentSize(4096));
+                for (int i = 0; i < WARMUP + ITERATIONS; i = i + 1) {
+                    try (var out = client.sendBinaryStream()) {
+                        out.write(payload);
+                    }
+                }
+                client.sendClose();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        var server = ScxWebSocket.of(endpoints[1], false);
+        var perMessage = measure(() -> {
+            if (((BinaryMessage) server.read()).binary().length != payload.length) {
+                throw new AssertionError();
+            }
+        });
+        Assert.assertTrue(server.read() instanceof CloseMessage);
+        peer.join();
+        server.close();
+        // ByteInput.readFully 读取分片时的数组 (64 KB, 之前的分片直接保存这些数组) + 最终的消息数组 (64 KB) + 每个分片的固定开销.
+        // 再多复制一次 (64 KB) 就会超出预算.
+        assertBudget("fragmented aggregation", perMessage, 2 * 64 * 1024 + 4 * 1024);
+    }
+
+    /// Ping 自动回复: read() 收到 Ping 时自动发送 Pong.
+    @Test
+    public static void test4() throws Exception {
+        var endpoints = PipeByteEndpoint.pair();
+        var data = new byte[8];
+        var peer = Thread.ofPlatform().start(() -> {
+            try {
+                var client = ScxWebSocket.of(endpoints[0], true);
+                for (int i = 0; i < WARMUP + ITERATIONS; i = i + 1) {
+                    client.sendPing(data);
+                    if (!(client.read() instanceof PongMessage)) {
+                        throw new AssertionError();
+                    }
+                }
+                client.sendClose();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        var server = ScxWebSocket.of(endpoints[1], false);
+        var perMessage = measure(() -> {
+            if (!(server.read() instanceof PingMessage)) {
+                throw new AssertionError();
+            }
+        });
+        Assert.assertTrue(server.read() instanceof CloseMessage);
+        peer.join();
+        server.close();
+        assertBudget("ping auto-reply", perMessage, 320);
+    }
+
+    /// 大消息的聚合: 8 MB 的消息分为 8 个 1 MB 的分片.
+    ///
+    /// 分配量包括: 从 ByteInput 读取时的数组 (1 倍, 之前的分片直接保存这些数组, 不再复制到中间缓冲区) + 最终的消息数组 (1 倍).
+    /// 再经过一次中间缓冲区 (例如分块或可增长的数组) 会多分配接近 1 倍, 超出预算.
+    @Test
+    public static void test5() throws Exception {
+        var endpoints = PipeByteEndpoint.pair();
+        var payload = new byte[8 * 1024 * 1024];
+        var warmup = 10;
+        var iterations = 10;
+        var peer = Thread.ofPlatform().start(() -> {
+            try {
+                var client = ScxWebSocket.of(endpoints[0], true, new ScxWebSocketOptions().fragmentSize(1024 * 1024));
+                for (int i = 0; i < warmup + iterations; i = i + 1) {
+                    try (var out = client.sendBinaryStream()) {
+                        out.write(payload);
+                    }
+                }
+                client.sendClose();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        var server = ScxWebSocket.of(endpoints[1], false, new ScxWebSocketOptions().maxMessageSize(16 * 1024 * 1024));
+        var perMessage = measure(warmup, iterations, () -> {
+            if (((BinaryMessage) server.read()).binary().length != payload.length) {
+                throw new AssertionError();
+            }
+        });
+        Assert.assertTrue(server.read() instanceof CloseMessage);
+        peer.join();
+        server.close();
+        assertBudget("large message aggregation", perMessage, 2L * payload.length + 64 * 1024);
+    }
+
+    static long measure(Operation operation) throws Exception {
+        return measure(WARMUP, ITERATIONS, operation);
+    }
+
+    /// 预热后测量每次操作在当前线程上分配的平均字节数.
+    static long measure(int warmup, int iterations, Operation operation) throws Exception {
+        var threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        for (int i = 0; i < warmup; i = i + 1) {
+            operation.run();
+        }
+        var before = threadMXBean.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < iterations; i = i + 1) {
+            operation.run();
+        }
+        var after = threadMXBean.getCurrentThreadAllocatedBytes();
+        return (after - before) / iterations;
+    }
+
+    static void assertBudget(String name, long perMessage, long budget) {
+        Assert.assertTrue(perMessage <= budget, name + " allocates " + perMessage + " bytes/message, budget is " + budget);
+    }
+
+    interface Operation {
+
+        void run() throws Exception;
+
+    }
+
+}
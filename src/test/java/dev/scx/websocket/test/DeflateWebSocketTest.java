@@ -0,0 +1,250 @@
+package dev.scx.websocket.test;
+
+import dev.scx.websocket.*;
+import dev.scx.websocket.exception.WebSocketIOException;
+import dev.scx.websocket.exception.WebSocketInvalidStateException;
+import dev.scx.websocket.exception.WebSocketProtocolException;
+import dev.scx.websocket.endpoint.PipeByteEndpoint;
+import dev.scx.websocket.frame.ScxFrameWebSocket;
+import dev.scx.websocket.frame.ScxFrameWebSocketOptions;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+
+import static dev.scx.websocket.test.FrameWebSocketTest.TestSocketEndpoint;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+public class DeflateWebSocketTest {
+
+    public static void main(String[] args) throws IOException, WebSocketIOException, WebSocketProtocolException, InterruptedException {
+        test1();
+        test2();
+        test3();
+        test4();
+        test5();
+    }
+
+    @Test
+    public static void test1() throws IOException {
+        // 模拟握手阶段的协商
+        var offer = new PerMessageDeflateParams(false, true, 15, 15).toHeaderValue();
+        var serverParams = PerMessageDeflateParams.negotiate(offer);
+        var clientParams = PerMessageDeflateParams.parseResponse(serverParams.toHeaderValue());
+        Assert.assertEquals(clientParams, serverParams);
+
+        startServer(serverParams);
+        startClient(clientParams);
+    }
+
+    @Test
+    public static void test2() {
+        // 服务端无法满足更小的压缩窗口, 应拒绝该 offer, 并选择下一个.
+        var params = PerMessageDeflateParams.negotiate("permessage-deflate; server_max_window_bits=10, permessage-deflate; client_max_window_bits");
+        Assert.assertEquals(params, PerMessageDeflateParams.DEFAULT);
+        // 非法参数的 offer 应被忽略.
+        Assert.assertNull(PerMessageDeflateParams.negotiate("permessage-deflate; foo=1"));
+    }
+
+    /// 压缩上下文接管时, 异步发送, 同步发送和流式发送混合使用, 写出顺序必须和压缩顺序一致, 分片不能交错.
+    @Test
+    public static void test3() throws InterruptedException {
+        var endpoints = PipeByteEndpoint.pair();
+        var params = PerMessageDeflateParams.DEFAULT;
+        var options = new ScxWebSocketOptions().perMessageDeflate(params).fragmentSize(1024);
+        // 很小的队列, BLOCK 策略下入队会频繁阻塞.
+        var frameOptions = new ScxFrameWebSocketOptions().rsv1Allowed(true).sendQueueCapacity(2);
+        var server = ScxWebSocket.of(ScxFrameWebSocket.of(endpoints[1], false, frameOptions), options);
+        var count = 500;
+        var asyncProducer = Thread.ofPlatform().start(() -> {
+            for (int i = 0; i < count; i = i + 1) {
+                server.sendAsync(new TextMessage("a:" + i));
+                if (i % 50 == 0) {
+                    // 必须排在之前的异步消息之后.
+                    server.send("a:sync:" + i);
+                }
+            }
+        });
+        var syncProducer = Thread.ofPlatform().start(() -> {
+            try {
+                for (int i = 0; i < count; i = i + 1) {
+                    if (i % 10 == 0) {
+                        try (var out = server.sendBinaryStream()) {
+                            out.write(("b:" + i + ":").repeat(500).getBytes(UTF_8));
+                        }
+                    } else {
+                        server.send("b:" + i);
+                    }
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        var client = ScxWebSocket.of(endpoints[0], true, options);
+        var a = new ArrayList<String>();
+        var b = new ArrayList<String>();
+        var total = count + count / 50 + count;
+        for (int i = 0; i < total; i = i + 1) {
+            switch (client.read()) {
+                case TextMessage t when t.text().startsWith("a:") -> a.add(t.text());
+                case TextMessage t -> b.add(t.text());
+                case BinaryMessage m -> b.add(new String(m.binary(), UTF_8));
+                default -> Assert.fail("unexpected message");
+            }
+        }
+        asyncProducer.join();
+        syncProducer.join();
+
+        var expectedA = new ArrayList<String>();
+        var expectedB = new ArrayList<String>();
+        for (int i = 0; i < count; i = i + 1) {
+            expectedA.add("a:" + i);
+            if (i % 50 == 0) {
+                expectedA.add("a:sync:" + i);
+            }
+            expectedB.add(i % 10 == 0 ? ("b:" + i + ":").repeat(500) : "b:" + i);
+        }
+        Assert.assertEquals(a, expectedA);
+        Assert.assertEquals(b, expectedB);
+        server.close();
+        client.close();
+    }
+
+    /// 空消息 (上下文接管时压缩器没有输出), 以及流式发送 flush 之后直接结束.
+    @Test
+    public static void test4() throws IOException {
+        var endpoints = PipeByteEndpoint.pair();
+        var options = new ScxWebSocketOptions().perMessageDeflate(PerMessageDeflateParams.DEFAULT);
+        var server = ScxWebSocket.of(endpoints[1], false, options);
+        var client = ScxWebSocket.of(endpoints[0], true, options);
+        for (int i = 0; i < 3; i = i + 1) {
+            server.send("Deflate 测试文本" + i);
+            server.send("");
+            server.send(new byte[0]);
+            try (var out = server.sendBinaryStream()) {
+                out.write(("Deflate 测试文本" + i).getBytes(UTF_8));
+                out.flush();
+            }
+            try (var _ = server.sendBinaryStream()) {
+                // 空的流
+            }
+        }
+        server.send("end");
+        for (int i = 0; i < 3; i = i + 1) {
+            Assert.assertEquals(((TextMessage) client.read()).text(), "Deflate 测试文本" + i);
+            Assert.assertEquals(((TextMessage) client.read()).text(), "");
+            Assert.assertEquals(((BinaryMessage) client.read()).binary().length, 0);
+            // 流式读取同样需要能处理.
+            var stream = client.readStream();
+            Assert.assertEquals(new String(stream.payload().readAllBytes(), UTF_8), "Deflate 测试文本" + i);
+            Assert.assertEquals(client.readStream().payload().readAllBytes().length, 0);
+        }
+        Assert.assertEquals(((TextMessage) client.read()).text(), "end");
+        server.close();
+        client.close();
+    }
+
+    /// 解压后的大小受 maxMessageSize 约束 (压缩炸弹).
+    @Test
+    public static void test5() throws IOException {
+        Assert.assertEquals(readZipBomb(false), 1009);
+        // 流式读取同样受约束.
+        Assert.assertEquals(readZipBomb(true), 1009);
+    }
+
+    /// 对端发送 16 MB 的 0 (压缩后只有十几 KB), 返回读取时的关闭码. 超出限制后压缩上下文已经无法继续使用, 因此每次使用新的连接.
+    static int readZipBomb(boolean stream) throws IOException {
+        var endpoints = PipeByteEndpoint.pair();
+        var params = PerMessageDeflateParams.DEFAULT;
+        var server = ScxWebSocket.of(endpoints[1], false, new ScxWebSocketOptions().perMessageDeflate(params).maxMessageSize(1024 * 1024));
+        var client = ScxWebSocket.of(endpoints[0], true, new ScxWebSocketOptions().perMessageDeflate(params));
+        var sender = Thread.ofPlatform().start(() -> {
+            try {
+                client.send(new byte[16 * 1024 * 1024]);
+            } catch (WebSocketIOException _) {
+                // 服务端已关闭.
+            }
+        });
+        try {
+            if (stream) {
+                server.readStream().payload().readAllBytes();
+            } else {
+                server.read();
+            }
+            Assert.fail("expected TOO_BIG");
+            return 0;
+        } catch (WebSocketProtocolException e) {
+            return e.closeCode();
+        } finally {
+            server.close();
+            client.close();
+            try {
+                sender.join();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    static void startServer(PerMessageDeflateParams params) throws IOException {
+        var serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(8883));
+        Thread.ofPlatform().start(() -> {
+            try {
+                var socket = serverSocket.accept();
+
+                var options = new ScxWebSocketOptions().perMessageDeflate(params);
+                var scxWebSocket = ScxWebSocket.of(new TestSocketEndpoint(socket), false, options);
+
+                for (int i = 0; i < 1000; i = i + 1) {
+                    scxWebSocket.send("{\"message\":\"Deflate 测试文本\",\"index\":" + i + "}");
+                }
+
+                scxWebSocket.send(new byte[1024 * 1024]);
+
+                scxWebSocket.sendClose();
+
+            } catch (IOException | WebSocketIOException | WebSocketProtocolException |
+                     WebSocketInvalidStateException e) {
+                throw new RuntimeException(e);
+            }
+
+        });
+    }
+
+    static void startClient(PerMessageDeflateParams params) throws IOException, WebSocketIOException, WebSocketProtocolException {
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(8883));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        var options = new ScxWebSocketOptions().perMessageDeflate(params);
+        var scxWebSocket = ScxWebSocket.of(new TestSocketEndpoint(socket), true, options);
+
+        int i = 0;
+        while (true) {
+            var webSocketMessage = scxWebSocket.read();
+            if (webSocketMessage instanceof CloseMessage) {
+                System.out.println("close 了");
+                break;
+            }
+            if (webSocketMessage instanceof TextMessage textMessage) {
+                Assert.assertEquals(textMessage.text(), "{\"message\":\"Deflate 测试文本\",\"index\":" + i + "}");
+                i = i + 1;
+            }
+            if (webSocketMessage instanceof BinaryMessage binaryMessage) {
+                Assert.assertEquals(binaryMessage.binary().length, 1024 * 1024);
+            }
+        }
+        Assert.assertEquals(i, 1000);
+
+    }
+
+}
@@ -1,22 +1,61 @@
 package dev.scx.websocket.test;
 
+import dev.scx.websocket.BinaryMessage;
+import dev.scx.websocket.CloseMessage;
+import dev.scx.websocket.PongMessage;
 import dev.scx.websocket.ScxWebSocket;
+import dev.scx.websocket.ScxWebSocketOptions;
+import dev.scx.websocket.TextMessage;
+import dev.scx.websocket.WebSocketCloseInfo;
+import dev.scx.websocket.endpoint.PipeByteEndpoint;
 import dev.scx.websocket.event.ScxEventWebSocket;
+import dev.scx.websocket.event.ScxEventWebSocketEngine;
+import dev.scx.websocket.event.ScxEventWebSocketOptions;
 import dev.scx.websocket.exception.WebSocketIOException;
 import dev.scx.websocket.exception.WebSocketInvalidStateException;
 import dev.scx.websocket.exception.WebSocketProtocolException;
+import dev.scx.websocket.frame.ScxFrameWebSocket;
+import dev.scx.websocket.frame.WebSocketFrame;
+import dev.scx.websocket.frame.WebSocketOpCode;
 import dev.scx.websocket.test.FrameWebSocketTest.TestSocketEndpoint;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordingFile;
+import org.testng.Assert;
 import org.testng.annotations.Test;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static dev.scx.websocket.WebSocketCloseInfo.TOO_BIG;
 
 public class EventWebSocketTest {
 
-    public static void main(String[] args) throws IOException, WebSocketIOException, WebSocketProtocolException {
+    public static void main(String[] args) throws IOException, WebSocketIOException, WebSocketProtocolException, InterruptedException {
         test1();
+        test2();
+        test3();
+        test4();
+        test5();
+        test6();
+        test7();
+        test8();
+        test9();
     }
 
     @Test
@@ -25,6 +64,372 @@ public class EventWebSocketTest {
         startClient();
     }
 
+    @Test
+    public static void test2() throws IOException, InterruptedException {
+        var engine = new ScxEventWebSocketEngine(2);
+        var serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(8892));
+        var closed = new CountDownLatch(50);
+        Thread.ofPlatform().start(() -> {
+            try {
+                for (int i = 0; i < 50; i = i + 1) {
+                    var eventWebSocket = engine.register(serverChannel.accept(), false);
+                    // 原样回显
+                    eventWebSocket.onText(eventWebSocket::send)
+                        .onBinary(eventWebSocket::send)
+                        .onClose(c -> closed.countDown());
+                    eventWebSocket.start();
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        var clients = new ArrayList<Thread>();
+        for (int i = 0; i < 50; i = i + 1) {
+            var socket = new Socket();
+            socket.connect(new InetSocketAddress(8892));
+            clients.add(Thread.ofVirtual().start(() -> {
+                try {
+                    var scxWebSocket = ScxWebSocket.of(new TestSocketEndpoint(socket), true);
+                    for (int j = 0; j < 20; j = j + 1) {
+                        scxWebSocket.send("Engine 测试文本" + j);
+                        Assert.assertEquals(((TextMessage) scxWebSocket.read()).text(), "Engine 测试文本" + j);
+                    }
+                    // 跨越多次读取的大消息.
+                    var binary = new byte[300 * 1024];
+                    Arrays.fill(binary, (byte) 7);
+                    scxWebSocket.send(binary);
+                    Assert.assertEquals(((BinaryMessage) scxWebSocket.read()).binary(), binary);
+                    scxWebSocket.sendClose();
+                    Assert.assertTrue(scxWebSocket.read() instanceof CloseMessage);
+                    socket.close();
+                } catch (IOException | WebSocketIOException | WebSocketProtocolException |
+                         WebSocketInvalidStateException e) {
+                    throw new RuntimeException(e);
+                }
+            }));
+        }
+        for (var client : clients) {
+            client.join();
+        }
+        Assert.assertTrue(closed.await(10, TimeUnit.SECONDS));
+        engine.close();
+    }
+
+    @Test
+    public static void test3() throws IOException, InterruptedException {
+        var serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(8893));
+        var pool = Executors.newFixedThreadPool(8);
+        var received = Collections.synchronizedList(new ArrayList<String>());
+        var closed = new CountDownLatch(1);
+        Thread.ofPlatform().start(() -> {
+            try {
+                var socket = serverSocket.accept();
+                var scxWebSocket = ScxWebSocket.of(new TestSocketEndpoint(socket), false);
+                var options = new ScxEventWebSocketOptions().callbackExecutor(pool);
+                var scxEventWebSocket = ScxEventWebSocket.of(scxWebSocket, options);
+                scxEventWebSocket.onText(received::add).onClose(c -> {
+                    received.add("close");
+                    closed.countDown();
+                });
+                scxEventWebSocket.start();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        var socket = new Socket();
+        socket.connect(new InetSocketAddress(8893));
+        var scxWebSocket = ScxWebSocket.of(new TestSocketEndpoint(socket), true);
+        var expected = new ArrayList<String>();
+        for (int i = 0; i < 2000; i = i + 1) {
+            scxWebSocket.send("Ordered " + i);
+            expected.add("Ordered " + i);
+        }
+        scxWebSocket.sendClose();
+        expected.add("close");
+
+        Assert.assertTrue(closed.await(10, TimeUnit.SECONDS));
+        // 多线程的 executor 上, 回调依然按照消息顺序执行, onClose 最后执行.
+        Assert.assertEquals(received, expected);
+        socket.close();
+        pool.shutdown();
+    }
+
+    @Test
+    public static void test4() throws IOException, InterruptedException {
+        var recording = new Recording();
+        for (var name : new String[]{"dev.scx.websocket.FrameRead", "dev.scx.websocket.FrameWrite", "dev.scx.websocket.MessageAggregate", "dev.scx.websocket.Callback"}) {
+            recording.enable(name).withThreshold(Duration.ZERO);
+        }
+        recording.start();
+
+        var serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(8897));
+        var closed = new CountDownLatch(1);
+        Thread.ofPlatform().start(() -> {
+            try {
+                var scxWebSocket = ScxWebSocket.of(new TestSocketEndpoint(serverSocket.accept()), false);
+                var scxEventWebSocket = ScxEventWebSocket.of(scxWebSocket);
+                scxEventWebSocket.onText(t -> {}).onBinary(b -> {}).onClose(c -> closed.countDown());
+                scxEventWebSocket.start();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        var socket = new Socket();
+        socket.connect(new InetSocketAddress(8897));
+        var scxWebSocket = ScxWebSocket.of(new TestSocketEndpoint(socket), true, new ScxWebSocketOptions().fragmentSize(10));
+        scxWebSocket.send("JFR 测试文本");
+        try (var out = scxWebSocket.sendBinaryStream()) {
+            out.write(new byte[25]);
+        }
+        scxWebSocket.sendClose();
+        Assert.assertTrue(closed.await(5, TimeUnit.SECONDS));
+        socket.close();
+
+        recording.stop();
+        var file = Files.createTempFile("scx-websocket", ".jfr");
+        recording.dump(file);
+        recording.close();
+        var counts = new HashMap<String, Integer>();
+        for (var event : RecordingFile.readAllEvents(file)) {
+            counts.merge(event.getEventType().getName(), 1, Integer::sum);
+        }
+        Files.delete(file);
+        // 客户端写 5 帧, 服务端读 5 帧 (并回复 Close).
+        Assert.assertTrue(counts.getOrDefault("dev.scx.websocket.FrameWrite", 0) >= 5);
+        Assert.assertTrue(counts.getOrDefault("dev.scx.websocket.FrameRead", 0) >= 5);
+        Assert.assertEquals((int) counts.getOrDefault("dev.scx.websocket.MessageAggregate", 0), 1);
+        Assert.assertEquals((int) counts.getOrDefault("dev.scx.websocket.Callback", 0), 3);
+    }
+
+    @Test
+    public static void test5() throws IOException, InterruptedException, WebSocketIOException, WebSocketProtocolException {
+        var engine = new ScxEventWebSocketEngine(1);
+        var serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(8899));
+        var closeInfo = new CompletableFuture<WebSocketCloseInfo>();
+        Thread.ofPlatform().start(() -> {
+            try {
+                var options = new ScxWebSocketOptions().maxMessageSize(64 * 1024);
+                var eventWebSocket = engine.register(serverChannel.accept(), false, options);
+                eventWebSocket.onClose(closeInfo::complete);
+                eventWebSocket.start();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        var socket = new Socket();
+        socket.connect(new InetSocketAddress(8899));
+        var scxFrameWebSocket = ScxFrameWebSocket.of(new TestSocketEndpoint(socket), true);
+        // 永远不结束的消息, 未结束的分片超过 maxMessageSize 时应立即以 1009 关闭.
+        scxFrameWebSocket.sendFrame(new WebSocketFrame(WebSocketOpCode.BINARY, new byte[4096], false));
+        try {
+            for (int i = 0; i < 1000; i = i + 1) {
+                scxFrameWebSocket.sendFrame(new WebSocketFrame(WebSocketOpCode.CONTINUATION, new byte[4096], false));
+            }
+        } catch (WebSocketIOException _) {
+            // 服务端已关闭连接.
+        }
+        Assert.assertEquals(closeInfo.join().code(), TOO_BIG.code());
+        socket.close();
+        serverChannel.close();
+        engine.close();
+    }
+
+    /// 对端不读取时, 事件循环线程中的写出不应阻塞同一事件循环中的其他连接.
+    @Test
+    public static void test6() throws IOException, InterruptedException, WebSocketIOException, WebSocketProtocolException {
+        var engine = new ScxEventWebSocketEngine(1);
+        var serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(8900));
+        var big = new byte[3 * 1024 * 1024];
+        Arrays.fill(big, (byte) 9);
+        Thread.ofPlatform().start(() -> {
+            try {
+                for (int i = 0; i < 2; i = i + 1) {
+                    var eventWebSocket = engine.register(serverChannel.accept(), false);
+                    // 回调直接在事件循环线程中执行.
+                    eventWebSocket.onText(text -> {
+                        if (text.equals("big")) {
+                            eventWebSocket.send(big);
+                        } else {
+                            eventWebSocket.send(text);
+                        }
+                    });
+                    eventWebSocket.start();
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        var slowSocket = new Socket();
+        slowSocket.setReceiveBufferSize(4096);
+        slowSocket.connect(new InetSocketAddress(8900));
+        var slow = ScxWebSocket.of(new TestSocketEndpoint(slowSocket), true);
+        var socket = new Socket();
+        socket.connect(new InetSocketAddress(8900));
+        var fast = ScxWebSocket.of(new TestSocketEndpoint(socket), true);
+
+        // 慢的连接请求一条大消息, 但暂不读取.
+        slow.send("big");
+        Thread.sleep(200);
+        for (int i = 0; i < 100; i = i + 1) {
+            fast.send("Engine 测试文本" + i);
+            Assert.assertEquals(((TextMessage) fast.read()).text(), "Engine 测试文本" + i);
+        }
+        // 排队的数据最终依然完整送达.
+        Assert.assertEquals(((BinaryMessage) slow.read()).binary(), big);
+
+        slowSocket.close();
+        socket.close();
+        serverChannel.close();
+        engine.close();
+    }
+
+    @Test
+    public static void test7() throws InterruptedException, WebSocketIOException, WebSocketProtocolException {
+        var endpoints = PipeByteEndpoint.pair();
+        var pool = Executors.newFixedThreadPool(2);
+        var received = Collections.synchronizedList(new ArrayList<String>());
+        var closed = new CountDownLatch(1);
+        var options = new ScxEventWebSocketOptions().callbackExecutor(pool);
+        var scxEventWebSocket = ScxEventWebSocket.of(ScxWebSocket.of(endpoints[1], false), options);
+        scxEventWebSocket.onText(text -> {
+            // 回调抛出 Error (而不是 Exception), 之后的回调依然需要执行.
+            if (text.equals("error")) {
+                throw new AssertionError("expected error from callback");
+            }
+            received.add(text);
+        }).onClose(c -> {
+            received.add("close");
+            closed.countDown();
+        });
+        Thread.ofVirtual().start(scxEventWebSocket::start);
+
+        var scxWebSocket = ScxWebSocket.of(endpoints[0], true);
+        scxWebSocket.send("a");
+        scxWebSocket.send("error");
+        scxWebSocket.send("b");
+        scxWebSocket.sendClose();
+
+        Assert.assertTrue(closed.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(received, List.of("a", "b", "close"));
+        scxWebSocket.close();
+        pool.shutdown();
+    }
+
+    /// 发送方因为对端不读取而等待 (背压) 时, 对端发来的 Ping 依然需要由事件循环自动回复, 事件循环不能死锁.
+    @Test
+    public static void test8() throws IOException, InterruptedException, WebSocketIOException, WebSocketProtocolException {
+        var engine = new ScxEventWebSocketEngine(1);
+        var serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(8901));
+        var big = new byte[1024 * 1024];
+        Arrays.fill(big, (byte) 7);
+        var count = 16;
+        var sent = new AtomicInteger();
+        var done = new CompletableFuture<Void>();
+        Thread.ofPlatform().start(() -> {
+            try {
+                var eventWebSocket = engine.register(serverChannel.accept(), false);
+                eventWebSocket.start();
+                for (int i = 0; i < count; i = i + 1) {
+                    eventWebSocket.send(big);
+                    sent.incrementAndGet();
+                }
+                done.complete(null);
+            } catch (Exception e) {
+                done.completeExceptionally(e);
+            }
+        });
+
+        var socket = new Socket();
+        socket.setReceiveBufferSize(64 * 1024);
+        socket.connect(new InetSocketAddress(8901));
+        // 事件循环死锁时读取会一直等待.
+        socket.setSoTimeout(10_000);
+        var scxWebSocket = ScxWebSocket.of(new TestSocketEndpoint(socket), true);
+
+        // 暂不读取, 等待发送方被背压.
+        Thread.sleep(500);
+        Assert.assertTrue(sent.get() < count);
+        scxWebSocket.sendPing("ping".getBytes());
+
+        var binaries = 0;
+        var pongs = 0;
+        while (binaries < count || pongs < 1) {
+            switch (scxWebSocket.read()) {
+                case BinaryMessage binaryMessage -> {
+                    Assert.assertEquals(binaryMessage.binary(), big);
+                    binaries = binaries + 1;
+                }
+                case PongMessage pongMessage -> {
+                    Assert.assertEquals(pongMessage.data(), "ping".getBytes());
+                    pongs = pongs + 1;
+                }
+                default -> Assert.fail("unexpected message");
+            }
+        }
+        done.join();
+
+        socket.close();
+        serverChannel.close();
+        engine.close();
+    }
+
+    /// 事件循环线程排队的数据超过上限时, 连接被关闭, 对端只会收到完整的帧 (之后是 EOF), 而不是残缺的帧.
+    @Test
+    public static void test9() throws IOException, InterruptedException, WebSocketIOException, WebSocketProtocolException {
+        var engine = new ScxEventWebSocketEngine(1);
+        var serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(8902));
+        var big = new byte[3 * 1024 * 1024];
+        Arrays.fill(big, (byte) 5);
+        var closeInfo = new CompletableFuture<WebSocketCloseInfo>();
+        Thread.ofPlatform().start(() -> {
+            try {
+                var eventWebSocket = engine.register(serverChannel.accept(), false);
+                // 回调直接在事件循环线程中执行.
+                eventWebSocket.onText(text -> eventWebSocket.send(big));
+                eventWebSocket.onClose(closeInfo::complete);
+                eventWebSocket.start();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        var socket = new Socket();
+        socket.setReceiveBufferSize(64 * 1024);
+        socket.connect(new InetSocketAddress(8902));
+        socket.setSoTimeout(10_000);
+        var scxWebSocket = ScxWebSocket.of(new TestSocketEndpoint(socket), true);
+        // 请求多条大消息, 但暂不读取.
+        for (int i = 0; i < 4; i = i + 1) {
+            scxWebSocket.send("big");
+        }
+        Assert.assertEquals(closeInfo.orTimeout(10, TimeUnit.SECONDS).join(), WebSocketCloseInfo.CLOSED_ABNORMALLY);
+
+        // 已经写出的帧都是完整的, 之后是 EOF (而不是读取超时或协议错误).
+        try {
+            while (true) {
+                Assert.assertEquals(((BinaryMessage) scxWebSocket.read()).binary(), big);
+            }
+        } catch (WebSocketIOException e) {
+            Assert.assertFalse(e.getCause().getCause() instanceof SocketTimeoutException);
+        }
+
+        socket.close();
+        serverChannel.close();
+        engine.close();
+    }
+
     static void startServer() throws IOException {
         var serverSocket = new ServerSocket();
         serverSocket.bind(new InetSocketAddress(8880));
@@ -4,24 +4,49 @@ import dev.scx.io.ByteInput;
 import dev.scx.io.ByteOutput;
 import dev.scx.io.ScxIO;
 import dev.scx.io.endpoint.ByteEndpoint;
+import dev.scx.websocket.buffer.WebSocketBufferPool;
+import dev.scx.websocket.endpoint.PipeByteEndpoint;
+import dev.scx.websocket.endpoint.SocketChannelByteEndpoint;
+import dev.scx.websocket.endpoint.SocketChannelByteEndpointOptions;
 import dev.scx.websocket.exception.WebSocketIOException;
 import dev.scx.websocket.exception.WebSocketProtocolException;
 import dev.scx.websocket.frame.ScxFrameWebSocket;
+import dev.scx.websocket.frame.ScxFrameWebSocketOptions;
 import dev.scx.websocket.frame.WebSocketFrame;
+import dev.scx.websocket.frame.WebSocketFrameDecoder;
 import dev.scx.websocket.frame.WebSocketOpCode;
+import org.testng.Assert;
 import org.testng.annotations.Test;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
 import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import static dev.scx.websocket.frame.WebSocketOpCode.CLOSE;
 
 public class FrameWebSocketTest {
 
-    public static void main(String[] args) throws IOException, WebSocketIOException, WebSocketProtocolException {
+    public static void main(String[] args) throws IOException, WebSocketIOException, WebSocketProtocolException, InterruptedException {
         test1();
+        test2();
+        test3();
+        test4();
+        test5();
+        test6();
+        test7();
     }
 
     @Test
@@ -30,6 +55,217 @@ public class FrameWebSocketTest {
         startClient();
     }
 
+    @Test
+    public static void test2() throws IOException, WebSocketIOException, WebSocketProtocolException {
+        var pool = new WebSocketBufferPool(4, true);
+        var serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(8886));
+        Thread.ofPlatform().start(() -> {
+            try {
+                var socket = serverSocket.accept();
+                var scxFrameWebSocket = ScxFrameWebSocket.of(new TestSocketEndpoint(socket), false, new ScxFrameWebSocketOptions().bufferPool(pool));
+                while (true) {
+                    try (var frame = scxFrameWebSocket.readPooledFrame()) {
+                        if (frame.opCode() == CLOSE) {
+                            break;
+                        }
+                        // 原样回显
+                        scxFrameWebSocket.sendFrame(frame.toFrame());
+                    }
+                }
+            } catch (IOException | WebSocketIOException | WebSocketProtocolException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        var socket = new Socket();
+        socket.connect(new InetSocketAddress(8886));
+        var scxFrameWebSocket = ScxFrameWebSocket.of(new TestSocketEndpoint(socket), true);
+        for (int i = 0; i < 100; i = i + 1) {
+            var payload = ("Pooled 测试文本" + i).repeat(i + 1).getBytes();
+            scxFrameWebSocket.sendFrame(new WebSocketFrame(WebSocketOpCode.BINARY, payload, true));
+            var echo = scxFrameWebSocket.readFrame();
+            Assert.assertEquals(echo.payloadData(), payload);
+        }
+        // 覆盖 payload 分多块读取的情况.
+        for (var size : new int[]{8191, 8192, 8193, 70000}) {
+            var payload = new byte[size];
+            for (int i = 0; i < size; i = i + 1) {
+                payload[i] = (byte) (i * 31);
+            }
+            scxFrameWebSocket.sendFrame(new WebSocketFrame(WebSocketOpCode.BINARY, payload, true));
+            Assert.assertEquals(scxFrameWebSocket.readFrame().payloadData(), payload);
+        }
+        scxFrameWebSocket.sendFrame(new WebSocketFrame(CLOSE, new byte[0], true));
+        socket.close();
+    }
+
+    @Test
+    public static void test3() throws IOException, WebSocketIOException, WebSocketProtocolException {
+        var serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(8891));
+        var endpointOptions = new SocketChannelByteEndpointOptions().writeBufferSize(4096);
+        Thread.ofPlatform().start(() -> {
+            try {
+                var scxFrameWebSocket = ScxFrameWebSocket.of(new SocketChannelByteEndpoint(serverChannel.accept(), endpointOptions), false);
+                while (true) {
+                    var frame = scxFrameWebSocket.readFrame();
+                    if (frame.opCode() == CLOSE) {
+                        break;
+                    }
+                    // 原样回显
+                    scxFrameWebSocket.sendFrame(frame);
+                }
+            } catch (IOException | WebSocketIOException | WebSocketProtocolException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        var scxFrameWebSocket = ScxFrameWebSocket.of(new SocketChannelByteEndpoint(SocketChannel.open(new InetSocketAddress(8891)), endpointOptions), true);
+        // 覆盖 小于缓冲区 / 大于缓冲区 (分段写出) 的情况.
+        for (var size : new int[]{0, 10, 125, 4000, 4096, 70000, 1024 * 1024}) {
+            var payload = new byte[size];
+            for (int i = 0; i < size; i = i + 1) {
+                payload[i] = (byte) (i * 31);
+            }
+            scxFrameWebSocket.sendFrame(new WebSocketFrame(WebSocketOpCode.BINARY, payload, true));
+            Assert.assertEquals(scxFrameWebSocket.readFrame().payloadData(), payload);
+        }
+        scxFrameWebSocket.sendFrame(new WebSocketFrame(CLOSE, new byte[0], true));
+        scxFrameWebSocket.close();
+    }
+
+    @Test
+    public static void test4() throws IOException, InterruptedException {
+        var serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(8895));
+        // 两个连接都不读取数据.
+        var socket1 = new Socket();
+        socket1.connect(new InetSocketAddress(8895));
+        var socket2 = new Socket();
+        socket2.connect(new InetSocketAddress(8895));
+
+        // 1, 写超时: 阻塞的写操作在超时后以 WebSocketIOException 结束.
+        var options1 = new ScxFrameWebSocketOptions().writeTimeout(Duration.ofMillis(300));
+        var scxFrameWebSocket1 = ScxFrameWebSocket.of(new TestSocketEndpoint(serverSocket.accept()), false, options1);
+        var start = System.nanoTime();
+        var e1 = Assert.expectThrows(WebSocketIOException.class, () -> {
+            while (true) {
+                scxFrameWebSocket1.sendFrame(new WebSocketFrame(WebSocketOpCode.BINARY, new byte[1024 * 1024], true));
+            }
+        });
+        Assert.assertTrue(e1.getCause() instanceof SocketTimeoutException);
+        Assert.assertTrue(System.nanoTime() - start < 5_000_000_000L);
+        // 连接已被中止, 对端会读到 EOF.
+        socket1.getInputStream().transferTo(OutputStream.nullOutputStream());
+
+        // 2, 慢消费者: 等待写出的字节数超过上限时失败, 并驱逐连接.
+        var options2 = new ScxFrameWebSocketOptions().maxPendingBytes(256 * 1024);
+        var scxFrameWebSocket2 = ScxFrameWebSocket.of(new TestSocketEndpoint(serverSocket.accept()), false, options2);
+        var futures = new ArrayList<CompletableFuture<Boolean>>();
+        for (int i = 0; i < 200; i = i + 1) {
+            futures.add(scxFrameWebSocket2.sendFrameAsync(new WebSocketFrame(WebSocketOpCode.BINARY, new byte[64 * 1024], true)));
+        }
+        var failed = 0;
+        for (var future : futures) {
+            try {
+                future.join();
+            } catch (CompletionException e) {
+                Assert.assertTrue(e.getCause() instanceof WebSocketIOException);
+                failed = failed + 1;
+            }
+        }
+        Assert.assertTrue(failed > 0);
+        socket2.getInputStream().transferTo(OutputStream.nullOutputStream());
+        socket1.close();
+        socket2.close();
+        serverSocket.close();
+    }
+
+    @Test
+    public static void test5() throws InterruptedException, WebSocketIOException, WebSocketProtocolException {
+        // 很小的缓冲区, 大帧只能在对端读取的同时分多次写入.
+        var endpoints = PipeByteEndpoint.pair(1024);
+        var server = Thread.ofPlatform().start(() -> {
+            var scxFrameWebSocket = ScxFrameWebSocket.of(endpoints[1], false);
+            try {
+                while (true) {
+                    var frame = scxFrameWebSocket.readFrame();
+                    scxFrameWebSocket.sendFrame(frame);
+                    if (frame.opCode() == CLOSE) {
+                        break;
+                    }
+                }
+            } catch (WebSocketIOException | WebSocketProtocolException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        var scxFrameWebSocket = ScxFrameWebSocket.of(endpoints[0], true);
+        for (int i = 0; i < 1000; i = i + 1) {
+            var text = ("Pipe 测试文本" + i).getBytes();
+            scxFrameWebSocket.sendFrame(new WebSocketFrame(WebSocketOpCode.TEXT, text, true));
+            Assert.assertEquals(scxFrameWebSocket.readFrame().payloadData(), text);
+        }
+        var payload = new byte[256 * 1024];
+        Arrays.fill(payload, (byte) 3);
+        scxFrameWebSocket.sendFrame(new WebSocketFrame(WebSocketOpCode.BINARY, payload, true));
+        Assert.assertEquals(scxFrameWebSocket.readFrame().payloadData(), payload);
+
+        scxFrameWebSocket.sendFrame(new WebSocketFrame(CLOSE, new byte[0], true));
+        Assert.assertEquals(scxFrameWebSocket.readFrame().opCode(), CLOSE);
+        server.join();
+
+        // 关闭一端后, 另一端读到末尾.
+        endpoints[1].close();
+        Assert.expectThrows(WebSocketIOException.class, scxFrameWebSocket::readFrame);
+        scxFrameWebSocket.close();
+    }
+
+    @Test
+    public static void test6() throws WebSocketProtocolException {
+        var threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        var decoder = new WebSocketFrameDecoder(false, new ScxFrameWebSocketOptions().maxWebSocketFrameSize(16 * 1024 * 1024));
+        // 声明 16 MB 的 payload, 但只发送帧头 (含掩码).
+        var header = ByteBuffer.allocate(14);
+        header.put((byte) 0b1000_0010).put((byte) (0b1000_0000 | 127)).putLong(16 * 1024 * 1024).putInt(0x01020304).flip();
+        var before = threadMXBean.getCurrentThreadAllocatedBytes();
+        Assert.assertNull(decoder.decode(header));
+        Assert.assertTrue(threadMXBean.getCurrentThreadAllocatedBytes() - before < 1024 * 1024);
+
+        // 分多次到达的 payload 依然被完整解码.
+        var decoder2 = new WebSocketFrameDecoder(true);
+        var payload = new byte[100_000];
+        for (int i = 0; i < payload.length; i = i + 1) {
+            payload[i] = (byte) i;
+        }
+        var wire = ByteBuffer.allocate(10 + payload.length);
+        wire.put((byte) 0b1000_0010).put((byte) 127).putLong(payload.length).put(payload).flip();
+        WebSocketFrame frame = null;
+        while (wire.hasRemaining()) {
+            var chunk = wire.slice(wire.position(), Math.min(777, wire.remaining()));
+            wire.position(wire.position() + chunk.remaining());
+            var f = decoder2.decode(chunk);
+            if (f != null) {
+                frame = f;
+            }
+        }
+        Assert.assertNotNull(frame);
+        Assert.assertEquals(frame.payloadData(), payload);
+    }
+
+    @Test
+    public static void test7() throws InterruptedException {
+        var endpoints = PipeByteEndpoint.pair();
+        // 配置了写超时的连接会注册到看门狗, 没有关闭就被丢弃时依然可以被回收.
+        var ref = new WeakReference<>(ScxFrameWebSocket.of(endpoints[0], true, new ScxFrameWebSocketOptions().writeTimeout(Duration.ofSeconds(5))));
+        for (int i = 0; i < 100 && ref.get() != null; i = i + 1) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        Assert.assertNull(ref.get());
+    }
+
     static void startServer() throws IOException {
         var serverSocket = new ServerSocket();
         serverSocket.bind(new InetSocketAddress(8881));
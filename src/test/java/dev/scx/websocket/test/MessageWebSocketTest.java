@@ -1,24 +1,66 @@
 package dev.scx.websocket.test;
 
+import dev.scx.websocket.BinaryMessage;
 import dev.scx.websocket.CloseMessage;
+import dev.scx.websocket.PingMessage;
+import dev.scx.websocket.PongMessage;
+import dev.scx.websocket.PreparedMessage;
 import dev.scx.websocket.ScxWebSocket;
+import dev.scx.websocket.ScxWebSocketOptions;
 import dev.scx.websocket.TextMessage;
+import dev.scx.websocket.WebSocketBroadcast;
+import dev.scx.websocket.WebSocketCloseInfo;
+import dev.scx.websocket.WebSocketKeepAlive;
+import dev.scx.websocket.WebSocketKeepAliveOptions;
+import dev.scx.websocket.WebSocketMessage;
+import dev.scx.websocket.WebSocketObserver;
+import dev.scx.websocket.endpoint.PipeByteEndpoint;
 import dev.scx.websocket.exception.WebSocketIOException;
 import dev.scx.websocket.exception.WebSocketInvalidStateException;
 import dev.scx.websocket.exception.WebSocketProtocolException;
+import dev.scx.websocket.frame.ScxFrameWebSocket;
+import dev.scx.websocket.frame.ScxFrameWebSocketOptions;
+import dev.scx.websocket.frame.WebSocketFrame;
+import dev.scx.websocket.frame.WebSocketOpCode;
+import dev.scx.websocket.metrics.WebSocketLatencyHistogram;
+import dev.scx.websocket.metrics.WebSocketMetrics;
+import org.testng.Assert;
 import org.testng.annotations.Test;
 
 import java.io.IOException;
+import java.lang.reflect.Proxy;
 import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
+import static dev.scx.websocket.WebSocketCloseInfo.NORMAL_CLOSE;
 import static dev.scx.websocket.test.FrameWebSocketTest.TestSocketEndpoint;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 public class MessageWebSocketTest {
 
-    public static void main(String[] args) throws IOException, WebSocketIOException, WebSocketProtocolException {
+    public static void main(String[] args) throws IOException, WebSocketIOException, WebSocketProtocolException, InterruptedException {
         test1();
+        test2();
+        test3();
+        test4();
+        test5();
+        test6();
+        test7();
+        test8();
+        test9();
+        test10();
+        test11();
+        test12();
+        test13();
     }
 
     @Test
@@ -27,6 +69,533 @@ public class MessageWebSocketTest {
         startClient();
     }
 
+    @Test
+    public static void test2() throws IOException, WebSocketIOException, WebSocketProtocolException {
+        var serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(8887));
+        Thread.ofPlatform().start(() -> {
+            try {
+                var socket = serverSocket.accept();
+                var scxWebSocket = ScxWebSocket.of(new TestSocketEndpoint(socket), false);
+                // 批量发送, 每批 50 条, 最后一批携带 close.
+                for (int i = 0; i < 20; i = i + 1) {
+                    var messages = new ArrayList<WebSocketMessage>();
+                    for (int j = 0; j < 50; j = j + 1) {
+                        messages.add(new TextMessage("Batch 测试文本" + (i * 50 + j)));
+                    }
+                    if (i == 19) {
+                        messages.add(new CloseMessage(NORMAL_CLOSE));
+                    }
+                    scxWebSocket.sendMessages(messages);
+                }
+                // close 之后不允许再发送数据消息.
+                Assert.assertThrows(WebSocketInvalidStateException.class, () -> scxWebSocket.sendMessages(List.of(new TextMessage("after close"))));
+            } catch (IOException | WebSocketIOException | WebSocketProtocolException |
+                     WebSocketInvalidStateException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        var socket = new Socket();
+        socket.connect(new InetSocketAddress(8887));
+        var scxWebSocket = ScxWebSocket.of(new TestSocketEndpoint(socket), true);
+        var count = 0;
+        while (true) {
+            var webSocketMessage = scxWebSocket.read();
+            if (webSocketMessage instanceof CloseMessage) {
+                break;
+            }
+            Assert.assertEquals(((TextMessage) webSocketMessage).text(), "Batch 测试文本" + count);
+            count = count + 1;
+        }
+        Assert.assertEquals(count, 1000);
+        socket.close();
+    }
+
+    @Test
+    public static void test3() throws IOException, WebSocketIOException, WebSocketProtocolException {
+        var serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(8888));
+        Thread.ofPlatform().start(() -> {
+            try {
+                var socket = serverSocket.accept();
+                var frameOptions = new ScxFrameWebSocketOptions().sendQueueCapacity(16);
+                var scxWebSocket = ScxWebSocket.of(ScxFrameWebSocket.of(new TestSocketEndpoint(socket), false, frameOptions));
+                // 多个生产者同时异步发送.
+                var threads = new ArrayList<Thread>();
+                for (int i = 0; i < 4; i = i + 1) {
+                    var producer = i;
+                    threads.add(Thread.ofVirtual().start(() -> {
+                        for (int j = 0; j < 250; j = j + 1) {
+                            scxWebSocket.sendAsync(new TextMessage(producer + ":" + j));
+                        }
+                    }));
+                }
+                for (var thread : threads) {
+                    thread.join();
+                }
+                scxWebSocket.sendAsync(new CloseMessage(NORMAL_CLOSE)).join();
+            } catch (IOException | InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        var socket = new Socket();
+        socket.connect(new InetSocketAddress(8888));
+        var scxWebSocket = ScxWebSocket.of(new TestSocketEndpoint(socket), true);
+        // 同一个生产者的消息必须保持顺序.
+        var next = new int[4];
+        while (true) {
+            var webSocketMessage = scxWebSocket.read();
+            if (webSocketMessage instanceof CloseMessage) {
+                break;
+            }
+            var parts = ((TextMessage) webSocketMessage).text().split(":");
+            var producer = Integer.parseInt(parts[0]);
+            Assert.assertEquals(Integer.parseInt(parts[1]), next[producer]);
+            next[producer] = next[producer] + 1;
+        }
+        Assert.assertEquals(next, new int[]{250, 250, 250, 250});
+        socket.close();
+    }
+
+    @Test
+    public static void test4() throws IOException, WebSocketIOException, WebSocketProtocolException, InterruptedException {
+        var serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(8889));
+        Thread.ofPlatform().start(() -> {
+            try {
+                var webSockets = new ArrayList<ScxWebSocket>();
+                for (int i = 0; i < 3; i = i + 1) {
+                    webSockets.add(ScxWebSocket.of(new TestSocketEndpoint(serverSocket.accept()), false));
+                }
+                // 预编码一次, 发送给所有连接.
+                for (int i = 0; i < 100; i = i + 1) {
+                    var count = WebSocketBroadcast.broadcast(webSockets, new TextMessage("Broadcast 测试文本" + i));
+                    Assert.assertEquals(count, 3);
+                }
+                WebSocketBroadcast.broadcast(webSockets, PreparedMessage.of(new CloseMessage(NORMAL_CLOSE)));
+            } catch (IOException | WebSocketProtocolException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        var clients = new ArrayList<Thread>();
+        var received = new int[3];
+        for (int i = 0; i < 3; i = i + 1) {
+            var index = i;
+            var socket = new Socket();
+            socket.connect(new InetSocketAddress(8889));
+            clients.add(Thread.ofPlatform().start(() -> {
+                try {
+                    var scxWebSocket = ScxWebSocket.of(new TestSocketEndpoint(socket), true);
+                    while (true) {
+                        var webSocketMessage = scxWebSocket.read();
+                        if (webSocketMessage instanceof CloseMessage) {
+                            break;
+                        }
+                        Assert.assertEquals(((TextMessage) webSocketMessage).text(), "Broadcast 测试文本" + received[index]);
+                        received[index] = received[index] + 1;
+                    }
+                    socket.close();
+                } catch (IOException | WebSocketIOException | WebSocketProtocolException e) {
+                    throw new RuntimeException(e);
+                }
+            }));
+        }
+        for (var client : clients) {
+            client.join();
+        }
+        Assert.assertEquals(received, new int[]{100, 100, 100});
+    }
+
+    @Test
+    public static void test5() throws IOException, WebSocketIOException, WebSocketProtocolException {
+        var serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(8890));
+        Thread.ofPlatform().start(() -> {
+            try {
+                var socket = serverSocket.accept();
+                var scxFrameWebSocket = ScxFrameWebSocket.of(new TestSocketEndpoint(socket), true);
+                // 一个多字节字符被拆分到两个分片中, 依然合法.
+                var bytes = "分片测试".getBytes(UTF_8);
+                scxFrameWebSocket.sendFrame(new WebSocketFrame(WebSocketOpCode.TEXT, Arrays.copyOfRange(bytes, 0, 4), false));
+                scxFrameWebSocket.sendFrame(new WebSocketFrame(WebSocketOpCode.CONTINUATION, Arrays.copyOfRange(bytes, 4, bytes.length), true));
+                // 大量分片的 BINARY 消息.
+                for (int i = 0; i < 100; i = i + 1) {
+                    var payload = new byte[1000];
+                    Arrays.fill(payload, (byte) i);
+                    scxFrameWebSocket.sendFrame(new WebSocketFrame(i == 0 ? WebSocketOpCode.BINARY : WebSocketOpCode.CONTINUATION, payload, i == 99));
+                }
+                // 非法的 UTF-8 (代理区), 在第一个分片就应该被拒绝.
+                scxFrameWebSocket.sendFrame(new WebSocketFrame(WebSocketOpCode.TEXT, new byte[]{'a', (byte) 0xED, (byte) 0xA0, (byte) 0x80}, false));
+            } catch (IOException | WebSocketIOException | WebSocketProtocolException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        var socket = new Socket();
+        socket.connect(new InetSocketAddress(8890));
+        var scxWebSocket = ScxWebSocket.of(new TestSocketEndpoint(socket), false);
+        var textMessage = (TextMessage) scxWebSocket.read();
+        // 接收到的消息直接由字节支撑, 可以原样转发.
+        Assert.assertEquals(textMessage.utf8Bytes(), "分片测试".getBytes(UTF_8));
+        Assert.assertEquals(textMessage, new TextMessage("分片测试"));
+        Assert.assertEquals(textMessage.text(), "分片测试");
+        Assert.assertThrows(IllegalArgumentException.class, () -> TextMessage.ofUtf8(new byte[]{(byte) 0xC0, (byte) 0x80}));
+        var binary = ((BinaryMessage) scxWebSocket.read()).binary();
+        Assert.assertEquals(binary.length, 100 * 1000);
+        for (int i = 0; i < binary.length; i = i + 1) {
+            Assert.assertEquals(binary[i], (byte) (i / 1000));
+        }
+        var e = Assert.expectThrows(WebSocketProtocolException.class, scxWebSocket::read);
+        Assert.assertEquals(e.closeCode(), 1007);
+        socket.close();
+    }
+
+    @Test
+    public static void test6() throws IOException, WebSocketIOException, WebSocketProtocolException, InterruptedException {
+        var serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(8894));
+        var keepAlive = new WebSocketKeepAlive(new WebSocketKeepAliveOptions()
+            .pingInterval(Duration.ofMillis(50))
+            .tickDuration(Duration.ofMillis(10))
+            .maxMissedPongs(2)
+            .idleTimeout(Duration.ofMillis(400)));
+        var closedAt = new long[2];
+        var pongs = new int[2];
+        var closed = new CountDownLatch(2);
+        var start = System.nanoTime();
+        Thread.ofPlatform().start(() -> {
+            try {
+                for (int i = 0; i < 2; i = i + 1) {
+                    var index = i;
+                    var scxWebSocket = ScxWebSocket.of(new TestSocketEndpoint(serverSocket.accept()), false);
+                    keepAlive.register(scxWebSocket);
+                    // Pong 只能在读取循环中被观察到.
+                    Thread.ofVirtual().start(() -> {
+                        try {
+                            while (true) {
+                                if (scxWebSocket.read() instanceof PongMessage) {
+                                    pongs[index] = pongs[index] + 1;
+                                }
+                            }
+                        } catch (Exception _) {
+                            closedAt[index] = (System.nanoTime() - start) / 1_000_000;
+                            closed.countDown();
+                        }
+                    });
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        // 正常响应 Ping, 但不发送数据, 最终因为空闲被关闭.
+        var socket1 = new Socket();
+        socket1.connect(new InetSocketAddress(8894));
+        // 不读取, 因此不会回复 Pong, 应该在空闲超时之前就被关闭.
+        var socket2 = new Socket();
+        socket2.connect(new InetSocketAddress(8894));
+
+        var scxWebSocket1 = ScxWebSocket.of(new TestSocketEndpoint(socket1), true);
+        var pings = 0;
+        WebSocketMessage message;
+        while (!((message = scxWebSocket1.read()) instanceof CloseMessage)) {
+            if (message instanceof PingMessage) {
+                pings = pings + 1;
+            }
+        }
+        Assert.assertEquals(((CloseMessage) message).closeInfo(), new WebSocketCloseInfo(1001, "idle timeout"));
+        Assert.assertTrue(pings >= 3);
+
+        Assert.assertTrue(closed.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(pongs[0] >= 3);
+        Assert.assertEquals(pongs[1], 0);
+        Assert.assertTrue(closedAt[1] < closedAt[0]);
+        Assert.assertTrue(closedAt[0] >= 400);
+
+        var scxWebSocket2 = ScxWebSocket.of(new TestSocketEndpoint(socket2), true);
+        Assert.expectThrows(WebSocketIOException.class, () -> {
+            while (true) {
+                scxWebSocket2.read();
+            }
+        });
+        socket1.close();
+        socket2.close();
+        keepAlive.close();
+    }
+
+    @Test
+    public static void test7() throws IOException, WebSocketIOException, WebSocketProtocolException, InterruptedException {
+        var histogram = new WebSocketLatencyHistogram();
+        for (int i = 0; i < 99; i = i + 1) {
+            histogram.record(100);
+        }
+        histogram.record(1_000_000);
+        Assert.assertEquals(histogram.count(), 100);
+        Assert.assertEquals(histogram.valueAtPercentile(50), 128);
+        Assert.assertEquals(histogram.valueAtPercentile(100), 1 << 20);
+
+        var serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(8896));
+        // 每个连接一个实例, 同时汇总到 total 上.
+        var total = new WebSocketMetrics();
+        var serverMetrics = new WebSocketMetrics(total);
+        var clientMetrics = new WebSocketMetrics(total);
+        var serverError = new WebSocketProtocolException[1];
+        var serverThread = Thread.ofPlatform().start(() -> {
+            try {
+                var scxWebSocket = ScxWebSocket.of(new TestSocketEndpoint(serverSocket.accept()), false, new ScxWebSocketOptions().metrics(serverMetrics));
+                for (int i = 0; i < 11; i = i + 1) {
+                    scxWebSocket.read();
+                }
+                scxWebSocket.read();
+            } catch (WebSocketProtocolException e) {
+                serverError[0] = e;
+            } catch (IOException | WebSocketIOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        var socket = new Socket();
+        socket.connect(new InetSocketAddress(8896));
+        var scxFrameWebSocket = ScxFrameWebSocket.of(new TestSocketEndpoint(socket), true, new ScxFrameWebSocketOptions().metrics(clientMetrics));
+        var scxWebSocket = ScxWebSocket.of(scxFrameWebSocket, new ScxWebSocketOptions().metrics(clientMetrics).fragmentSize(10));
+        for (int i = 0; i < 10; i = i + 1) {
+            scxWebSocket.send("Metrics " + i);
+        }
+        // 3 个分片.
+        try (var out = scxWebSocket.sendBinaryStream()) {
+            out.write(new byte[25]);
+        }
+        // 非法的 UTF-8.
+        scxFrameWebSocket.sendFrame(new WebSocketFrame(WebSocketOpCode.TEXT, new byte[]{(byte) 0xFF}, true));
+        serverThread.join();
+        socket.close();
+
+        Assert.assertEquals(serverError[0].closeCode(), 1007);
+        Assert.assertEquals(serverMetrics.messagesIn(), 11);
+        Assert.assertEquals(serverMetrics.framesIn(), 14);
+        Assert.assertEquals(serverMetrics.bytesIn(), 10 * "Metrics 0".length() + 25 + 1);
+        Assert.assertEquals(serverMetrics.fragmentsAggregated(), 3);
+        Assert.assertEquals(serverMetrics.protocolErrors(), 1);
+        Assert.assertEquals(serverMetrics.protocolErrors(1007), 1);
+        Assert.assertEquals(clientMetrics.messagesOut(), 11);
+        Assert.assertEquals(clientMetrics.framesOut(), 14);
+        Assert.assertEquals(clientMetrics.sendLockWait().count(), 14);
+        Assert.assertEquals(total.framesIn(), serverMetrics.framesIn() + clientMetrics.framesIn());
+        Assert.assertEquals(total.framesOut(), 14);
+    }
+
+    @Test
+    public static void test8() throws IOException, WebSocketIOException, WebSocketProtocolException {
+        var serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(8898));
+        var events = new ArrayList<String>();
+        var observer = new WebSocketObserver() {
+
+            @Override
+            public void onFrameRead(WebSocketOpCode opCode, boolean fin, boolean rsv1, long payloadLength) {
+                events.add("frameRead " + opCode + " " + payloadLength);
+            }
+
+            @Override
+            public void onFrameWrite(WebSocketFrame frame) {
+                events.add("frameWrite " + frame.opCode());
+            }
+
+            @Override
+            public void onMessage(WebSocketMessage message) {
+                events.add("message " + message.getClass().getSimpleName());
+            }
+
+            @Override
+            public void onCloseSent(WebSocketCloseInfo closeInfo) {
+                events.add("closeSent " + closeInfo.code());
+            }
+
+            @Override
+            public void onCloseReceived(WebSocketCloseInfo closeInfo) {
+                events.add("closeReceived " + closeInfo.code());
+            }
+
+        };
+
+        var socket = new Socket();
+        socket.connect(new InetSocketAddress(8898));
+        var scxWebSocket = ScxWebSocket.of(new TestSocketEndpoint(socket), true);
+        scxWebSocket.send("Observer");
+        scxWebSocket.sendClose(new WebSocketCloseInfo(4000, "bye"));
+
+        var serverWebSocket = ScxWebSocket.of(new TestSocketEndpoint(serverSocket.accept()), false, new ScxWebSocketOptions().observer(observer));
+        Assert.assertTrue(serverWebSocket.read() instanceof TextMessage);
+        Assert.assertTrue(serverWebSocket.read() instanceof CloseMessage);
+        Assert.assertEquals(events, List.of(
+            "frameRead TEXT 8",
+            "message TextMessage",
+            "frameRead CLOSE 5",
+            "closeReceived 4000",
+            "frameWrite CLOSE",
+            "closeSent 1000",
+            "message CloseMessage"
+        ));
+        socket.close();
+        serverSocket.close();
+    }
+
+    /// 流式发送期间, 同一线程发送数据消息应被拒绝 (数据消息锁可重入, 否则会插入到分片之间), 控制帧不受影响.
+    /// 观察者收到的帧不会被之后的分片覆盖.
+    @Test
+    public static void test9() throws IOException, WebSocketIOException, WebSocketProtocolException {
+        var endpoints = PipeByteEndpoint.pair();
+        var written = new ArrayList<byte[]>();
+        var observer = new WebSocketObserver() {
+
+            @Override
+            public void onFrameWrite(WebSocketFrame frame) {
+                written.add(frame.payloadData());
+            }
+
+        };
+        var server = ScxWebSocket.of(endpoints[1], false, new ScxWebSocketOptions().fragmentSize(16).observer(observer));
+        var client = ScxWebSocket.of(endpoints[0], true);
+        var data = "0123456789abcdef".repeat(4).getBytes(UTF_8);
+        try (var out = server.sendBinaryStream()) {
+            out.write(data, 0, 32);
+            Assert.assertThrows(WebSocketInvalidStateException.class, () -> server.send("text"));
+            Assert.assertThrows(WebSocketInvalidStateException.class, () -> server.sendAsync(new TextMessage("text")));
+            Assert.assertThrows(WebSocketInvalidStateException.class, server::sendBinaryStream);
+            // 控制帧可以穿插在分片之间.
+            server.sendPing(new byte[]{1});
+            out.write(data, 32, 32);
+        }
+        server.send("after");
+
+        Assert.assertTrue(client.read() instanceof PingMessage);
+        Assert.assertEquals(((BinaryMessage) client.read()).binary(), data);
+        Assert.assertEquals(((TextMessage) client.read()).text(), "after");
+        // 分片 + Ping + 3 个分片 + 之后的 TEXT, 每个分片的内容都应保持不变.
+        Assert.assertEquals(written.size(), 6);
+        for (var i : new int[]{0, 2, 3, 4}) {
+            Assert.assertEquals(new String(written.get(i), UTF_8), "0123456789abcdef");
+        }
+        server.close();
+        client.close();
+    }
+
+    @Test
+    public static void test10() throws IOException, WebSocketIOException, WebSocketProtocolException {
+        var endpoints = PipeByteEndpoint.pair();
+        var client = ScxFrameWebSocket.of(endpoints[0], true);
+        var server = ScxWebSocket.of(endpoints[1], false);
+        // read() 聚合到一半时抛出异常 (第二个分片不是合法的 UTF-8).
+        client.sendFrame(new WebSocketFrame(WebSocketOpCode.TEXT, "ab".getBytes(UTF_8), false));
+        client.sendFrame(new WebSocketFrame(WebSocketOpCode.CONTINUATION, new byte[]{(byte) 0xFF}, false));
+        client.sendFrame(new WebSocketFrame(WebSocketOpCode.CONTINUATION, "c".getBytes(UTF_8), true));
+        var e = Assert.expectThrows(WebSocketProtocolException.class, server::read);
+        Assert.assertEquals(e.closeCode(), 1007);
+        // 剩余的分片不能作为新的流式消息读取.
+        Assert.assertThrows(WebSocketInvalidStateException.class, server::readStream);
+        server.close();
+        client.close();
+    }
+
+    @Test
+    public static void test11() throws IOException, WebSocketIOException, WebSocketProtocolException {
+        var endpoints = PipeByteEndpoint.pair();
+        var errors = new ArrayList<WebSocketProtocolException>();
+        var observer = new WebSocketObserver() {
+
+            @Override
+            public void onProtocolError(WebSocketProtocolException exception) {
+                errors.add(exception);
+            }
+
+        };
+        var client = ScxFrameWebSocket.of(endpoints[0], true);
+        var server = ScxWebSocket.of(endpoints[1], false, new ScxWebSocketOptions().observer(observer));
+        // 流式读取时, 非法的 UTF-8 在读取 payload 时才会被发现.
+        client.sendFrame(new WebSocketFrame(WebSocketOpCode.TEXT, new byte[]{'a', (byte) 0xFF}, true));
+        var stream = server.readStream();
+        var e = Assert.expectThrows(WebSocketProtocolException.class, () -> stream.payload().readAllBytes());
+        Assert.assertEquals(errors.size(), 1);
+        Assert.assertSame(errors.getFirst(), e);
+        server.close();
+        client.close();
+    }
+
+    @Test
+    public static void test12() throws WebSocketIOException, WebSocketProtocolException {
+        var endpoints = PipeByteEndpoint.pair();
+        var server = ScxWebSocket.of(endpoints[1], false);
+        // 不是由 ScxWebSocket.of 创建的连接 (如包装类) 也可以注册, 此时只发送 Ping.
+        var wrapped = (ScxWebSocket) Proxy.newProxyInstance(ScxWebSocket.class.getClassLoader(), new Class<?>[]{ScxWebSocket.class}, (proxy, method, args) -> method.invoke(server, args));
+        // 只有 1 个槽位的时间轮.
+        var keepAlive = new WebSocketKeepAlive(new WebSocketKeepAliveOptions()
+            .pingInterval(Duration.ofMillis(20))
+            .tickDuration(Duration.ofMillis(10))
+            .ticksPerWheel(1));
+        keepAlive.register(wrapped);
+        var client = ScxWebSocket.of(endpoints[0], true);
+        for (int i = 0; i < 3; i = i + 1) {
+            Assert.assertTrue(client.read() instanceof PingMessage);
+        }
+        keepAlive.close();
+        server.close();
+        client.close();
+    }
+
+    /// Close 必须排在已经入队的异步消息之后, Close 写出之后队列中剩余的帧都会失败.
+    @Test
+    public static void test13() throws WebSocketIOException, WebSocketProtocolException, InterruptedException {
+        var endpoints = PipeByteEndpoint.pair();
+        var client = ScxWebSocket.of(endpoints[0], true);
+        var server = ScxFrameWebSocket.of(endpoints[1], false);
+        var opCodes = new ArrayList<WebSocketOpCode>();
+        var reader = Thread.ofVirtual().start(() -> {
+            try {
+                while (true) {
+                    opCodes.add(server.readFrame().opCode());
+                }
+            } catch (WebSocketIOException _) {
+                // 客户端已关闭.
+            }
+        });
+
+        var payload = new byte[16 * 1024];
+        var futures = new ArrayList<CompletableFuture<Boolean>>();
+        for (int i = 0; i < 50; i = i + 1) {
+            futures.add(client.sendAsync(new BinaryMessage(payload)));
+        }
+        client.sendClose();
+        for (var future : futures) {
+            Assert.assertTrue(future.join());
+        }
+
+        // 直接在帧级别异步发送: Close 之后入队的帧不会写出.
+        var frameClient = ScxFrameWebSocket.of(endpoints[0], true);
+        frameClient.sendFrameAsync(new WebSocketFrame(WebSocketOpCode.CLOSE, new byte[0], true)).join();
+        var afterClose = frameClient.sendFrameAsync(new WebSocketFrame(WebSocketOpCode.BINARY, payload, true));
+        try {
+            afterClose.join();
+            Assert.fail("expected failure after CLOSE");
+        } catch (CompletionException e) {
+            Assert.assertTrue(e.getCause() instanceof WebSocketInvalidStateException);
+        }
+
+        client.close();
+        reader.join();
+        var expected = new ArrayList<WebSocketOpCode>();
+        for (int i = 0; i < 50; i = i + 1) {
+            expected.add(WebSocketOpCode.BINARY);
+        }
+        expected.add(WebSocketOpCode.CLOSE);
+        expected.add(WebSocketOpCode.CLOSE);
+        Assert.assertEquals(opCodes, expected);
+        server.close();
+    }
+
     static void startServer() throws IOException {
         var serverSocket = new ServerSocket();
         serverSocket.bind(new InetSocketAddress(8882));
@@ -0,0 +1,162 @@
+package dev.scx.websocket.test;
+
+import dev.scx.websocket.*;
+import dev.scx.websocket.exception.WebSocketIOException;
+import dev.scx.websocket.exception.WebSocketInvalidStateException;
+import dev.scx.websocket.exception.WebSocketProtocolException;
+import dev.scx.websocket.frame.ScxFrameWebSocket;
+import dev.scx.websocket.frame.WebSocketFrame;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import static dev.scx.websocket.frame.WebSocketOpCode.*;
+import static dev.scx.websocket.test.FrameWebSocketTest.TestSocketEndpoint;
+
+public class StreamWebSocketTest {
+
+    public static void main(String[] args) throws IOException, WebSocketIOException, WebSocketProtocolException {
+        test1();
+        test2();
+    }
+
+    @Test
+    public static void test1() throws IOException {
+        startServer();
+        startClient();
+    }
+
+    @Test
+    public static void test2() throws IOException {
+        startServer2();
+        startClient2();
+    }
+
+    static void startServer() throws IOException {
+        var serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(8884));
+        Thread.ofPlatform().start(() -> {
+            try {
+                var socket = serverSocket.accept();
+
+                var scxFrameWebSocket = ScxFrameWebSocket.of(new TestSocketEndpoint(socket), false);
+
+                // 1000 个分片, 中间穿插 Ping.
+                var chunk = new byte[1024];
+                scxFrameWebSocket.sendFrame(new WebSocketFrame(BINARY, chunk, false));
+                for (int i = 1; i < 999; i = i + 1) {
+                    scxFrameWebSocket.sendFrame(new WebSocketFrame(CONTINUATION, chunk, false));
+                    if (i % 100 == 0) {
+                        scxFrameWebSocket.sendFrame(new WebSocketFrame(PING, new byte[0], true));
+                    }
+                }
+                scxFrameWebSocket.sendFrame(new WebSocketFrame(CONTINUATION, chunk, true));
+
+                scxFrameWebSocket.sendFrame(new WebSocketFrame(CLOSE, new byte[0], true));
+
+            } catch (IOException | WebSocketIOException | WebSocketProtocolException e) {
+                throw new RuntimeException(e);
+            }
+
+        });
+    }
+
+    static void startClient() throws IOException, WebSocketIOException, WebSocketProtocolException {
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(8884));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        var scxWebSocket = ScxWebSocket.of(new TestSocketEndpoint(socket), true);
+
+        var messageStream = scxWebSocket.readStream();
+        Assert.assertEquals(messageStream.opCode(), BINARY);
+        long length = 0;
+        var buffer = new byte[4096];
+        int n;
+        while ((n = messageStream.payload().read(buffer)) != -1) {
+            length = length + n;
+        }
+        Assert.assertEquals(length, 1000 * 1024);
+        System.out.println("stream 读取了 " + length + " 字节");
+
+        var closeStream = scxWebSocket.readStream();
+        Assert.assertEquals(closeStream.opCode(), CLOSE);
+        System.out.println("close 了");
+
+    }
+
+    static void startServer2() throws IOException {
+        var serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(8885));
+        Thread.ofPlatform().start(() -> {
+            try {
+                var socket = serverSocket.accept();
+
+                var options = new ScxWebSocketOptions().fragmentSize(1024);
+                var scxWebSocket = ScxWebSocket.of(new TestSocketEndpoint(socket), false, options);
+
+                try (var writer = scxWebSocket.sendTextStream()) {
+                    for (int i = 0; i < 1000; i = i + 1) {
+                        writer.write("Stream 测试文本" + i + "\n");
+                        // 控制帧可以穿插在分片之间.
+                        if (i % 100 == 0) {
+                            scxWebSocket.sendPing(new byte[0]);
+                        }
+                    }
+                }
+
+                try (var out = scxWebSocket.sendBinaryStream()) {
+                    for (int i = 0; i < 1000; i = i + 1) {
+                        out.write(new byte[1000]);
+                    }
+                }
+
+                scxWebSocket.sendClose();
+
+            } catch (IOException | WebSocketIOException | WebSocketProtocolException |
+                     WebSocketInvalidStateException e) {
+                throw new RuntimeException(e);
+            }
+
+        });
+    }
+
+    static void startClient2() throws IOException, WebSocketIOException, WebSocketProtocolException {
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(8885));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        var scxWebSocket = ScxWebSocket.of(new TestSocketEndpoint(socket), true);
+
+        var expected = new StringBuilder();
+        for (int i = 0; i < 1000; i = i + 1) {
+            expected.append("Stream 测试文本").append(i).append("\n");
+        }
+
+        while (true) {
+            var webSocketMessage = scxWebSocket.read();
+            if (webSocketMessage instanceof CloseMessage) {
+                System.out.println("close 了");
+                break;
+            }
+            if (webSocketMessage instanceof TextMessage textMessage) {
+                Assert.assertEquals(textMessage.text(), expected.toString());
+            }
+            if (webSocketMessage instanceof BinaryMessage binaryMessage) {
+                Assert.assertEquals(binaryMessage.binary().length, 1000 * 1000);
+            }
+        }
+
+    }
+
+}